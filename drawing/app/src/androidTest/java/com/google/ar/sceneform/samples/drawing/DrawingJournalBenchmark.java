@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.google.ar.sceneform.math.Vector3;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Journals a simulated one hour drawing session into a {@link DrawingJournal} as fast as it can,
+ * then reopens the journal and measures how long recovery takes.
+ *
+ * <p>The session draws for three seconds out of every six and keeps every sample of 240 Hz input,
+ * four points per 60 Hz frame, which is more than the input conditioner ever lets through. Every
+ * tenth stroke is undone. Each frame encodes its edits and appends them like the activity does,
+ * and the time this takes on the simulated main thread is logged next to the journal's own
+ * statistics.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DrawingJournalBenchmark {
+
+  private static final String TAG = DrawingJournalBenchmark.class.getSimpleName();
+  private static final int SESSION_SECONDS = 3600;
+  private static final int FRAMES_PER_SECOND = 60;
+  private static final int POINTS_PER_FRAME = 240 / FRAMES_PER_SECOND;
+  private static final int STROKE_PERIOD_FRAMES = 6 * FRAMES_PER_SECOND;
+  private static final int STROKE_DRAWING_FRAMES = 3 * FRAMES_PER_SECOND;
+  private static final int STROKES_PER_UNDO = 10;
+  private static final float STROKE_RADIUS = 0.005f;
+
+  private final File directory =
+      new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "journal_benchmark");
+
+  /** Runs the session and the recovery and logs the results. */
+  @Test
+  public void run() throws IOException {
+    deleteFiles();
+    try {
+      DrawingJournal journal = new DrawingJournal(directory);
+      journal.getRecovery().join();
+      float[] frameMillis = journalSession(journal);
+      journal.close();
+      journal.getTermination().join();
+      Log.i(
+          TAG,
+          String.format(
+              "Journaled %d frames: encode and append mean %.4fms, max %.3fms",
+              SESSION_SECONDS * FRAMES_PER_SECOND, frameMillis[0], frameMillis[1]));
+      Log.i(TAG, journal.toString());
+
+      long start = System.nanoTime();
+      DrawingJournal recoveredJournal = new DrawingJournal(directory);
+      List<DrawingJournal.RecoveredStroke> strokes = recoveredJournal.getRecovery().join();
+      float recoveryMillis = (System.nanoTime() - start) / 1e6f;
+      recoveredJournal.close();
+      recoveredJournal.getTermination().join();
+      int pointCount = 0;
+      for (DrawingJournal.RecoveredStroke stroke : strokes) {
+        pointCount += stroke.getPoints().size();
+      }
+      Log.i(
+          TAG,
+          String.format(
+              "Recovered a %d minute session, %d strokes with %d points, in %.1fms",
+              SESSION_SECONDS / 60, strokes.size(), pointCount, recoveryMillis));
+
+      int drawnStrokes = SESSION_SECONDS * FRAMES_PER_SECOND / STROKE_PERIOD_FRAMES;
+      assertEquals(drawnStrokes - drawnStrokes / STROKES_PER_UNDO, strokes.size());
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  // Returns the mean and maximum time per frame.
+  private static float[] journalSession(DrawingJournal journal) {
+    StrokeStreamSender encoder = new StrokeStreamSender();
+    ArrayList<Vector3> points = new ArrayList<>();
+    int strokeCount = 0;
+    long totalNanos = 0;
+    long maxNanos = 0;
+    int frameCount = SESSION_SECONDS * FRAMES_PER_SECOND;
+    for (int frame = 0; frame < frameCount; frame++) {
+      int strokeFrame = frame % STROKE_PERIOD_FRAMES;
+      if (strokeFrame >= STROKE_DRAWING_FRAMES) {
+        continue;
+      }
+      points.clear();
+      for (int i = 0; i < POINTS_PER_FRAME; i++) {
+        points.add(getPoint(strokeCount, strokeFrame * POINTS_PER_FRAME + i));
+      }
+
+      long start = System.nanoTime();
+      if (strokeFrame == 0) {
+        encoder.onStrokeBegin(strokeCount, StrokePalette.RAINBOW, STROKE_RADIUS);
+      }
+      encoder.onStrokePoints(strokeCount, points);
+      if (strokeFrame == STROKE_DRAWING_FRAMES - 1) {
+        encoder.onStrokeEnd(strokeCount);
+        if (++strokeCount % STROKES_PER_UNDO == 0) {
+          encoder.onUndo();
+        }
+      }
+      ByteBuffer batch = encoder.takeBatch();
+      if (batch != null) {
+        journal.append(batch);
+      }
+      long nanos = System.nanoTime() - start;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+    return new float[] {
+      totalNanos / 1e6f / (frameCount * STROKE_DRAWING_FRAMES / STROKE_PERIOD_FRAMES),
+      maxNanos / 1e6f
+    };
+  }
+
+  // A loop with a little wobble, one stroke per position on a grid, about 3mm between points.
+  private static Vector3 getPoint(int stroke, int index) {
+    double angle = index * 0.03;
+    float radius = 0.1f + 0.01f * (float) Math.sin(index * 0.2);
+    return new Vector3(
+        (stroke % 10) * 0.3f + radius * (float) Math.cos(angle),
+        (stroke / 10 % 10) * 0.3f + radius * (float) Math.sin(angle),
+        -0.5f - 0.001f * index);
+  }
+
+  private void deleteFiles() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!file.delete()) {
+          Log.w(TAG, "Unable to delete " + file);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures how stroke processing scales with the number of strokes drawn at the same time.
+ *
+ * <p>For every stroke count from one up to twice the number of cores, each stroke receives one
+ * point per simulated frame and the frame ends when all pipelines are idle again, like a frame in
+ * which every finger moved. While there are enough threads, a frame with several strokes should
+ * take about as long as a frame with one, so the throughput in points per second grows linearly
+ * with the stroke count up to the number of cores.
+ *
+ * <p>The pipelines run on a pool of their own, one thread per stroke, so that strokes being drawn
+ * at the same time don't skew the results. The end of a frame is detected by a {@link Phaser} that
+ * every task of the frame arrives at, so waiting for it takes no CPU time from the workers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StrokePipelineBenchmark {
+
+  private static final String TAG = StrokePipelineBenchmark.class.getSimpleName();
+  private static final int POINTS_PER_STROKE = 400;
+
+  private final int maximumStrokes = 2 * Runtime.getRuntime().availableProcessors();
+  private final ExecutorService executor = Executors.newFixedThreadPool(maximumStrokes);
+  // Has the benchmark thread as a party, and every task that is queued until it has run.
+  private final Phaser frameEnd = new Phaser(1);
+  // runs.get(n - 1) holds the pipelines of the run with n strokes.
+  private final ArrayList<ArrayList<StrokePipeline>> runs = new ArrayList<>();
+
+  /**
+   * Creates the strokes of all runs. Strokes are nodes, so this happens on the main thread; they
+   * hang off an anchor node that isn't in the scene and are never shown, so they need no material.
+   */
+  @Before
+  public void setUp() {
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(this::createStrokes);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  private void createStrokes() {
+    Executor trackedExecutor =
+        task -> {
+          frameEnd.register();
+          executor.execute(
+              () -> {
+                try {
+                  task.run();
+                } finally {
+                  frameEnd.arriveAndDeregister();
+                }
+              });
+        };
+    AnchorNode anchorNode = new AnchorNode();
+    for (int count = 1; count <= maximumStrokes; count++) {
+      ArrayList<StrokePipeline> pipelines = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Stroke stroke = new Stroke(anchorNode, null, StrokePalette.WHITE);
+        pipelines.add(new StrokePipeline(stroke, trackedExecutor));
+      }
+      runs.add(pipelines);
+    }
+  }
+
+  /** Runs all stroke counts and logs the results. */
+  @Test
+  public void run() {
+    double singleStrokeRate = 0;
+    for (ArrayList<StrokePipeline> pipelines : runs) {
+      long start = System.nanoTime();
+      for (int frame = 0; frame < POINTS_PER_STROKE; frame++) {
+        for (int i = 0; i < pipelines.size(); i++) {
+          pipelines.get(i).addLocal(getPoint(i, frame), getPoint(i, frame + 1), frame * 16L);
+        }
+        frameEnd.arriveAndAwaitAdvance();
+      }
+      for (int i = 0; i < pipelines.size(); i++) {
+        pipelines.get(i).finish();
+      }
+      frameEnd.arriveAndAwaitAdvance();
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      double pointsPerSecond = pipelines.size() * POINTS_PER_STROKE / seconds;
+      if (singleStrokeRate == 0) {
+        singleStrokeRate = pointsPerSecond;
+      }
+      Log.i(
+          TAG,
+          String.format(
+              "%d strokes: %.1fms per frame, %.0f points/s, speedup %.2f",
+              pipelines.size(),
+              seconds * 1000 / POINTS_PER_STROKE,
+              pointsPerSecond,
+              pointsPerSecond / singleStrokeRate));
+    }
+  }
+
+  // A spiral per stroke, so that the simplifier keeps most of the points.
+  private static Vector3 getPoint(int stroke, int index) {
+    float angle = index * 0.05f;
+    float radius = 0.05f + index * 0.0002f;
+    return new Vector3(
+        (float) Math.cos(angle) * radius, (float) Math.sin(angle) * radius, stroke * 0.01f);
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.google.ar.sceneform.AnchorNode;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures how a {@link StrokeRegistry} holds up with one thread changing the drawing and several
+ * threads reading it at the same time, against a plain list behind a lock.
+ *
+ * <p>The writer appends strokes, undoes every eighth one and clears the drawing when it reaches a
+ * thousand strokes, as fast as it can. Every reader repeatedly takes a consistent view of the
+ * drawing and walks through it: a snapshot for the registry, the list while holding its lock for
+ * the baseline. For each number of readers, the writer's throughput and longest change and the
+ * readers' throughput are logged for both.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StrokeRegistryBenchmark {
+
+  private static final String TAG = StrokeRegistryBenchmark.class.getSimpleName();
+  private static final int POOL_SIZE = 256;
+  private static final int MAXIMUM_STROKES = 1000;
+  private static final int CHANGES_PER_UNDO = 8;
+  private static final long RUN_MILLIS = 1000;
+
+  private final Stroke[] pool = new Stroke[POOL_SIZE];
+
+  private interface Drawing {
+    void add(Stroke stroke);
+
+    void removeLast();
+
+    void clear();
+
+    int size();
+
+    /** Returns a checksum of a consistent view of the drawing. */
+    int read();
+  }
+
+  private static class RegistryDrawing implements Drawing {
+    final StrokeRegistry registry = new StrokeRegistry();
+
+    @Override
+    public void add(Stroke stroke) {
+      registry.add(stroke);
+    }
+
+    @Override
+    public void removeLast() {
+      registry.removeLast();
+    }
+
+    @Override
+    public void clear() {
+      registry.clear();
+    }
+
+    @Override
+    public int size() {
+      return registry.size();
+    }
+
+    @Override
+    public int read() {
+      StrokeRegistry.Snapshot snapshot = registry.getSnapshot();
+      int sum = 0;
+      for (int i = 0; i < snapshot.size(); i++) {
+        sum += snapshot.get(i).getColorId();
+      }
+      return sum;
+    }
+  }
+
+  private static class LockedDrawing implements Drawing {
+    final ArrayList<Stroke> strokes = new ArrayList<>();
+
+    @Override
+    public synchronized void add(Stroke stroke) {
+      strokes.add(stroke);
+    }
+
+    @Override
+    public synchronized void removeLast() {
+      if (!strokes.isEmpty()) {
+        strokes.remove(strokes.size() - 1);
+      }
+    }
+
+    @Override
+    public synchronized void clear() {
+      strokes.clear();
+    }
+
+    @Override
+    public synchronized int size() {
+      return strokes.size();
+    }
+
+    @Override
+    public synchronized int read() {
+      int sum = 0;
+      for (int i = 0; i < strokes.size(); i++) {
+        sum += strokes.get(i).getColorId();
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * Creates the strokes the writer adds. Strokes are nodes, so this happens on the main thread;
+   * they hang off an anchor node that isn't in the scene and are never shown, so they need no
+   * material.
+   */
+  @Before
+  public void setUp() {
+    InstrumentationRegistry.getInstrumentation()
+        .runOnMainSync(
+            () -> {
+              AnchorNode anchorNode = new AnchorNode();
+              for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = new Stroke(anchorNode, null, i % StrokePalette.COUNT);
+              }
+            });
+  }
+
+  /** Runs with one, two, four and eight readers and logs the results. */
+  @Test
+  public void run() {
+    for (int readers = 1; readers <= 8; readers *= 2) {
+      String registry = measure(new RegistryDrawing(), readers);
+      String locked = measure(new LockedDrawing(), readers);
+      Log.i(TAG, String.format("%d readers, registry: %s; locked: %s", readers, registry, locked));
+    }
+  }
+
+  private String measure(Drawing drawing, int readerCount) {
+    AtomicBoolean running = new AtomicBoolean(true);
+    long[] reads = new long[readerCount];
+    int[] checksums = new int[readerCount];
+    ArrayList<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < readerCount; r++) {
+      int reader = r;
+      Thread thread =
+          new Thread(
+              () -> {
+                int checksum = 0;
+                while (running.get()) {
+                  checksum += drawing.read();
+                  reads[reader]++;
+                }
+                checksums[reader] = checksum;
+              },
+              TAG + " reader " + r);
+      readers.add(thread);
+      thread.start();
+    }
+
+    long changes = 0;
+    long longestChangeNanos = 0;
+    long start = System.nanoTime();
+    long end = start + RUN_MILLIS * 1000000L;
+    long now = start;
+    while (now < end) {
+      if (drawing.size() >= MAXIMUM_STROKES) {
+        drawing.clear();
+      } else if (changes % CHANGES_PER_UNDO == CHANGES_PER_UNDO - 1) {
+        drawing.removeLast();
+      } else {
+        drawing.add(pool[(int) (changes % POOL_SIZE)]);
+      }
+      changes++;
+      long changeEnd = System.nanoTime();
+      longestChangeNanos = Math.max(longestChangeNanos, changeEnd - now);
+      now = changeEnd;
+    }
+    running.set(false);
+    for (Thread thread : readers) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "interrupted";
+      }
+    }
+
+    long totalReads = 0;
+    for (long readCount : reads) {
+      totalReads += readCount;
+    }
+    float seconds = (now - start) / 1e9f;
+    return String.format(
+        "writer %.0f changes/s, longest %.3fms, readers %.0f reads/s",
+        changes / seconds, longestChangeNanos / 1e6f, totalReads / seconds);
+  }
+}
@@ -21,53 +21,86 @@ import android.content.Context;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.Gravity;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.Toast;
-import com.google.ar.core.Pose;
-import com.google.ar.core.TrackingState;
 import com.google.ar.sceneform.AnchorNode;
-import com.google.ar.sceneform.ArSceneView;
-import com.google.ar.sceneform.Camera;
 import com.google.ar.sceneform.FrameTime;
-import com.google.ar.sceneform.HitTestResult;
 import com.google.ar.sceneform.Scene;
-import com.google.ar.sceneform.collision.Ray;
 import com.google.ar.sceneform.math.Vector3;
-import com.google.ar.sceneform.rendering.Color;
 import com.google.ar.sceneform.rendering.Material;
-import com.google.ar.sceneform.rendering.MaterialFactory;
-import com.google.ar.sceneform.rendering.Texture;
-import com.google.ar.sceneform.rendering.Texture.Sampler;
-import com.google.ar.sceneform.rendering.Texture.Sampler.WrapMode;
 import com.google.ar.sceneform.ux.ArFragment;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Implements an AR drawing experience using Sceneform. */
-public class DrawingActivity extends AppCompatActivity
-    implements Scene.OnUpdateListener, Scene.OnPeekTouchListener {
+public class DrawingActivity extends AppCompatActivity implements Scene.OnUpdateListener {
 
   private static final String TAG = DrawingActivity.class.getSimpleName();
   private static final double MIN_OPENGL_VERSION = 3.0;
-  private static final float DRAW_DISTANCE = 0.13f;
-  private static final Color WHITE = new Color(android.graphics.Color.WHITE);
-  private static final Color RED = new Color(android.graphics.Color.RED);
-  private static final Color GREEN = new Color(android.graphics.Color.GREEN);
-  private static final Color BLUE = new Color(android.graphics.Color.BLUE);
-  private static final Color BLACK = new Color(android.graphics.Color.BLACK);
+  private static final String TASK_COLOR_PICKERS = "color pickers";
+  private static final String TASK_STREAM_RECEIVE = "stream receive";
+  private static final String TASK_RESTORE = "restore drawing";
+  private static final String TASK_HIDDEN_MATERIAL = "hidden material";
+  private static final String JOURNAL_DIRECTORY = "journal";
+  // Work that can wait a frame gets this much of each 16ms frame.
+  private static final float DEFERRABLE_BUDGET_MILLIS = 4f;
+
+  // Mirrors the drawing to a peer at host:port, or shows the drawing of a peer on this port of
+  // the bind address, the loopback address unless given.
+  private static final String EXTRA_STREAM_TO = "stream_to";
+  private static final String EXTRA_STREAM_PORT = "stream_port";
+  private static final String EXTRA_STREAM_BIND = "stream_bind";
+  private static final String DEFAULT_STREAM_BIND = "127.0.0.1";
+  // How often the receiving peer measures the round trip and the clock offset to the sender.
+  private static final long CLOCK_REQUEST_INTERVAL_MILLIS = 1000;
+  // Draws every stroke with its mirror image.
+  private static final String EXTRA_MIRROR = "mirror";
+  // How many copies a long press on undo makes of the last stroke, one by default.
+  private static final String EXTRA_ARRAY_COPIES = "array_copies";
+  private static final Vector3 ARRAY_STEP_METERS = new Vector3(0.05f, 0f, 0f);
+  // How much faster than real time a long press on clear replays the drawing.
+  private static final String EXTRA_TIME_LAPSE_SPEED = "time_lapse_speed";
+  private static final float DEFAULT_TIME_LAPSE_SPEED = 4f;
 
   private ArFragment fragment;
-  private AnchorNode anchorNode;
-  private final ArrayList<Stroke> strokes = new ArrayList<>();
-  private Material material;
-  private Stroke currentStroke;
+  private FrameSource frameSource;
+  private DrawingController drawingController;
+  private final StartupScheduler startupScheduler = new StartupScheduler();
+  private final FrameScheduler frameScheduler = new FrameScheduler(DEFERRABLE_BUDGET_MILLIS);
+  // One material for all strokes, each stroke picks its color from the palette texture.
+  private Material paletteMaterial;
+  // Draws the chunks of strokes a time lapse hasn't reached yet.
+  private Material hiddenMaterial;
+  // One thread per core, so that as many fingers as there are cores can draw without waiting.
+  private final ExecutorService strokeExecutor =
+      Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+  // Encodes every edit once per frame, for the journal and for a streaming peer.
+  private final StrokeStreamSender strokeEncoder = new StrokeStreamSender();
+  private DrawingJournal journal;
+  private final ArrayDeque<DrawingJournal.RecoveredStroke> pendingRestores = new ArrayDeque<>();
+  private long restoreNanos;
+
+  private StrokeStreamChannel streamChannel;
+  private boolean isStreamSender;
+  private StrokeStreamReceiver streamReceiver;
+  private long lastClockRequestMillis;
+  private RemoteDrawing remoteDrawing;
+
+  private TimeLapse timeLapse;
 
   LinearLayout colorPanel;
   LinearLayout controlPanel;
@@ -83,48 +116,52 @@ public class DrawingActivity extends AppCompatActivity
     colorPanel = (LinearLayout) findViewById(R.id.colorPanel);
     controlPanel = (LinearLayout) findViewById(R.id.controlsPanel);
 
-    MaterialFactory.makeOpaqueWithColor(this, WHITE)
-        .thenAccept(material1 -> material = material1.makeCopy())
-        .exceptionally(
-            throwable -> {
-              displayError(throwable);
-              throw new CompletionException(throwable);
-            });
-
     fragment = (ArFragment) getSupportFragmentManager().findFragmentById(R.id.sceneform_fragment);
     fragment.getArSceneView().getPlaneRenderer().setEnabled(false);
+    frameSource = new ArFrameSource(fragment.getArSceneView());
+    drawingController =
+        new DrawingController(
+            frameSource, fragment.getArSceneView().getScene(), strokeExecutor);
     fragment.getArSceneView().getScene().addOnUpdateListener(this);
-    fragment.getArSceneView().getScene().addOnPeekTouchListener(this);
+    fragment.getArSceneView().getScene().addOnUpdateListener(startupScheduler);
+    fragment.getArSceneView().getScene().addOnUpdateListener(frameScheduler);
+    fragment.getArSceneView().getScene().addOnPeekTouchListener(drawingController);
+    drawingController.setStrokeListener(strokeEncoder);
+    drawingController.setMirrorEnabled(getIntent().getBooleanExtra(EXTRA_MIRROR, false));
+    setUpJournal();
+    setUpStreaming();
+
+    // The first stroke needs a material, the color pickers can wait until the camera feed shows.
+    startupScheduler.runCritical("palette material", this::createPaletteMaterial);
 
     ImageView clearButton = (ImageView) findViewById(R.id.clearButton);
     clearButton.setOnClickListener(
         new OnClickListener() {
           @Override
           public void onClick(View v) {
-            for (Stroke stroke : strokes) {
-              stroke.clear();
-            }
-            strokes.clear();
+            stopTimeLapse();
+            pendingRestores.clear();
+            drawingController.clear();
           }
         });
+    float timeLapseSpeed =
+        getIntent().getFloatExtra(EXTRA_TIME_LAPSE_SPEED, DEFAULT_TIME_LAPSE_SPEED);
+    clearButton.setOnLongClickListener(v -> startTimeLapse(timeLapseSpeed));
     ImageView undoButton = (ImageView) findViewById(R.id.undoButton);
     undoButton.setOnClickListener(
         new OnClickListener() {
           @Override
           public void onClick(View v) {
-            if (strokes.size() < 1) {
-              return;
+            stopTimeLapse();
+            if (finishRestore()) {
+              drawingController.undo();
             }
-            int lastIndex = strokes.size() - 1;
-            strokes.get(lastIndex).clear();
-            strokes.remove(lastIndex);
           }
         });
+    int arrayCopies = getIntent().getIntExtra(EXTRA_ARRAY_COPIES, 1);
+    undoButton.setOnLongClickListener(
+        v -> drawingController.arrayLastStroke(arrayCopies, ARRAY_STEP_METERS));
 
-    setUpColorPickerUi();
-  }
-
-  private void setUpColorPickerUi() {
     ImageView colorPickerIcon = (ImageView) findViewById(R.id.colorPickerIcon);
     colorPanel.setVisibility(View.GONE);
     colorPickerIcon.setOnClickListener(
@@ -132,116 +169,333 @@ public class DrawingActivity extends AppCompatActivity
           @Override
           public void onClick(View v) {
             if (controlPanel.getVisibility() == View.VISIBLE) {
+              startupScheduler.ensureRun(TASK_COLOR_PICKERS);
               controlPanel.setVisibility(View.GONE);
               colorPanel.setVisibility(View.VISIBLE);
             }
           }
         });
+    startupScheduler.addDeferrable(TASK_COLOR_PICKERS, this::setUpColorPickerUi);
+    startupScheduler.addDeferrable(TASK_HIDDEN_MATERIAL, this::createHiddenMaterial);
+    startupScheduler.start();
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  private void setUpJournal() {
+    try {
+      journal = new DrawingJournal(new File(getFilesDir(), JOURNAL_DIRECTORY));
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to open the drawing journal", e);
+      return;
+    }
+    journal
+        .getRecovery()
+        .thenAccept(recoveredStrokes -> runOnUiThread(() -> restoreStrokes(recoveredStrokes)));
+  }
+
+  private void restoreStrokes(List<DrawingJournal.RecoveredStroke> recoveredStrokes) {
+    if (recoveredStrokes.isEmpty()) {
+      return;
+    }
+    pendingRestores.addAll(recoveredStrokes);
+  }
+
+  // Recovered strokes are rebuilt once there is a material and an anchor for them, checked every
+  // frame so that the restore task is only queued when it can make progress.
+  private void updateRestore() {
+    if (pendingRestores.isEmpty()
+        || frameScheduler.isQueued(TASK_RESTORE)
+        || !isReadyToRestore()) {
+      return;
+    }
+    frameScheduler.post(TASK_RESTORE, FrameScheduler.PRIORITY_NORMAL, this::restoreNextStroke);
+  }
+
+  private boolean isReadyToRestore() {
+    return paletteMaterial != null && drawingController.getOrCreateAnchorNode() != null;
+  }
+
+  // The journal undoes the last stroke it has, which is the last recovered stroke while some of
+  // them are still waiting. They are rebuilt right away so that an undo removes the same stroke
+  // from the scene and from the journal. Returns false if they can't be rebuilt yet; then nothing
+  // else can have been drawn either.
+  private boolean finishRestore() {
+    if (pendingRestores.isEmpty()) {
+      return true;
+    }
+    if (!isReadyToRestore()) {
+      return false;
+    }
+    while (restoreNextStroke() == FrameScheduler.SliceResult.CONTINUE) {}
+    return pendingRestores.isEmpty();
+  }
+
+  // Rebuilds one recovered stroke per slice.
+  private FrameScheduler.SliceResult restoreNextStroke() {
+    DrawingJournal.RecoveredStroke recoveredStroke = pendingRestores.peekFirst();
+    if (recoveredStroke == null) {
+      return FrameScheduler.SliceResult.DONE;
+    }
+    long start = System.nanoTime();
+    if (paletteMaterial == null
+        || !drawingController.restoreStroke(
+            recoveredStroke.getColorId(),
+            recoveredStroke.getRadius(),
+            recoveredStroke.getPoints())) {
+      // The anchor was lost, the task is queued again once there is one.
+      return FrameScheduler.SliceResult.DONE;
+    }
+    pendingRestores.removeFirst();
+    restoreNanos += System.nanoTime() - start;
+    if (pendingRestores.isEmpty()) {
+      Log.i(
+          TAG,
+          String.format(
+              "Restored the drawing, %s, strokes rebuilt in %.1fms",
+              journal, restoreNanos / 1e6f));
+      return FrameScheduler.SliceResult.DONE;
+    }
+    return FrameScheduler.SliceResult.CONTINUE;
+  }
+
+  @SuppressWarnings({"FutureReturnValueIgnored"})
+  private void createPaletteMaterial() {
+    StrokePalette.makeMaterial(this)
+        .thenAccept(
+            material1 -> {
+              paletteMaterial = material1;
+              drawingController.setMaterial(material1);
+            })
+        .exceptionally(
+            throwable -> {
+              displayError(throwable);
+              throw new CompletionException(throwable);
+            });
+  }
+
+  @SuppressWarnings({"FutureReturnValueIgnored"})
+  private void createHiddenMaterial() {
+    StrokePalette.makeHiddenMaterial(this)
+        .thenAccept(material -> hiddenMaterial = material)
+        .exceptionally(
+            throwable -> {
+              displayError(throwable);
+              throw new CompletionException(throwable);
+            });
+  }
+
+  @SuppressWarnings({"FutureReturnValueIgnored"})
+  private void setUpStreaming() {
+    String streamTo = getIntent().getStringExtra(EXTRA_STREAM_TO);
+    int streamPort = getIntent().getIntExtra(EXTRA_STREAM_PORT, 0);
+    try {
+      if (streamTo != null) {
+        int separator = streamTo.lastIndexOf(':');
+        streamChannel =
+            StrokeStreamChannel.connect(
+                streamTo.substring(0, separator),
+                Integer.parseInt(streamTo.substring(separator + 1)));
+        isStreamSender = true;
+        // Only decodes the clock requests of the peer, to answer them.
+        streamReceiver = new StrokeStreamReceiver();
+      } else if (streamPort != 0) {
+        String bindAddress = getIntent().getStringExtra(EXTRA_STREAM_BIND);
+        streamChannel =
+            StrokeStreamChannel.listen(
+                bindAddress != null ? bindAddress : DEFAULT_STREAM_BIND, streamPort);
+        streamReceiver = new StrokeStreamReceiver();
+      }
+    } catch (IOException | RuntimeException e) {
+      Log.e(TAG, "Unable to open the stroke stream", e);
+    }
+  }
 
+  private void setUpColorPickerUi() {
+    ImageView colorPickerIcon = (ImageView) findViewById(R.id.colorPickerIcon);
     ImageView whiteCircle = (ImageView) findViewById(R.id.whiteCircle);
     whiteCircle.setOnClickListener(
         (onClick) -> {
-          setColor(WHITE);
+          selectColor(StrokePalette.WHITE);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_white);
         });
     ImageView redCircle = (ImageView) findViewById(R.id.redCircle);
     redCircle.setOnClickListener(
         (onClick) -> {
-          setColor(RED);
+          selectColor(StrokePalette.RED);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_red);
         });
 
     ImageView greenCircle = (ImageView) findViewById(R.id.greenCircle);
     greenCircle.setOnClickListener(
         (onClick) -> {
-          setColor(GREEN);
+          selectColor(StrokePalette.GREEN);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_green);
         });
 
     ImageView blueCircle = (ImageView) findViewById(R.id.blueCircle);
     blueCircle.setOnClickListener(
         (onClick) -> {
-          setColor(BLUE);
+          selectColor(StrokePalette.BLUE);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_blue);
         });
 
     ImageView blackCircle = (ImageView) findViewById(R.id.blackCircle);
     blackCircle.setOnClickListener(
         (onClick) -> {
-          setColor(BLACK);
+          selectColor(StrokePalette.BLACK);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_black);
         });
 
     ImageView rainbowCircle = (ImageView) findViewById(R.id.rainbowCircle);
     rainbowCircle.setOnClickListener(
         (onClick) -> {
-          setTexture(R.drawable.rainbow_texture);
+          selectColor(StrokePalette.RAINBOW);
           colorPickerIcon.setImageResource(R.drawable.ic_selected_rainbow);
         });
   }
 
-  @SuppressWarnings({"FutureReturnValueIgnored"})
-  private void setTexture(int resourceId) {
-    Texture.builder()
-        .setSource(fragment.getContext(), resourceId)
-        .setSampler(Sampler.builder().setWrapMode(WrapMode.REPEAT).build())
-        .build()
-        .thenCompose(
-            texture -> MaterialFactory.makeOpaqueWithTexture(fragment.getContext(), texture))
-        .thenAccept(material1 -> material = material1.makeCopy())
-        .exceptionally(
-            throwable -> {
-              displayError(throwable);
-              throw new CompletionException(throwable);
-            });
-
+  private void selectColor(int colorId) {
+    drawingController.setColor(colorId);
     colorPanel.setVisibility(View.GONE);
     controlPanel.setVisibility(View.VISIBLE);
   }
 
-  @SuppressWarnings({"FutureReturnValueIgnored"})
-  private void setColor(Color color) {
-    MaterialFactory.makeOpaqueWithColor(fragment.getContext(), color)
-        .thenAccept(material1 -> material = material1.makeCopy())
-        .exceptionally(
-            throwable -> {
-              displayError(throwable);
-              throw new CompletionException(throwable);
-            });
-    colorPanel.setVisibility(View.GONE);
-    controlPanel.setVisibility(View.VISIBLE);
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (frameSource.isTracking()) {
+      fragment.getPlaneDiscoveryController().hide();
+    }
+    drawingController.applyPendingShapes();
+    updateRestore();
+    updateStreaming();
+    if (timeLapse != null && timeLapse.update(SystemClock.uptimeMillis())) {
+      stopTimeLapse();
+    }
   }
 
-  @Override
-  public void onPeekTouch(HitTestResult hitTestResult, MotionEvent tap) {
-    int action = tap.getAction();
-    Camera camera = fragment.getArSceneView().getScene().getCamera();
-    Ray ray = camera.screenPointToRay(tap.getX(), tap.getY());
-    Vector3 drawPoint = ray.getPoint(DRAW_DISTANCE);
-    if (action == MotionEvent.ACTION_DOWN) {
-      if (anchorNode == null) {
-        ArSceneView arSceneView = fragment.getArSceneView();
-        com.google.ar.core.Camera coreCamera = arSceneView.getArFrame().getCamera();
-        if (coreCamera.getTrackingState() != TrackingState.TRACKING) {
+  // Replays the drawing, or starts over if it is already playing. The strokes are already split
+  // into chunks, so nothing is built and playing starts right away.
+  private boolean startTimeLapse(float speed) {
+    if (timeLapse != null && timeLapse.isPlaying()) {
+      timeLapse.seekTo(0);
+      return true;
+    }
+    startupScheduler.ensureRun(TASK_HIDDEN_MATERIAL);
+    if (hiddenMaterial == null) {
+      return false;
+    }
+    timeLapse = new TimeLapse(drawingController.getStrokes(), hiddenMaterial, speed);
+    timeLapse.start();
+    return true;
+  }
+
+  private void stopTimeLapse() {
+    if (timeLapse == null) {
+      return;
+    }
+    timeLapse.stop();
+    Log.i(TAG, timeLapse.toString());
+    timeLapse = null;
+  }
+
+  // Edits go out once per frame so that all points of a frame go out in one message.
+  private void updateStreaming() {
+    flushEdits();
+    if (streamReceiver == null || streamReceiver.isFailed()) {
+      return;
+    }
+    if (isStreamSender) {
+      // The peer only sends clock requests, which are answered right away.
+      receiveMessages(null);
+    } else {
+      long now = SystemClock.uptimeMillis();
+      if (now - lastClockRequestMillis >= CLOCK_REQUEST_INTERVAL_MILLIS) {
+        streamChannel.send(streamReceiver.requestClock());
+        lastClockRequestMillis = now;
+      }
+      if (remoteDrawing == null) {
+        AnchorNode anchorNode = drawingController.getOrCreateAnchorNode();
+        if (anchorNode == null || paletteMaterial == null) {
           return;
         }
-        Pose pose = coreCamera.getPose();
-        anchorNode = new AnchorNode(arSceneView.getSession().createAnchor(pose));
-        anchorNode.setParent(arSceneView.getScene());
+        remoteDrawing = new RemoteDrawing(anchorNode, paletteMaterial);
       }
-      currentStroke = new Stroke(anchorNode, material);
-      strokes.add(currentStroke);
-      currentStroke.add(drawPoint);
-    } else if (action == MotionEvent.ACTION_MOVE && currentStroke != null) {
-      currentStroke.add(drawPoint);
+      // A burst of messages, e.g. after a network stall, is applied over several frames.
+      if (!frameScheduler.isQueued(TASK_STREAM_RECEIVE)) {
+        frameScheduler.post(
+            TASK_STREAM_RECEIVE, FrameScheduler.PRIORITY_NORMAL, this::receiveMessage);
+      }
+    }
+  }
+
+  // Hands the edits encoded since the last call to the journal and the peer.
+  private void flushEdits() {
+    ByteBuffer batch = strokeEncoder.takeBatch();
+    if (batch == null) {
+      return;
+    }
+    if (journal != null) {
+      journal.append(batch.duplicate());
+    }
+    if (isStreamSender && !streamReceiver.isFailed()) {
+      streamChannel.send(batch);
+    }
+  }
+
+  // Applies one message from the peer per slice, until there are no more.
+  private FrameScheduler.SliceResult receiveMessage() {
+    ByteBuffer bytes = streamChannel.poll();
+    if (bytes == null) {
+      return FrameScheduler.SliceResult.DONE;
+    }
+    receive(bytes, remoteDrawing);
+    return streamReceiver.isFailed()
+        ? FrameScheduler.SliceResult.DONE
+        : FrameScheduler.SliceResult.CONTINUE;
+  }
+
+  private void receiveMessages(StrokeListener listener) {
+    ByteBuffer bytes;
+    while (!streamReceiver.isFailed() && (bytes = streamChannel.poll()) != null) {
+      receive(bytes, listener);
+    }
+  }
+
+  // Decodes bytes of the peer and answers its clock requests. A peer that sent something invalid
+  // is cut off, there is no way to find the next message after it.
+  private void receive(ByteBuffer bytes, StrokeListener listener) {
+    streamReceiver.receive(bytes, listener);
+    ByteBuffer replies = streamReceiver.takeReplies();
+    if (replies != null) {
+      streamChannel.send(replies);
+    }
+    if (streamReceiver.isFailed()) {
+      streamChannel.close();
     }
   }
 
+  // The process may be killed any time after this, so the journal doesn't wait for its interval.
   @Override
-  public void onUpdate(FrameTime frameTime) {
-    com.google.ar.core.Camera camera = fragment.getArSceneView().getArFrame().getCamera();
-    if (camera.getTrackingState() == TrackingState.TRACKING) {
-      fragment.getPlaneDiscoveryController().hide();
+  protected void onPause() {
+    super.onPause();
+    flushEdits();
+    if (journal != null) {
+      journal.sync();
+    }
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    strokeExecutor.shutdownNow();
+    Log.i(TAG, frameScheduler.toString());
+    if (journal != null) {
+      // The writer thread finishes writing on its own, the main thread doesn't wait for the disk.
+      journal.close();
+    }
+    if (streamChannel != null) {
+      Log.i(TAG, String.valueOf(isStreamSender ? strokeEncoder : streamReceiver));
+      streamChannel.close();
     }
   }
 
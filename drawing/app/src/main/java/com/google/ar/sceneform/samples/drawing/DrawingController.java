@@ -0,0 +1,340 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.MotionEvent;
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.NodeParent;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Turns touches into strokes. The camera state comes from a {@link FrameSource}, so the same code
+ * draws with a live ARCore session and with the scripted sessions of the unit tests.
+ *
+ * <p>Every finger on the screen draws its own stroke. The points of each stroke are filtered,
+ * simplified and meshed by its own {@link StrokePipeline} on the given executor, and the results
+ * are shown by {@link #applyPendingShapes()} once per frame.
+ */
+public class DrawingController implements Scene.OnPeekTouchListener {
+
+  private static final String TAG = DrawingController.class.getSimpleName();
+  private static final float DRAW_DISTANCE = 0.13f;
+
+  private final FrameSource frameSource;
+  private final NodeParent sceneRoot;
+  private final Executor executor;
+  // Published as immutable snapshots, so that other threads can read the drawing without locks.
+  private final StrokeRegistry strokes = new StrokeRegistry();
+  // Strokes by pointer id while the pointer is down.
+  private final SparseArray<ActiveStroke> activeStrokes = new SparseArray<>();
+  // Strokes whose pipelines have results left to show, including those that were lifted.
+  private final ArrayList<ActiveStroke> pendingStrokes = new ArrayList<>();
+
+  private AnchorNode anchorNode;
+  private Material material;
+  private MeshUploader meshUploader = MeshUploader.SCENEFORM;
+  private int colorId = StrokePalette.WHITE;
+  private int nextStrokeId;
+  // Restored strokes come before the ones drawn since launch, like in the journal they came from.
+  private int restoredStrokeCount;
+  private StrokeListener strokeListener;
+  private boolean mirrorEnabled;
+
+  private static class ActiveStroke {
+    final int id;
+    final StrokePipeline pipeline;
+    final StrokePredictor predictor = new StrokePredictor();
+
+    ActiveStroke(int id, StrokePipeline pipeline) {
+      this.id = id;
+      this.pipeline = pipeline;
+    }
+  }
+
+  /** Creates a controller that processes strokes on the calling thread. */
+  public DrawingController(FrameSource frameSource, NodeParent sceneRoot) {
+    this(frameSource, sceneRoot, Runnable::run);
+  }
+
+  /**
+   * Creates a controller that processes strokes on the given executor, which should have a thread
+   * for every finger that is expected to draw at the same time.
+   */
+  public DrawingController(FrameSource frameSource, NodeParent sceneRoot, Executor executor) {
+    this.frameSource = frameSource;
+    this.sceneRoot = sceneRoot;
+    this.executor = executor;
+  }
+
+  /** Sets the material shared by all strokes, see {@link StrokePalette}. */
+  public void setMaterial(Material material) {
+    this.material = material;
+  }
+
+  /**
+   * Sets how the meshes of strokes become renderables, {@link MeshUploader#SCENEFORM} by default.
+   */
+  public void setMeshUploader(MeshUploader meshUploader) {
+    this.meshUploader = meshUploader;
+  }
+
+  /** Sets the {@link StrokePalette} color of the strokes that are started from now on. */
+  public void setColor(int colorId) {
+    this.colorId = colorId;
+  }
+
+  /**
+   * Draws every new stroke together with its mirror image across the plane x = 0 of the anchor,
+   * the vertical plane the camera looked along when the first stroke was drawn. The mirror image
+   * is a copy of the stroke, see {@link Stroke#addInstance(Vector3, boolean)}, so it follows the
+   * stroke while it is drawn without building a mesh of its own.
+   */
+  public void setMirrorEnabled(boolean mirrorEnabled) {
+    this.mirrorEnabled = mirrorEnabled;
+  }
+
+  /** Sets the listener that is told about every edit, or null to stop telling anyone. */
+  public void setStrokeListener(StrokeListener strokeListener) {
+    this.strokeListener = strokeListener;
+  }
+
+  /** Returns the node all strokes are relative to, creating it if the camera is tracking. */
+  public AnchorNode getOrCreateAnchorNode() {
+    if (anchorNode == null && frameSource.isTracking()) {
+      Pose pose = frameSource.getCameraPose();
+      anchorNode = frameSource.createAnchorNode(pose);
+      anchorNode.setParent(sceneRoot);
+    }
+    return anchorNode;
+  }
+
+  /**
+   * Adds a finished stroke that was drawn before, e.g. one recovered from a {@link
+   * DrawingJournal}. The listener isn't told, the stroke is already part of the drawing it knows.
+   *
+   * @return false if there is no anchor to add the stroke to yet
+   */
+  public boolean restoreStroke(int colorId, float radius, PointList pointsInLocal) {
+    if (getOrCreateAnchorNode() == null) {
+      return false;
+    }
+    Stroke stroke = new Stroke(anchorNode, material, colorId, radius, meshUploader);
+    stroke.restore(pointsInLocal);
+    strokes.add(restoredStrokeCount++, stroke);
+    return true;
+  }
+
+  /** Touches are handled here so that they are never offered to the nodes of the scene. */
+  @Override
+  public void onPeekTouch(HitTestResult hitTestResult, MotionEvent tap) {
+    int action = tap.getActionMasked();
+    if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
+      beginStroke(tap, tap.getActionIndex());
+    } else if (action == MotionEvent.ACTION_MOVE) {
+      for (int i = 0; i < tap.getPointerCount(); i++) {
+        ActiveStroke activeStroke = activeStrokes.get(tap.getPointerId(i));
+        if (activeStroke != null) {
+          activeStroke.predictor.addSamples(tap, i);
+          activeStroke.pipeline.add(
+              getDrawPoint(tap.getX(i), tap.getY(i)),
+              getPredictedDrawPoint(activeStroke.predictor),
+              tap.getEventTime());
+        }
+      }
+    } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP) {
+      endStroke(tap.getPointerId(tap.getActionIndex()));
+    } else if (action == MotionEvent.ACTION_CANCEL) {
+      while (activeStrokes.size() > 0) {
+        endStroke(activeStrokes.keyAt(0));
+      }
+    }
+  }
+
+  private void beginStroke(MotionEvent tap, int pointerIndex) {
+    if (getOrCreateAnchorNode() == null) {
+      return;
+    }
+    Stroke stroke =
+        new Stroke(anchorNode, material, colorId, Stroke.CYLINDER_RADIUS, meshUploader);
+    ActiveStroke activeStroke =
+        new ActiveStroke(nextStrokeId++, new StrokePipeline(stroke, executor));
+    if (mirrorEnabled) {
+      stroke.addInstance(Vector3.zero(), true);
+    }
+    strokes.add(stroke);
+    activeStrokes.put(tap.getPointerId(pointerIndex), activeStroke);
+    pendingStrokes.add(activeStroke);
+    if (strokeListener != null) {
+      strokeListener.onStrokeBegin(activeStroke.id, colorId, stroke.getRadius());
+    }
+    activeStroke.predictor.addSamples(tap, pointerIndex);
+    activeStroke.pipeline.add(
+        getDrawPoint(tap.getX(pointerIndex), tap.getY(pointerIndex)), null, tap.getEventTime());
+  }
+
+  private void endStroke(int pointerId) {
+    ActiveStroke activeStroke = activeStrokes.get(pointerId);
+    if (activeStroke == null) {
+      return;
+    }
+    activeStrokes.remove(pointerId);
+    activeStroke.pipeline.finish();
+    Log.d(TAG, activeStroke.predictor.toString());
+  }
+
+  /**
+   * Shows the meshes the pipelines finished since the last call and tells the listener about the
+   * new points. Call once per frame on the main thread.
+   */
+  public void applyPendingShapes() {
+    for (int i = pendingStrokes.size() - 1; i >= 0; i--) {
+      ActiveStroke activeStroke = pendingStrokes.get(i);
+      if (activeStroke.pipeline.publish(strokeListener, activeStroke.id)) {
+        pendingStrokes.remove(i);
+        if (strokeListener != null) {
+          strokeListener.onStrokeEnd(activeStroke.id);
+        }
+        Log.d(TAG, activeStroke.pipeline.getStroke().getInputStatistics());
+      }
+    }
+  }
+
+  /** Returns true when no pipeline has work queued or running. */
+  public boolean isIdle() {
+    for (int i = 0; i < pendingStrokes.size(); i++) {
+      if (!pendingStrokes.get(i).pipeline.isIdle()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Vector3 getDrawPoint(float x, float y) {
+    Ray ray = frameSource.screenPointToRay(x, y);
+    return ray.getPoint(DRAW_DISTANCE);
+  }
+
+  private Vector3 getPredictedDrawPoint(StrokePredictor strokePredictor) {
+    if (!strokePredictor.predict()) {
+      return null;
+    }
+    return getDrawPoint(strokePredictor.getPredictedX(), strokePredictor.getPredictedY());
+  }
+
+  /**
+   * Adds copies of the most recent stroke, each one step further away than the one before, e.g. one
+   * copy to duplicate the stroke. The copies share the mesh of the stroke and go away with it on
+   * undo. A mirrored stroke gets mirrored copies as well.
+   *
+   * @param stepInLocal the offset between copies in the local space of the anchor
+   * @return false if there is no stroke to copy
+   */
+  public boolean arrayLastStroke(int copies, Vector3 stepInLocal) {
+    if (strokes.isEmpty()) {
+      return false;
+    }
+    Stroke stroke = strokes.getSnapshot().get(strokes.size() - 1);
+    boolean mirrored = stroke.hasMirroredInstances();
+    for (int i = 1; i <= copies; i++) {
+      Vector3 offset = stepInLocal.scaled(i);
+      stroke.addInstance(offset, false);
+      if (mirrored) {
+        stroke.addInstance(new Vector3(-offset.x, offset.y, offset.z), true);
+      }
+    }
+    Log.d(TAG, getInstanceStatistics());
+    return true;
+  }
+
+  /** Describes how many nodes show the strokes and how many meshes they share. */
+  public String getInstanceStatistics() {
+    StrokeRegistry.Snapshot snapshot = strokes.getSnapshot();
+    int instanceCount = 0;
+    int meshCount = 0;
+    for (int i = 0; i < snapshot.size(); i++) {
+      instanceCount += snapshot.get(i).getInstanceCount();
+      meshCount += snapshot.get(i).getMeshCount();
+    }
+    return String.format(
+        "%s: %d strokes shown by %d nodes sharing %d meshes",
+        TAG, snapshot.size(), instanceCount, meshCount);
+  }
+
+  /** Removes the most recent stroke. */
+  public void undo() {
+    Stroke stroke = strokes.removeLast();
+    if (stroke == null) {
+      return;
+    }
+    restoredStrokeCount = Math.min(restoredStrokeCount, strokes.size());
+    for (int i = 0; i < pendingStrokes.size(); i++) {
+      ActiveStroke activeStroke = pendingStrokes.get(i);
+      if (activeStroke.pipeline.getStroke() == stroke) {
+        cancel(activeStroke);
+        pendingStrokes.remove(i);
+        break;
+      }
+    }
+    // The points may still belong to a worker, so they are left to the garbage collector.
+    stroke.detach();
+    if (strokeListener != null) {
+      strokeListener.onUndo();
+    }
+  }
+
+  /** Removes all strokes. */
+  public void clear() {
+    for (ActiveStroke activeStroke : pendingStrokes) {
+      cancel(activeStroke);
+    }
+    pendingStrokes.clear();
+    for (Stroke stroke : strokes.getSnapshot()) {
+      stroke.detach();
+    }
+    strokes.clear();
+    restoredStrokeCount = 0;
+    if (strokeListener != null) {
+      strokeListener.onClear();
+    }
+  }
+
+  private void cancel(ActiveStroke activeStroke) {
+    activeStroke.pipeline.cancel();
+    for (int i = 0; i < activeStrokes.size(); i++) {
+      if (activeStrokes.valueAt(i) == activeStroke) {
+        activeStrokes.remove(activeStrokes.keyAt(i));
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the current strokes as an immutable snapshot, which may be read on any thread while the
+   * drawing goes on changing.
+   */
+  public StrokeRegistry.Snapshot getStrokes() {
+    return strokes.getSnapshot();
+  }
+}
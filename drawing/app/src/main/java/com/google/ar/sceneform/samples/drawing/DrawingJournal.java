@@ -0,0 +1,501 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.util.Log;
+import com.google.ar.sceneform.math.Vector3;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps a drawing on disk so that it survives a crash or a lost session: every edit is appended to
+ * a journal file as it happens, in the {@link StrokeProtocol} encoding of a {@link
+ * StrokeStreamSender}.
+ *
+ * <p>{@link #append(ByteBuffer)} only queues the bytes, so the main thread never waits on the
+ * disk. A writer thread writes everything queued in one go at most every {@link
+ * #SYNC_INTERVAL_MILLIS} and then forces it to the storage device, so an edit is durable that long
+ * after it was made and a burst of edits costs one sync. The writer decodes what it writes into its
+ * own copy of the drawing; once the journal has grown past twice the size of the last snapshot, the
+ * drawing is written to a new snapshot and the journal starts over.
+ *
+ * <p>Both files start with a generation number. A new snapshot is renamed into place before the
+ * journal is reset to its generation, so a journal whose generation doesn't match the snapshot is
+ * already contained in it and is ignored. An edit that was only partly written when the app died
+ * is ignored as well, since its message is incomplete.
+ *
+ * <p>Recovery runs on the writer thread before the first write: the snapshot and the journal are
+ * replayed, strokes that were still being drawn are ended, and the result is compacted into a new
+ * snapshot. Edits appended in the meantime wait in the queue.
+ */
+public class DrawingJournal implements Closeable {
+
+  private static final String TAG = DrawingJournal.class.getSimpleName();
+  public static final long SYNC_INTERVAL_MILLIS = 100;
+  private static final int MINIMUM_COMPACTION_BYTES = 256 * 1024;
+  private static final int HEADER_SIZE = 8;
+  private static final int POINTS_PER_MESSAGE = 256;
+  private static final String JOURNAL_FILE = "drawing.journal";
+  private static final String SNAPSHOT_FILE = "drawing.snapshot";
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  /** A finished stroke read back from the journal. */
+  public static final class RecoveredStroke {
+    private final int id;
+    private final int colorId;
+    private final float radius;
+    private final PointStore points = new PointStore();
+
+    RecoveredStroke(int id, int colorId, float radius) {
+      this.id = id;
+      this.colorId = colorId;
+      this.radius = radius;
+    }
+
+    public int getColorId() {
+      return colorId;
+    }
+
+    public float getRadius() {
+      return radius;
+    }
+
+    /** Returns the points in the local space of the drawing's anchor. */
+    public PointList getPoints() {
+      return points;
+    }
+  }
+
+  // The drawing as the writer thread knows it, the same edits applied the same way as by the
+  // DrawingController and RemoteDrawing.
+  private static class JournalDrawing implements StrokeListener {
+    final ArrayList<RecoveredStroke> strokes = new ArrayList<>();
+    final HashMap<Integer, RecoveredStroke> activeStrokes = new HashMap<>();
+
+    @Override
+    public void onStrokeBegin(int strokeId, int colorId, float radius) {
+      RecoveredStroke stroke = new RecoveredStroke(strokeId, colorId, radius);
+      strokes.add(stroke);
+      activeStrokes.put(strokeId, stroke);
+    }
+
+    @Override
+    public void onStrokePoints(int strokeId, List<Vector3> pointsInLocal) {
+      RecoveredStroke stroke = activeStrokes.get(strokeId);
+      if (stroke != null) {
+        for (int i = 0; i < pointsInLocal.size(); i++) {
+          stroke.points.add(pointsInLocal.get(i));
+        }
+      }
+    }
+
+    @Override
+    public void onStrokeEnd(int strokeId) {
+      activeStrokes.remove(strokeId);
+    }
+
+    @Override
+    public void onUndo() {
+      if (!strokes.isEmpty()) {
+        activeStrokes.values().remove(strokes.remove(strokes.size() - 1));
+      }
+    }
+
+    @Override
+    public void onClear() {
+      strokes.clear();
+      activeStrokes.clear();
+    }
+
+    int getPointCount() {
+      int count = 0;
+      for (RecoveredStroke stroke : strokes) {
+        count += stroke.points.size();
+      }
+      return count;
+    }
+
+    // Encodes the drawing as the edits that create it. Strokes that are still being drawn keep
+    // their ids and stay open, so the journal can go on adding to them. Finished strokes are begun
+    // and ended one after the other, so they can share any id no open stroke uses.
+    ByteBuffer encode() {
+      int finishedId = 0;
+      while (activeStrokes.containsKey(finishedId)) {
+        finishedId++;
+      }
+      StrokeStreamSender encoder = new StrokeStreamSender();
+      ArrayList<Vector3> points = new ArrayList<>(POINTS_PER_MESSAGE);
+      for (RecoveredStroke stroke : strokes) {
+        boolean active = activeStrokes.get(stroke.id) == stroke;
+        int strokeId = active ? stroke.id : finishedId;
+        encoder.onStrokeBegin(strokeId, stroke.colorId, stroke.radius);
+        for (int i = 0; i < stroke.points.size(); i++) {
+          points.add(stroke.points.get(i));
+          if (points.size() == POINTS_PER_MESSAGE || i == stroke.points.size() - 1) {
+            encoder.onStrokePoints(strokeId, points);
+            points.clear();
+          }
+        }
+        if (!active) {
+          encoder.onStrokeEnd(strokeId);
+        }
+      }
+      ByteBuffer bytes = encoder.takeBatch();
+      return bytes != null ? bytes : ByteBuffer.allocate(0);
+    }
+  }
+
+  private final File journalFile;
+  private final File snapshotFile;
+  private final Thread thread;
+  private final CompletableFuture<List<RecoveredStroke>> recovery = new CompletableFuture<>();
+  private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+  // Guarded by lock. The writer swaps the queue for an empty one, so appends never wait for a copy.
+  private final Object lock = new Object();
+  private ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+  private boolean syncRequested;
+  private boolean closing;
+
+  // Only used by the writer thread.
+  private final JournalDrawing drawing = new JournalDrawing();
+  private StrokeStreamReceiver decoder = new StrokeStreamReceiver();
+  private RandomAccessFile journal;
+  private long generation;
+  private long journalBytes;
+  private long snapshotBytes;
+
+  // Statistics, written by one thread and read for logging by any.
+  private volatile long recoveryNanos;
+  private volatile int recoveredPoints;
+  private volatile long appendCount;
+  private volatile long appendNanosTotal;
+  private volatile long appendNanosMax;
+  private volatile long writtenBytes;
+  private volatile int syncCount;
+  private volatile long syncNanosTotal;
+  private volatile long syncNanosMax;
+  private volatile int compactionCount;
+  private volatile long compactionNanosTotal;
+
+  /**
+   * Opens the journal in the directory, creating it if needed, and starts recovering the drawing
+   * it holds, see {@link #getRecovery()}.
+   */
+  public DrawingJournal(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    journalFile = new File(directory, JOURNAL_FILE);
+    snapshotFile = new File(directory, SNAPSHOT_FILE);
+    thread = new Thread(this::run, TAG);
+    thread.start();
+  }
+
+  /**
+   * Returns the strokes of the drawing that was on disk when the journal was opened, oldest first.
+   * Completes on the writer thread.
+   */
+  public CompletableFuture<List<RecoveredStroke>> getRecovery() {
+    return recovery;
+  }
+
+  /**
+   * Queues encoded edits, e.g. a {@link StrokeStreamSender#takeBatch()}, to be written. Returns
+   * immediately. The buffer must not be changed afterwards.
+   */
+  public void append(ByteBuffer bytes) {
+    long start = System.nanoTime();
+    synchronized (lock) {
+      if (closing) {
+        return;
+      }
+      queue.addLast(bytes);
+      if (queue.size() == 1) {
+        lock.notifyAll();
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    appendCount++;
+    appendNanosTotal += nanos;
+    appendNanosMax = Math.max(appendNanosMax, nanos);
+  }
+
+  /**
+   * Writes and syncs what is queued without waiting for the sync interval, e.g. when the activity
+   * is paused and might not come back. Returns immediately.
+   */
+  public void sync() {
+    synchronized (lock) {
+      syncRequested = true;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Lets the writer thread write and sync what is queued and stop. Returns immediately, see {@link
+   * #getTermination()}.
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closing = true;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Completes on the writer thread once it stopped and closed the files, e.g. before the directory
+   * is opened again.
+   */
+  public CompletableFuture<Void> getTermination() {
+    return termination;
+  }
+
+  private void run() {
+    try {
+      recover();
+    } catch (IOException | RuntimeException e) {
+      Log.e(TAG, "Unable to recover the drawing", e);
+      recovery.completeExceptionally(e);
+      closeJournal();
+      termination.complete(null);
+      return;
+    }
+    try {
+      ArrayDeque<ByteBuffer> group = new ArrayDeque<>();
+      long lastSyncMillis = 0;
+      boolean stop = false;
+      while (!stop) {
+        synchronized (lock) {
+          while (queue.isEmpty() && !closing && !syncRequested) {
+            lock.wait();
+          }
+          // Let edits collect until the interval is over, so that they share one sync.
+          long waitMillis;
+          while (!closing
+              && !syncRequested
+              && (waitMillis = lastSyncMillis + SYNC_INTERVAL_MILLIS - nowMillis()) > 0) {
+            lock.wait(waitMillis);
+          }
+          ArrayDeque<ByteBuffer> taken = queue;
+          queue = group;
+          group = taken;
+          syncRequested = false;
+          stop = closing;
+        }
+        write(group);
+        group.clear();
+        lastSyncMillis = nowMillis();
+        if (journalBytes > Math.max(MINIMUM_COMPACTION_BYTES, 2 * snapshotBytes)) {
+          compact();
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      Log.e(TAG, "Journaling stopped", e);
+      synchronized (lock) {
+        closing = true;
+        queue.clear();
+      }
+    } catch (InterruptedException e) {
+      Log.e(TAG, "Journaling interrupted", e);
+    } finally {
+      closeJournal();
+      Log.i(TAG, toString());
+      termination.complete(null);
+    }
+  }
+
+  private void recover() throws IOException {
+    long start = System.nanoTime();
+    long snapshotGeneration = -1;
+    if (snapshotFile.exists()) {
+      snapshotGeneration = replay(snapshotFile, -1);
+      snapshotBytes = snapshotFile.length();
+    }
+    if (journalFile.exists()) {
+      replay(journalFile, Math.max(0, snapshotGeneration));
+    }
+    // Strokes that were being drawn when the app died are kept as far as they got. The decoder
+    // may still hold the start of an edit that was cut off, and the ids of those strokes.
+    drawing.activeStrokes.clear();
+    decoder = new StrokeStreamReceiver();
+    generation = Math.max(0, snapshotGeneration);
+
+    journal = new RandomAccessFile(journalFile, "rw");
+    if (drawing.strokes.isEmpty() && snapshotGeneration < 0) {
+      resetJournal();
+    } else {
+      compact();
+    }
+    recoveryNanos = System.nanoTime() - start;
+    recoveredPoints = drawing.getPointCount();
+    Log.i(
+        TAG,
+        String.format(
+            "Recovered %d strokes with %d points in %.1fms",
+            drawing.strokes.size(),
+            recoveredPoints,
+            (float) recoveryNanos / NANOS_PER_MILLI));
+    recovery.complete(Collections.unmodifiableList(new ArrayList<>(drawing.strokes)));
+  }
+
+  /**
+   * Decodes a file into the drawing and returns its generation. A file of another generation than
+   * the one required, or one that is too short to have a generation, is skipped.
+   *
+   * @param requiredGeneration the generation the file must have, or -1 for any
+   * @return the generation of the file, or -1 if it was skipped
+   */
+  private long replay(File file, long requiredGeneration) throws IOException {
+    try (FileInputStream input = new FileInputStream(file)) {
+      FileChannel channel = input.getChannel();
+      ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+      while (bytes.hasRemaining() && channel.read(bytes) >= 0) {}
+      bytes.flip();
+      if (bytes.remaining() < HEADER_SIZE) {
+        return -1;
+      }
+      long fileGeneration = bytes.getLong();
+      if (requiredGeneration >= 0 && fileGeneration != requiredGeneration) {
+        return -1;
+      }
+      decoder.receive(bytes, drawing);
+      return fileGeneration;
+    }
+  }
+
+  private void write(ArrayDeque<ByteBuffer> group) throws IOException {
+    if (group.isEmpty()) {
+      return;
+    }
+    FileChannel channel = journal.getChannel();
+    for (ByteBuffer bytes : group) {
+      int size = bytes.remaining();
+      ByteBuffer decoded = bytes.duplicate();
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      decoder.receive(decoded, drawing);
+      journalBytes += size;
+      writtenBytes += size;
+    }
+    long start = System.nanoTime();
+    channel.force(false);
+    long nanos = System.nanoTime() - start;
+    syncCount++;
+    syncNanosTotal += nanos;
+    syncNanosMax = Math.max(syncNanosMax, nanos);
+  }
+
+  // Writes the drawing to a new snapshot and empties the journal.
+  private void compact() throws IOException {
+    long start = System.nanoTime();
+    generation++;
+    ByteBuffer bytes = drawing.encode();
+    File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+    try (RandomAccessFile snapshot = new RandomAccessFile(temporaryFile, "rw")) {
+      snapshot.setLength(0);
+      FileChannel channel = snapshot.getChannel();
+      writeHeader(channel);
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+      channel.force(true);
+    }
+    if (!temporaryFile.renameTo(snapshotFile)) {
+      throw new IOException("Unable to replace " + snapshotFile);
+    }
+    snapshotBytes = snapshotFile.length();
+    resetJournal();
+    compactionCount++;
+    compactionNanosTotal += System.nanoTime() - start;
+  }
+
+  private void resetJournal() throws IOException {
+    journal.setLength(0);
+    FileChannel channel = journal.getChannel();
+    channel.position(0);
+    writeHeader(channel);
+    channel.force(true);
+    journalBytes = 0;
+  }
+
+  private void writeHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putLong(generation);
+    header.flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+  }
+
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to close the journal", e);
+    }
+  }
+
+  private static long nowMillis() {
+    return System.nanoTime() / NANOS_PER_MILLI;
+  }
+
+  public float getRecoveryMillis() {
+    return (float) recoveryNanos / NANOS_PER_MILLI;
+  }
+
+  /** Returns the longest time {@link #append(ByteBuffer)} took, in milliseconds. */
+  public float getMaxAppendMillis() {
+    return (float) appendNanosMax / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: recovered %d points in %.1fms, %d appends (mean %.4fms, max %.3fms), %d bytes in %d "
+            + "syncs (mean %.2fms, max %.2fms), %d compactions (mean %.1fms)",
+        TAG,
+        recoveredPoints,
+        getRecoveryMillis(),
+        appendCount,
+        appendCount == 0 ? 0f : (float) appendNanosTotal / appendCount / NANOS_PER_MILLI,
+        getMaxAppendMillis(),
+        writtenBytes,
+        syncCount,
+        syncCount == 0 ? 0f : (float) syncNanosTotal / syncCount / NANOS_PER_MILLI,
+        (float) syncNanosMax / NANOS_PER_MILLI,
+        compactionCount,
+        compactionCount == 0
+            ? 0f
+            : (float) compactionNanosTotal / compactionCount / NANOS_PER_MILLI);
+  }
+}
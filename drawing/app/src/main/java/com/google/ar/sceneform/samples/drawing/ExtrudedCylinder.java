@@ -33,6 +33,8 @@ import java.util.List;
 public class ExtrudedCylinder {
   private static final String TAG = ExtrudedCylinder.class.getSimpleName();
   private static final int NUMBER_OF_SIDES = 8;
+  // Two triangles per side of a segment.
+  private static final int INDICES_PER_SEGMENT = NUMBER_OF_SIDES * 6;
 
   private enum Direction {
     UP,
@@ -44,13 +46,15 @@ public class ExtrudedCylinder {
    *
    * @param radius the radius of the constructed cylinder
    * @param points the list of points the extruded cylinder will be constructed around
-   * @param material the material to use for rendering the cylinder
+   * @param material the material to use for rendering the cylinder, usually the {@link
+   *     StrokePalette} material
+   * @param colorId the row of the {@link StrokePalette} to draw with
    * @return renderable representing a cylinder with the given parameters
    */
   @SuppressWarnings("AndroidApiChecker")
   // CompletableFuture requires api level 24
   public static RenderableDefinition makeExtrudedCylinder(
-      float radius, List<Vector3> points, Material material) {
+      float radius, PointList points, Material material, int colorId) {
     AndroidPreconditions.checkMinAndroidApiLevel();
 
     if (points.size() < 2) {
@@ -59,12 +63,123 @@ public class ExtrudedCylinder {
 
     ArrayList<Vertex> vertices = new ArrayList<>();
     ArrayList<Integer> triangleIndices = new ArrayList<>();
+    makeMesh(radius, points, colorId, vertices, triangleIndices);
+    return makeDefinition(vertices, triangleIndices, material);
+  }
+
+  /**
+   * Like {@link #makeExtrudedCylinder(float, PointList, Material, int)}, for a stroke that won't
+   * change anymore, so it is worth spending more time on a mesh that is cheaper to draw.
+   *
+   * <p>The caps share the vertices of the rings at the ends of the stroke instead of having their
+   * own copies, and every ring shares the vertex where it closes with the one where it starts,
+   * because both have the same position and palette coordinates. The caps are then shaded with the
+   * normals of the sides, like a rounded end. The triangles are reordered with {@link
+   * VertexCacheOptimizer} and the vertices no triangle uses are left out.
+   *
+   * <p>The sides are split into one submesh per chunk of segments, e.g. so that a {@link
+   * TimeLapse} can show the stroke chunk by chunk. The chunks share the vertices, so the stroke
+   * looks the same as one built in a single piece. The start cap belongs to the first chunk and
+   * the end cap to the last, and triangles are only reordered within their chunk.
+   *
+   * @param segmentsPerSubmesh the number of segments in each submesh but the last, which may have
+   *     fewer
+   * @param statistics collects the effect of the optimization, or null
+   */
+  public static RenderableDefinition makeFinishedCylinder(
+      float radius,
+      PointList points,
+      Material material,
+      int colorId,
+      int segmentsPerSubmesh,
+      VertexCacheOptimizer.Statistics statistics) {
+    AndroidPreconditions.checkMinAndroidApiLevel();
+
+    if (points.size() < 2) {
+      return null;
+    }
+
+    ArrayList<Vertex> vertices = new ArrayList<>();
+    ArrayList<Integer> triangleIndices = new ArrayList<>();
+    makeMesh(radius, points, colorId, vertices, triangleIndices);
+
+    // Moves the caps next to the sides of their chunk: the start cap before the first segment
+    // and the end cap after the last one. makeMesh adds the caps after all the sides.
+    int sideVertexCount = points.size() * (NUMBER_OF_SIDES + 1);
+    int sideIndexCount = (points.size() - 1) * INDICES_PER_SEGMENT;
+    int capIndexCount = (triangleIndices.size() - sideIndexCount) / 2;
+    int[] indices = new int[triangleIndices.size()];
+    int next = 0;
+    for (int i = sideIndexCount; i < sideIndexCount + capIndexCount; i++) {
+      indices[next++] = getWeldedIndex(triangleIndices.get(i), sideVertexCount);
+    }
+    for (int i = 0; i < sideIndexCount; i++) {
+      indices[next++] = getWeldedIndex(triangleIndices.get(i), sideVertexCount);
+    }
+    for (int i = sideIndexCount + capIndexCount; i < triangleIndices.size(); i++) {
+      indices[next++] = getWeldedIndex(triangleIndices.get(i), sideVertexCount);
+    }
+
+    int segmentCount = points.size() - 1;
+    int submeshCount = getSubmeshCount(points.size(), segmentsPerSubmesh);
+    int[] submeshEnds = new int[submeshCount];
+    for (int submesh = 0; submesh < submeshCount; submesh++) {
+      int endSegment = Math.min((submesh + 1) * segmentsPerSubmesh, segmentCount);
+      submeshEnds[submesh] = capIndexCount + endSegment * INDICES_PER_SEGMENT;
+    }
+    submeshEnds[submeshCount - 1] = indices.length;
+
+    VertexCacheOptimizer.Result result =
+        VertexCacheOptimizer.optimize(indices, vertices.size(), submeshEnds);
+    if (statistics != null) {
+      statistics.add(toArray(triangleIndices), vertices.size(), result);
+    }
+
+    ArrayList<Vertex> optimizedVertices = new ArrayList<>(result.oldVertexIndices.length);
+    for (int oldIndex : result.oldVertexIndices) {
+      optimizedVertices.add(vertices.get(oldIndex));
+    }
+    ArrayList<Submesh> submeshes = new ArrayList<>(submeshCount);
+    int submeshStart = 0;
+    for (int submeshEnd : submeshEnds) {
+      ArrayList<Integer> submeshIndices = new ArrayList<>(submeshEnd - submeshStart);
+      for (int i = submeshStart; i < submeshEnd; i++) {
+        submeshIndices.add(result.indices[i]);
+      }
+      submeshes.add(
+          Submesh.builder().setTriangleIndices(submeshIndices).setMaterial(material).build());
+      submeshStart = submeshEnd;
+    }
+    return RenderableDefinition.builder()
+        .setVertices(optimizedVertices)
+        .setSubmeshes(submeshes)
+        .build();
+  }
+
+  /**
+   * Returns the number of submeshes {@link #makeFinishedCylinder} makes for a stroke, or 0 if it
+   * has too few points to draw.
+   */
+  public static int getSubmeshCount(int pointCount, int segmentsPerSubmesh) {
+    int segmentCount = pointCount - 1;
+    return segmentCount <= 0 ? 0 : (segmentCount + segmentsPerSubmesh - 1) / segmentsPerSubmesh;
+  }
+
+  private static void makeMesh(
+      float radius,
+      PointList points,
+      int colorId,
+      List<Vertex> vertices,
+      List<Integer> triangleIndices) {
     ArrayList<Quaternion> rotations = new ArrayList<>();
     Vector3 desiredUp = Vector3.up();
 
+    // Each point is read from the packed coordinates once and shared by its two segments.
+    Vector3 previousPoint = points.get(0);
     for (int point = 0; point < points.size() - 1; point++) {
-      generateVerticesFromPoints(
-          desiredUp, vertices, rotations, points.get(point + 1), points.get(point), radius);
+      Vector3 nextPoint = points.get(point + 1);
+      generateVerticesFromPoints(desiredUp, vertices, rotations, nextPoint, previousPoint, radius);
+      previousPoint = nextPoint;
     }
 
     updateConnectingPoints(vertices, points, rotations, radius);
@@ -76,6 +191,11 @@ public class ExtrudedCylinder {
     // Add end cap
     makeDisk(vertices, triangleIndices, points, points.size() - 1, Direction.DOWN);
 
+    applyPaletteUv(vertices, points.size() * (NUMBER_OF_SIDES + 1), StrokePalette.getV(colorId));
+  }
+
+  private static RenderableDefinition makeDefinition(
+      List<Vertex> vertices, List<Integer> triangleIndices, Material material) {
     Submesh submesh =
         Submesh.builder().setTriangleIndices(triangleIndices).setMaterial(material).build();
 
@@ -88,6 +208,33 @@ public class ExtrudedCylinder {
     return renderableDefinition;
   }
 
+  // Maps the last vertex of a ring to the first one, and the ring vertices of a cap to the ring at
+  // its end of the stroke. The cap centers keep their own vertex.
+  private static int getWeldedIndex(int index, int sideVertexCount) {
+    int ringSize = NUMBER_OF_SIDES + 1;
+    if (index >= sideVertexCount) {
+      int capStart = sideVertexCount;
+      int ringStart = 0;
+      if (index >= capStart + ringSize + 1) {
+        capStart += ringSize + 1;
+        ringStart = sideVertexCount - ringSize;
+      }
+      if (index == capStart) {
+        return index;
+      }
+      index = ringStart + index - capStart - 1;
+    }
+    return index % ringSize == NUMBER_OF_SIDES ? index - NUMBER_OF_SIDES : index;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
   private static void generateVerticesFromPoints(
       Vector3 desiredUp,
       List<Vertex> vertices,
@@ -178,7 +325,7 @@ public class ExtrudedCylinder {
   }
 
   private static void updateConnectingPoints(
-      List<Vertex> vertices, List<Vector3> points, List<Quaternion> rotations, float radius) {
+      List<Vertex> vertices, PointList points, List<Quaternion> rotations, float radius) {
     // Loop over each segment of cylinder, connecting the ends of this segment to start of the next.
     int currentSegmentVertexIndex = NUMBER_OF_SIDES + 1;
     int nextSegmentVertexIndex = currentSegmentVertexIndex + NUMBER_OF_SIDES + 1;
@@ -246,6 +393,21 @@ public class ExtrudedCylinder {
     }
   }
 
+  // Moves the distance along the stroke from v into u, where the rainbow row of the palette
+  // changes, and selects the palette row with v. The caps take the distance at their end of the
+  // stroke.
+  private static void applyPaletteUv(List<Vertex> vertices, int sideVertexCount, float v) {
+    for (int i = 0; i < sideVertexCount; i++) {
+      Vertex vertex = vertices.get(i);
+      vertex.setUvCoordinate(new UvCoordinate(vertex.getUvCoordinate().y, v));
+    }
+    float endDistance = vertices.get(sideVertexCount - 1).getUvCoordinate().x;
+    int endCapStart = sideVertexCount + NUMBER_OF_SIDES + 2;
+    for (int i = sideVertexCount; i < vertices.size(); i++) {
+      vertices.get(i).setUvCoordinate(new UvCoordinate(i < endCapStart ? 0 : endDistance, v));
+    }
+  }
+
   private static void generateTriangleIndices(List<Integer> triangleIndices, int numberOfPoints) {
     // Create triangles along the sides of cylinder part
     for (int segment = 0; segment < numberOfPoints - 1; segment++) {
@@ -272,7 +434,7 @@ public class ExtrudedCylinder {
   private static void makeDisk(
       List<Vertex> vertices,
       List<Integer> triangleIndices,
-      List<Vector3> points,
+      PointList points,
       int centerPointIndex,
       Direction direction) {
 
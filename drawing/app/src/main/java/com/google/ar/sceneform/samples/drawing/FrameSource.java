@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.collision.Ray;
+
+/**
+ * Supplies the camera state that drawing needs: whether the device is tracking, where the camera
+ * is and which ray goes through a point on the screen.
+ *
+ * <p>{@link ArFrameSource} reads this from the live ARCore session. The unit tests replay a
+ * fixed camera path instead, so that strokes can be drawn without a device.
+ */
+public interface FrameSource {
+
+  /** Returns true if the camera pose of the current frame can be used. */
+  boolean isTracking();
+
+  /** Returns the camera pose of the current frame in world space. */
+  Pose getCameraPose();
+
+  /** Returns the world space ray that goes through the given screen point, in pixels. */
+  Ray screenPointToRay(float x, float y);
+
+  /** Creates a node that stays at the given world pose. The node is not attached to the scene. */
+  AnchorNode createAnchorNode(Pose pose);
+}
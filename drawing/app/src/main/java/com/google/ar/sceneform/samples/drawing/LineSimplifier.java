@@ -16,70 +16,99 @@
 package com.google.ar.sceneform.samples.drawing;
 
 import com.google.ar.sceneform.math.Vector3;
-import java.util.ArrayList;
-import java.util.List;
 
-/** Smooths a given list of points */
+/** Smooths a given list of points, keeping the time each remaining point was drawn. */
 public class LineSimplifier {
 
   private static final String TAG = LineSimplifier.class.getSimpleName();
   private static final float MAXIMUM_SMOOTHING_DISTANCE = 0.005f;
   private static final int POINT_SMOOTHING_INTERVAL = 10;
 
-  private final ArrayList<Vector3> points = new ArrayList<>();
-  private final ArrayList<Vector3> smoothedPoints = new ArrayList<>();
+  private final PointStore points = new PointStore();
+  private final PointStore newlySmoothedPoints = new PointStore();
+  private final PointTimes times = new PointTimes();
+  private final PointTimes newlySmoothedTimes = new PointTimes();
+  private int smoothedPointCount;
 
   public LineSimplifier() {}
 
-  public void add(Vector3 point) {
+  public void add(Vector3 point, long timeMillis) {
     points.add(point);
-    if (points.size() - smoothedPoints.size() > POINT_SMOOTHING_INTERVAL) {
+    times.add(timeMillis);
+    if (points.size() - smoothedPointCount > POINT_SMOOTHING_INTERVAL) {
       smoothPoints();
     }
   }
 
   private void smoothPoints() {
-    List<Vector3> pointsToSmooth =
-        points.subList(points.size() - POINT_SMOOTHING_INTERVAL - 1, points.size() - 1);
-    ArrayList<Vector3> newlySmoothedPoints = smoothPoints(pointsToSmooth);
-    points.subList(points.size() - POINT_SMOOTHING_INTERVAL - 1, points.size() - 1).clear();
-    points.addAll(points.size() - 1, newlySmoothedPoints);
-    smoothedPoints.addAll(newlySmoothedPoints);
+    int from = points.size() - POINT_SMOOTHING_INTERVAL - 1;
+    int to = points.size() - 1;
+    newlySmoothedPoints.clear();
+    newlySmoothedTimes.clear();
+    smoothPoints(from, to, newlySmoothedPoints, newlySmoothedTimes);
+    points.replaceRange(from, to, newlySmoothedPoints);
+    times.replaceRange(from, to, newlySmoothedTimes);
+    smoothedPointCount += newlySmoothedPoints.size();
   }
 
-  // Line smoothing using the Ramer-Douglas-Peucker algorithm, modified for 3D smoothing.
-  private ArrayList<Vector3> smoothPoints(List<Vector3> pointsToSmooth) {
-    ArrayList<Vector3> results = new ArrayList<>();
+  // Line smoothing using the Ramer-Douglas-Peucker algorithm, modified for 3D smoothing. Smooths
+  // the points between from, inclusive, and to and appends the result and the times of its points.
+  private void smoothPoints(int from, int to, PointStore results, PointTimes resultTimes) {
     float maxDistance = 0.0f;
     int index = 0;
     float distance;
-    int endIndex = pointsToSmooth.size() - 1;
+    int endIndex = to - from - 1;
     for (int i = 0; i < endIndex - 1; i++) {
-      distance = getPerpendicularDistance(points.get(0), points.get(endIndex), points.get(i));
+      distance = getPerpendicularDistance(0, endIndex, i);
       if (distance > maxDistance) {
         index = i;
         maxDistance = distance;
       }
     }
     if (maxDistance > MAXIMUM_SMOOTHING_DISTANCE) {
-      ArrayList<Vector3> result1 = smoothPoints(pointsToSmooth.subList(0, index));
-      ArrayList<Vector3> result2 = smoothPoints(pointsToSmooth.subList(index + 1, endIndex));
-      results.addAll(result1);
-      results.addAll(result2);
+      smoothPoints(from, from + index, results, resultTimes);
+      smoothPoints(from + index + 1, from + endIndex, results, resultTimes);
     } else {
-      results.addAll(pointsToSmooth);
+      results.addRange(points, from, to);
+      resultTimes.addRange(times, from, to);
     }
-    return results;
   }
 
-  private float getPerpendicularDistance(Vector3 start, Vector3 end, Vector3 point) {
-    Vector3 crossProduct =
-        Vector3.cross(Vector3.subtract(point, start), Vector3.subtract(point, end));
-    float result = crossProduct.length() / Vector3.subtract(end, start).length();
+  // Distance of the point at pointIndex to the line through start and end, in the points list.
+  private float getPerpendicularDistance(int start, int end, int pointIndex) {
+    float pointX = points.getX(pointIndex);
+    float pointY = points.getY(pointIndex);
+    float pointZ = points.getZ(pointIndex);
+    float toStartX = pointX - points.getX(start);
+    float toStartY = pointY - points.getY(start);
+    float toStartZ = pointZ - points.getZ(start);
+    float toEndX = pointX - points.getX(end);
+    float toEndY = pointY - points.getY(end);
+    float toEndZ = pointZ - points.getZ(end);
+    float crossX = toStartY * toEndZ - toStartZ * toEndY;
+    float crossY = toStartZ * toEndX - toStartX * toEndZ;
+    float crossZ = toStartX * toEndY - toStartY * toEndX;
+    float lineX = points.getX(end) - points.getX(start);
+    float lineY = points.getY(end) - points.getY(start);
+    float lineZ = points.getZ(end) - points.getZ(start);
+    float result =
+        (float) Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ)
+            / (float) Math.sqrt(lineX * lineX + lineY * lineY + lineZ * lineZ);
     return result;
   }
 
-  public List<Vector3> getPoints() {
+  public PointList getPoints() {
     return points;
   }
+
+  /** Returns the times of the points, with the same indices as {@link #getPoints()}. */
+  public PointTimes getTimes() {
+    return times;
+  }
+
+  public void clear() {
+    points.clear();
+    times.clear();
+    smoothedPointCount = 0;
+  }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.Renderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+
+/**
+ * Turns the meshes of strokes into renderables, the only step of drawing that needs the renderer.
+ *
+ * <p>{@link #SCENEFORM} uploads them to Sceneform. Unit tests pass an uploader that only counts
+ * the meshes, so that strokes can be drawn without a GPU.
+ */
+public interface MeshUploader {
+
+  /** Uploads every mesh to Sceneform and waits for it. */
+  MeshUploader SCENEFORM =
+      (definition, previous) -> {
+        if (previous == null) {
+          return ModelRenderable.builder().setSource(definition).build().join();
+        }
+        ((ModelRenderable) previous).updateFromDefinition(definition);
+        return previous;
+      };
+
+  /**
+   * Shows a mesh, replacing the one of an earlier renderable if there is one. Main thread only.
+   *
+   * @param previous a renderable this uploader returned before for the same stroke, or null
+   * @return the renderable to show the mesh with
+   */
+  Renderable upload(RenderableDefinition definition, Renderable previous);
+}
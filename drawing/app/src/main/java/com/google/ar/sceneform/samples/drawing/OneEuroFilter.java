@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+/**
+ * The One Euro filter by Casiez et al. A low pass filter whose cutoff frequency rises with the
+ * speed of the signal, so slow movements are smoothed strongly while fast movements stay
+ * responsive.
+ */
+public class OneEuroFilter {
+
+  private final float minimumCutoff;
+  private final float beta;
+  private final float derivativeCutoff;
+
+  private boolean initialized;
+  private float previousValue;
+  private float previousDerivative;
+  private long previousTimeMillis;
+
+  /**
+   * @param minimumCutoff the cutoff frequency in Hz used when the signal is not moving
+   * @param beta how much the cutoff frequency grows with the speed of the signal
+   * @param derivativeCutoff the cutoff frequency in Hz used to smooth the speed estimate
+   */
+  public OneEuroFilter(float minimumCutoff, float beta, float derivativeCutoff) {
+    this.minimumCutoff = minimumCutoff;
+    this.beta = beta;
+    this.derivativeCutoff = derivativeCutoff;
+  }
+
+  public void reset() {
+    initialized = false;
+  }
+
+  public float filter(float value, long timeMillis) {
+    if (!initialized) {
+      initialized = true;
+      previousValue = value;
+      previousDerivative = 0;
+      previousTimeMillis = timeMillis;
+      return value;
+    }
+    float elapsedSeconds = (timeMillis - previousTimeMillis) / 1000f;
+    if (elapsedSeconds <= 0) {
+      return previousValue;
+    }
+    previousTimeMillis = timeMillis;
+
+    float derivative = (value - previousValue) / elapsedSeconds;
+    previousDerivative +=
+        smoothingFactor(elapsedSeconds, derivativeCutoff) * (derivative - previousDerivative);
+    float cutoff = minimumCutoff + beta * Math.abs(previousDerivative);
+    previousValue += smoothingFactor(elapsedSeconds, cutoff) * (value - previousValue);
+    return previousValue;
+  }
+
+  private static float smoothingFactor(float elapsedSeconds, float cutoff) {
+    float timeConstant = 1f / (2f * (float) Math.PI * cutoff);
+    return 1f / (1f + timeConstant / elapsedSeconds);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+/**
+ * An immutable, trimmed copy of a {@link PointList}, used for strokes that are finished.
+ *
+ * <p>The coordinates are either kept as floats, a third of the memory of one {@link
+ * com.google.ar.sceneform.math.Vector3} per point, or quantized to 16 bits per axis within the
+ * bounding box of the points, a sixth. For a stroke a meter long the quantization step is 1/65535
+ * of a meter, far below the precision of the tracking.
+ */
+public class PackedPoints implements PointList {
+
+  private static final int LEVELS = 0xFFFF;
+
+  private final int size;
+  private final float[] floats;
+  private final short[] shorts;
+  private final float[] origin = new float[3];
+  private final float[] step = new float[3];
+
+  private PackedPoints(int size, float[] floats, short[] shorts) {
+    this.size = size;
+    this.floats = floats;
+    this.shorts = shorts;
+  }
+
+  /**
+   * Copies the points of a list.
+   *
+   * @param quantize true to store 16 bits per coordinate instead of a float
+   */
+  public static PackedPoints pack(PointList points, boolean quantize) {
+    int size = points.size();
+    if (!quantize) {
+      float[] floats = new float[size * 3];
+      for (int i = 0; i < size; i++) {
+        floats[i * 3] = points.getX(i);
+        floats[i * 3 + 1] = points.getY(i);
+        floats[i * 3 + 2] = points.getZ(i);
+      }
+      return new PackedPoints(size, floats, null);
+    }
+
+    PackedPoints packed = new PackedPoints(size, null, new short[size * 3]);
+    float[] minimum = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] maximum = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int i = 0; i < size; i++) {
+      for (int axis = 0; axis < 3; axis++) {
+        float value = get(points, i, axis);
+        minimum[axis] = Math.min(minimum[axis], value);
+        maximum[axis] = Math.max(maximum[axis], value);
+      }
+    }
+    for (int axis = 0; axis < 3 && size > 0; axis++) {
+      packed.origin[axis] = minimum[axis];
+      packed.step[axis] = (maximum[axis] - minimum[axis]) / LEVELS;
+    }
+    for (int i = 0; i < size; i++) {
+      for (int axis = 0; axis < 3; axis++) {
+        float step = packed.step[axis];
+        int level =
+            step == 0 ? 0 : Math.round((get(points, i, axis) - packed.origin[axis]) / step);
+        packed.shorts[i * 3 + axis] = (short) level;
+      }
+    }
+    return packed;
+  }
+
+  private static float get(PointList points, int index, int axis) {
+    return axis == 0 ? points.getX(index) : axis == 1 ? points.getY(index) : points.getZ(index);
+  }
+
+  private float get(int index, int axis) {
+    if (floats != null) {
+      return floats[index * 3 + axis];
+    }
+    return origin[axis] + (shorts[index * 3 + axis] & LEVELS) * step[axis];
+  }
+
+  public boolean isQuantized() {
+    return shorts != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public float getX(int index) {
+    return get(index, 0);
+  }
+
+  @Override
+  public float getY(int index) {
+    return get(index, 1);
+  }
+
+  @Override
+  public float getZ(int index) {
+    return get(index, 2);
+  }
+
+  @Override
+  public long getByteSize() {
+    return floats != null ? 4L * floats.length : 2L * shorts.length + 4L * 6;
+  }
+}
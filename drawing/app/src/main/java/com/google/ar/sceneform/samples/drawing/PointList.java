@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * A read-only sequence of points stored as primitive coordinates, read by index instead of through
+ * one {@link Vector3} object per point.
+ */
+public interface PointList {
+
+  int size();
+
+  float getX(int index);
+
+  float getY(int index);
+
+  float getZ(int index);
+
+  /** Returns an estimate of the heap memory taken by the coordinates, in bytes. */
+  long getByteSize();
+
+  /** Returns a new vector with the coordinates of a point. */
+  default Vector3 get(int index) {
+    return new Vector3(getX(index), getY(index), getZ(index));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.math.Vector3;
+import java.util.Arrays;
+
+/**
+ * A growable list of points with the coordinates kept in one primitive array per axis, used for
+ * strokes that are still being drawn. Finished strokes are moved into a {@link PackedPoints}.
+ */
+public class PointStore implements PointList {
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private float[] x = new float[INITIAL_CAPACITY];
+  private float[] y = new float[INITIAL_CAPACITY];
+  private float[] z = new float[INITIAL_CAPACITY];
+  private int size;
+
+  public PointStore() {}
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public float getX(int index) {
+    return x[index];
+  }
+
+  @Override
+  public float getY(int index) {
+    return y[index];
+  }
+
+  @Override
+  public float getZ(int index) {
+    return z[index];
+  }
+
+  @Override
+  public long getByteSize() {
+    return 3L * 4 * x.length;
+  }
+
+  public void add(Vector3 point) {
+    add(point.x, point.y, point.z);
+  }
+
+  public void add(float pointX, float pointY, float pointZ) {
+    ensureCapacity(size + 1);
+    x[size] = pointX;
+    y[size] = pointY;
+    z[size] = pointZ;
+    size++;
+  }
+
+  /** Appends the points of {@code source} between {@code from}, inclusive, and {@code to}. */
+  public void addRange(PointList source, int from, int to) {
+    ensureCapacity(size + to - from);
+    for (int i = from; i < to; i++) {
+      x[size] = source.getX(i);
+      y[size] = source.getY(i);
+      z[size] = source.getZ(i);
+      size++;
+    }
+  }
+
+  /** Replaces the points between {@code from}, inclusive, and {@code to} with all of another. */
+  public void replaceRange(int from, int to, PointStore replacement) {
+    int newSize = size - (to - from) + replacement.size;
+    ensureCapacity(newSize);
+    int tail = size - to;
+    int newTo = from + replacement.size;
+    System.arraycopy(x, to, x, newTo, tail);
+    System.arraycopy(y, to, y, newTo, tail);
+    System.arraycopy(z, to, z, newTo, tail);
+    System.arraycopy(replacement.x, 0, x, from, replacement.size);
+    System.arraycopy(replacement.y, 0, y, from, replacement.size);
+    System.arraycopy(replacement.z, 0, z, from, replacement.size);
+    size = newSize;
+  }
+
+  /** Replaces the contents with the points of another list. */
+  public void copyFrom(PointList source) {
+    size = 0;
+    addRange(source, 0, source.size());
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= x.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, x.length * 2);
+    x = Arrays.copyOf(x, newCapacity);
+    y = Arrays.copyOf(y, newCapacity);
+    z = Arrays.copyOf(z, newCapacity);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import java.util.Arrays;
+
+/**
+ * The times the points of a stroke were drawn, in the {@link android.os.SystemClock#uptimeMillis()}
+ * time base, kept next to a {@link PointList} with the same indices.
+ *
+ * <p>Times are stored as int offsets from the first one, four bytes per point instead of eight.
+ * Offsets never go backwards, so {@link #countUntil(long)} can find how much of a stroke was drawn
+ * at a given time with a binary search.
+ */
+public class PointTimes {
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private long startMillis;
+  private int[] offsets;
+  private int size;
+
+  public PointTimes() {
+    this(INITIAL_CAPACITY);
+  }
+
+  private PointTimes(int capacity) {
+    offsets = new int[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getMillis(int index) {
+    return startMillis + offsets[index];
+  }
+
+  /** Returns the time of the first point, or 0 if there is none. */
+  public long getStartMillis() {
+    return size == 0 ? 0 : startMillis;
+  }
+
+  /** Returns the time of the last point, or 0 if there is none. */
+  public long getEndMillis() {
+    return size == 0 ? 0 : getMillis(size - 1);
+  }
+
+  /** Returns the memory taken by the times, in bytes. */
+  public long getByteSize() {
+    return 4L * offsets.length;
+  }
+
+  /** Appends a time. A time before the previous one is moved up to it. */
+  public void add(long timeMillis) {
+    ensureCapacity(size + 1);
+    if (size == 0) {
+      startMillis = timeMillis;
+    }
+    int offset = (int) Math.min(Integer.MAX_VALUE, Math.max(0, timeMillis - startMillis));
+    offsets[size] = size == 0 ? 0 : Math.max(offsets[size - 1], offset);
+    size++;
+  }
+
+  /** Appends the times of {@code source} between {@code from}, inclusive, and {@code to}. */
+  public void addRange(PointTimes source, int from, int to) {
+    ensureCapacity(size + to - from);
+    for (int i = from; i < to; i++) {
+      add(source.getMillis(i));
+    }
+  }
+
+  /** Replaces the times between {@code from}, inclusive, and {@code to} with all of another. */
+  public void replaceRange(int from, int to, PointTimes replacement) {
+    int newSize = size - (to - from) + replacement.size;
+    ensureCapacity(newSize);
+    int tail = size - to;
+    int newTo = from + replacement.size;
+    System.arraycopy(offsets, to, offsets, newTo, tail);
+    for (int i = 0; i < replacement.size; i++) {
+      offsets[from + i] = (int) (replacement.getMillis(i) - startMillis);
+    }
+    size = newSize;
+  }
+
+  /** Returns the number of points that were drawn at or before the given time. */
+  public int countUntil(long timeMillis) {
+    if (size == 0 || timeMillis < startMillis) {
+      return 0;
+    }
+    long offset = timeMillis - startMillis;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (offsets[middle] <= offset) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** Returns a copy without unused capacity, for finished strokes. */
+  public PointTimes trimmedCopy() {
+    PointTimes copy = new PointTimes(size);
+    copy.startMillis = startMillis;
+    System.arraycopy(offsets, 0, copy.offsets, 0, size);
+    copy.size = size;
+    return copy;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= offsets.length) {
+      return;
+    }
+    offsets = Arrays.copyOf(offsets, Math.max(capacity, offsets.length * 2));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Rebuilds a drawing from a stream of edits, e.g. the one decoded by a {@link
+ * StrokeStreamReceiver}. Every batch of points updates the mesh of its stroke once.
+ */
+public class RemoteDrawing implements StrokeListener {
+
+  private final AnchorNode anchorNode;
+  private final Material material;
+  private final HashMap<Integer, Stroke> activeStrokes = new HashMap<>();
+  private final ArrayList<Stroke> strokes = new ArrayList<>();
+
+  /**
+   * @param anchorNode the node the received points are relative to
+   * @param material the {@link StrokePalette} material, the colors of the sender are its rows
+   */
+  public RemoteDrawing(AnchorNode anchorNode, Material material) {
+    this.anchorNode = anchorNode;
+    this.material = material;
+  }
+
+  @Override
+  public void onStrokeBegin(int strokeId, int colorId, float radius) {
+    Stroke stroke = new Stroke(anchorNode, material, colorId, radius);
+    activeStrokes.put(strokeId, stroke);
+    strokes.add(stroke);
+  }
+
+  @Override
+  public void onStrokePoints(int strokeId, List<Vector3> pointsInLocal) {
+    Stroke stroke = activeStrokes.get(strokeId);
+    if (stroke != null) {
+      stroke.addPoints(pointsInLocal);
+    }
+  }
+
+  @Override
+  public void onStrokeEnd(int strokeId) {
+    Stroke stroke = activeStrokes.remove(strokeId);
+    if (stroke != null) {
+      stroke.finish();
+    }
+  }
+
+  @Override
+  public void onUndo() {
+    if (strokes.isEmpty()) {
+      return;
+    }
+    Stroke stroke = strokes.remove(strokes.size() - 1);
+    activeStrokes.values().remove(stroke);
+    stroke.clear();
+  }
+
+  @Override
+  public void onClear() {
+    for (Stroke stroke : strokes) {
+      stroke.clear();
+    }
+    strokes.clear();
+    activeStrokes.clear();
+  }
+
+  public List<Stroke> getStrokes() {
+    return strokes;
+  }
+}
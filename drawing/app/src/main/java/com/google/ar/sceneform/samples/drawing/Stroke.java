@@ -15,75 +15,442 @@
  */
 package com.google.ar.sceneform.samples.drawing;
 
+import android.os.SystemClock;
 import com.google.ar.sceneform.AnchorNode;
 import com.google.ar.sceneform.Node;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.Material;
-import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.Renderable;
 import com.google.ar.sceneform.rendering.RenderableDefinition;
+import java.util.ArrayList;
 import java.util.List;
 
 /** Collects points to be drawn */
 public class Stroke {
 
-  private static final float CYLINDER_RADIUS = 0.005f;
+  static final float CYLINDER_RADIUS = 0.005f;
+  // The number of segments in every chunk of a finished stroke but the last.
+  static final int CHUNK_SEGMENTS = 8;
   private static final float MINIMUM_DISTANCE_BETWEEN_POINTS = 0.005f;
+  // Finished strokes keep 16 bits per coordinate instead of a float.
+  private static final boolean QUANTIZE_FINISHED_POINTS = true;
   private static final String TAG = Stroke.class.getSimpleName();
 
 
   private final Node node = new Node();
+  // Copies of the stroke, see addInstance().
+  private final ArrayList<Node> instances = new ArrayList<>();
+  private final ArrayList<Node> mirroredInstances = new ArrayList<>();
   private final Material material;
-  private final LineSimplifier lineSimplifier = new LineSimplifier();
+  private final MeshUploader meshUploader;
+  private final float radius;
+  private final int colorId;
+  // Dropped by finishPoints(), which may run on a worker thread while the main thread reads the
+  // stroke. Volatile, and set to null only after finishedPoints, so that a reader that finds them
+  // null also finds the finished points and statistics. Readers take a local copy first.
+  private volatile LineSimplifier lineSimplifier = new LineSimplifier();
+  private volatile StrokeInputConditioner inputConditioner = new StrokeInputConditioner();
+  private final PointStore shapePoints = new PointStore();
+  // Volatile so that threads reading a StrokeRegistry snapshot see finished points completely.
+  private volatile PointList finishedPoints;
+  // Written before finishedPoints, which publishes it.
+  private PointTimes finishedTimes;
 
   private AnchorNode anchorNode;
-  private ModelRenderable shape;
+  private Renderable shape;
+  private Vector3 predictedTip;
+  private long lastEventTimeMillis;
+  // Written before inputConditioner is dropped, which publishes it.
+  private String inputStatistics;
+  // Only published once it is complete, since the main thread may log it.
+  private volatile VertexCacheOptimizer.Statistics meshStatistics;
+  private boolean shapeChanged;
 
-  public Stroke(AnchorNode anchorNode, Material material) {
+  /**
+   * @param material the material shared by all strokes, see {@link StrokePalette}
+   * @param colorId the color of the stroke in the palette
+   */
+  public Stroke(AnchorNode anchorNode, Material material, int colorId) {
+    this(anchorNode, material, colorId, CYLINDER_RADIUS);
+  }
+
+  public Stroke(AnchorNode anchorNode, Material material, int colorId, float radius) {
+    this(anchorNode, material, colorId, radius, MeshUploader.SCENEFORM);
+  }
+
+  /** @param meshUploader turns the meshes of the stroke into renderables */
+  public Stroke(
+      AnchorNode anchorNode,
+      Material material,
+      int colorId,
+      float radius,
+      MeshUploader meshUploader) {
     this.material = material;
+    this.meshUploader = meshUploader;
+    this.colorId = colorId;
+    this.radius = radius;
     this.anchorNode = anchorNode;
     node.setParent(anchorNode);
   }
 
   public void add(Vector3 pointInWorld) {
-    Vector3 pointInLocal = anchorNode.worldToLocalPoint(pointInWorld);
-    List<Vector3> points = lineSimplifier.getPoints();
-    if (getNumOfPoints() < 1) {
-      lineSimplifier.add(pointInLocal);
+    add(pointInWorld, null, SystemClock.uptimeMillis());
+  }
+
+  /**
+   * Adds a point to the stroke and draws a provisional segment from the last point to where the
+   * pointer is expected to be next. The provisional segment is replaced on the next call, so a
+   * wrong prediction never becomes part of the stroke.
+   *
+   * @param pointInWorld the point under the pointer
+   * @param predictedTipInWorld the predicted point, or null to draw no provisional segment
+   * @param eventTimeMillis the time the point was sampled, in the {@link
+   *     SystemClock#uptimeMillis()} time base used by {@link android.view.MotionEvent}
+   * @return the point that was added to the stroke in the local space of its anchor, or null if
+   *     the input conditioner held it back
+   */
+  public Vector3 add(Vector3 pointInWorld, Vector3 predictedTipInWorld, long eventTimeMillis) {
+    if (isFinished()) {
+      return null;
+    }
+    Vector3 pointInLocal =
+        addLocal(
+            toLocal(pointInWorld),
+            predictedTipInWorld == null ? null : toLocal(predictedTipInWorld),
+            eventTimeMillis);
+    if (consumeShapeChanged()) {
+      applyDefinition(buildDefinition());
+    }
+    return pointInLocal;
+  }
+
+  /**
+   * Adds points that were already conditioned, e.g. by the stroke on another device, and updates
+   * the shape once for all of them. They are all timed now, when they arrive.
+   */
+  public void addPoints(List<Vector3> pointsInLocal) {
+    if (pointsInLocal.isEmpty() || isFinished()) {
       return;
     }
+    long timeMillis = SystemClock.uptimeMillis();
+    for (int i = 0; i < pointsInLocal.size(); i++) {
+      lineSimplifier.add(pointsInLocal.get(i), timeMillis);
+    }
+    shapeChanged = false;
+    applyDefinition(buildDefinition());
+  }
 
-    Vector3 prev = points.get(points.size() - 1);
-    Vector3 diff = Vector3.subtract(prev, pointInLocal);
-    if (diff.length() < MINIMUM_DISTANCE_BETWEEN_POINTS) {
+  /**
+   * Rebuilds a finished stroke from points that were already conditioned, e.g. the ones a {@link
+   * DrawingJournal} recovered. The mesh is built once, already finished. The journal doesn't keep
+   * times, so all points are timed now.
+   */
+  public void restore(PointList pointsInLocal) {
+    if (isFinished()) {
       return;
     }
+    long timeMillis = SystemClock.uptimeMillis();
+    for (int i = 0; i < pointsInLocal.size(); i++) {
+      lineSimplifier.add(pointsInLocal.get(i), timeMillis);
+    }
+    finishPoints();
+    shapeChanged = false;
+    applyDefinition(buildDefinition());
+  }
+
+  /**
+   * Ends the stroke: removes the provisional tip and adds the last filtered point if the input
+   * conditioner was still holding it back. The points are then moved into a compact {@link
+   * PackedPoints} and the stroke no longer accepts new ones.
+   *
+   * @return the last point in the local space of the anchor, or null if there was none left
+   */
+  public Vector3 finish() {
+    Vector3 lastPoint = finishPoints();
+    if (consumeShapeChanged()) {
+      applyDefinition(buildDefinition());
+    }
+    return lastPoint;
+  }
 
-    lineSimplifier.add(pointInLocal);
+  /** Converts a world space point into the local space of the stroke. Main thread only. */
+  public Vector3 toLocal(Vector3 pointInWorld) {
+    return anchorNode.worldToLocalPoint(pointInWorld);
+  }
 
-    RenderableDefinition renderableDefinition =
-        ExtrudedCylinder.makeExtrudedCylinder(CYLINDER_RADIUS, points, material);
-    if (shape == null) {
-      shape = ModelRenderable.builder().setSource(renderableDefinition).build().join();
-      node.setRenderable(shape);
+  /**
+   * The part of {@link #add(Vector3, Vector3, long)} that doesn't touch the scene, so it can run
+   * on a worker thread. Calls to this, {@link #finishPoints()} and {@link #buildDefinition()} must
+   * not overlap.
+   */
+  public Vector3 addLocal(Vector3 pointInLocal, Vector3 predictedTipInLocal, long eventTimeMillis) {
+    if (isFinished()) {
+      return null;
+    }
+    Vector3 conditionedPoint = inputConditioner.add(pointInLocal, eventTimeMillis);
+    predictedTip = predictedTipInLocal;
+    lastEventTimeMillis = eventTimeMillis;
+    if (conditionedPoint != null) {
+      lineSimplifier.add(conditionedPoint, eventTimeMillis);
+    }
+    if (conditionedPoint != null || predictedTip != null) {
+      shapeChanged = true;
+    }
+    return conditionedPoint;
+  }
+
+  /** The part of {@link #finish()} that doesn't touch the scene. */
+  public Vector3 finishPoints() {
+    if (isFinished()) {
+      return null;
+    }
+    Vector3 lastPoint = inputConditioner.flush();
+    if (lastPoint != null) {
+      lineSimplifier.add(lastPoint, lastEventTimeMillis);
+    }
+    if (lastPoint != null || predictedTip != null) {
+      predictedTip = null;
+      shapeChanged = true;
+    }
+    finishedTimes = lineSimplifier.getTimes().trimmedCopy();
+    finishedPoints = PackedPoints.pack(lineSimplifier.getPoints(), QUANTIZE_FINISHED_POINTS);
+    inputStatistics = getInputStatistics();
+    lineSimplifier = null;
+    inputConditioner = null;
+    return lastPoint;
+  }
+
+  /** Returns true once if the points changed since the last call. */
+  public boolean consumeShapeChanged() {
+    boolean changed = shapeChanged;
+    shapeChanged = false;
+    return changed;
+  }
+
+  public boolean isFinished() {
+    return finishedPoints != null;
+  }
+
+  /** Returns the points of the stroke in the local space of its anchor. */
+  public PointList getPoints() {
+    PointList points = finishedPoints;
+    if (points != null) {
+      return points;
+    }
+    LineSimplifier simplifier = lineSimplifier;
+    return simplifier != null ? simplifier.getPoints() : finishedPoints;
+  }
+
+  /** Returns when each of the points was drawn, with the same indices as {@link #getPoints()}. */
+  public PointTimes getTimes() {
+    if (isFinished()) {
+      return finishedTimes;
+    }
+    LineSimplifier simplifier = lineSimplifier;
+    return simplifier != null ? simplifier.getTimes() : finishedTimes;
+  }
+
+  /**
+   * Builds the mesh of the current points and predicted tip. Doesn't touch the scene, so it can
+   * run on a worker thread. Once the stroke is finished, the mesh is optimized for the vertex
+   * cache, since it is built only once but drawn every frame from then on, and split into chunks
+   * of {@link #CHUNK_SEGMENTS} segments that can be shown one by one.
+   *
+   * @return the mesh, or null if there are too few points to draw
+   */
+  public RenderableDefinition buildDefinition() {
+    PointList points = getPoints();
+    if (isFinished()) {
+      VertexCacheOptimizer.Statistics statistics = new VertexCacheOptimizer.Statistics();
+      RenderableDefinition definition =
+          ExtrudedCylinder.makeFinishedCylinder(
+              radius, points, material, colorId, CHUNK_SEGMENTS, statistics);
+      meshStatistics = statistics;
+      return definition;
+    }
+    if (predictedTip != null && points.size() > 0) {
+      int last = points.size() - 1;
+      float dx = points.getX(last) - predictedTip.x;
+      float dy = points.getY(last) - predictedTip.y;
+      float dz = points.getZ(last) - predictedTip.z;
+      if (dx * dx + dy * dy + dz * dz
+          >= MINIMUM_DISTANCE_BETWEEN_POINTS * MINIMUM_DISTANCE_BETWEEN_POINTS) {
+        shapePoints.copyFrom(points);
+        shapePoints.add(predictedTip);
+        points = shapePoints;
+      }
+    }
+    return ExtrudedCylinder.makeExtrudedCylinder(radius, points, material, colorId);
+  }
+
+  /**
+   * Shows a mesh made by {@link #buildDefinition()} on the stroke and all its copies. Main thread
+   * only.
+   */
+  public void applyDefinition(RenderableDefinition renderableDefinition) {
+    if (renderableDefinition == null) {
+      node.setRenderable(null);
+      setRenderable(instances, null);
+      setRenderable(mirroredInstances, null);
+      return;
+    }
+    shape = meshUploader.upload(renderableDefinition, shape);
+    node.setRenderable(shape);
+    setRenderable(instances, shape);
+    setRenderable(mirroredInstances, shape);
+  }
+
+  /**
+   * Shows a copy of the stroke that shares its mesh, so that a copy costs a node but no geometry
+   * and no mesh building. Copies follow every change of the stroke. Main thread only.
+   *
+   * <p>Mirrored copies are mirrored across the plane x = 0 of the anchor before they are moved by
+   * the offset, with a negative scale. They share the mesh of the stroke as well: the renderer
+   * turns the front faces of nodes with a negative scale around, so the outside of the cylinder
+   * stays the side that is drawn.
+   *
+   * @param offsetInLocal where the copy is relative to the stroke, in the local space of the anchor
+   * @param mirrored whether the copy is a mirror image of the stroke
+   */
+  public void addInstance(Vector3 offsetInLocal, boolean mirrored) {
+    Node instance = new Node();
+    instance.setParent(anchorNode);
+    instance.setLocalPosition(offsetInLocal);
+    if (mirrored) {
+      instance.setLocalScale(new Vector3(-1f, 1f, 1f));
+      mirroredInstances.add(instance);
     } else {
-      shape.updateFromDefinition(renderableDefinition);
+      instances.add(instance);
+    }
+    instance.setRenderable(shape);
+  }
+
+  public boolean hasMirroredInstances() {
+    return !mirroredInstances.isEmpty();
+  }
+
+  /** Returns the number of nodes that show the stroke, including the stroke itself. */
+  public int getInstanceCount() {
+    return 1 + instances.size() + mirroredInstances.size();
+  }
+
+  /** Returns the number of meshes the nodes of the stroke share, at most one. */
+  public int getMeshCount() {
+    return shape != null ? 1 : 0;
+  }
+
+  private static void setRenderable(List<Node> nodes, Renderable renderable) {
+    for (int i = 0; i < nodes.size(); i++) {
+      nodes.get(i).setRenderable(renderable);
+    }
+  }
+
+  private void detachInstances() {
+    for (int i = 0; i < instances.size(); i++) {
+      instances.get(i).setParent(null);
+    }
+    for (int i = 0; i < mirroredInstances.size(); i++) {
+      mirroredInstances.get(i).setParent(null);
+    }
+  }
+
+  /**
+   * Shows or hides the stroke and all its copies without removing them from the scene, e.g. while
+   * a {@link TimeLapse} plays. Main thread only.
+   */
+  public void setVisible(boolean visible) {
+    node.setEnabled(visible);
+    for (int i = 0; i < instances.size(); i++) {
+      instances.get(i).setEnabled(visible);
+    }
+    for (int i = 0; i < mirroredInstances.size(); i++) {
+      mirroredInstances.get(i).setEnabled(visible);
+    }
+  }
+
+  /**
+   * Returns the number of chunks the mesh of a finished stroke is split into, or 0 while the stroke
+   * isn't finished or its finished mesh isn't showing yet.
+   */
+  public int getChunkCount() {
+    if (!isFinished() || shape == null) {
+      return 0;
     }
+    int chunkCount = ExtrudedCylinder.getSubmeshCount(getPoints().size(), CHUNK_SEGMENTS);
+    return shape.getSubmeshCount() == chunkCount ? chunkCount : 0;
+  }
+
+  /**
+   * Shows or hides one chunk of a finished stroke on the stroke and all its copies, which share
+   * the mesh. The chunk is hidden by drawing it with a material that leaves no trace, since
+   * submeshes can't be disabled on their own. Main thread only.
+   *
+   * @param hiddenMaterial the material of hidden chunks, see {@link
+   *     StrokePalette#makeHiddenMaterial}
+   */
+  public void setChunkVisible(int chunk, boolean visible, Material hiddenMaterial) {
+    shape.setMaterial(chunk, visible ? material : hiddenMaterial);
   }
 
   public void clear() {
-    lineSimplifier.getPoints().clear();
+    LineSimplifier simplifier = lineSimplifier;
+    if (simplifier != null) {
+      simplifier.clear();
+    }
+    node.setParent(null);
+    detachInstances();
+  }
+
+  /**
+   * Removes the stroke from the scene without touching its points, so unlike {@link #clear()} it
+   * may be called while a worker thread is still adding to them.
+   */
+  public void detach() {
     node.setParent(null);
+    detachInstances();
+  }
+
+  public float getRadius() {
+    return radius;
+  }
+
+  public int getColorId() {
+    return colorId;
   }
 
   public int getNumOfPoints() {
-    return lineSimplifier.getPoints().size();
+    return getPoints().size();
+  }
+
+  /** Returns the memory taken by the coordinates of the points, in bytes. */
+  public long getPointByteSize() {
+    return getPoints().getByteSize();
+  }
+
+  /** Describes how many input points were kept by the input conditioner and the simplifier. */
+  public String getInputStatistics() {
+    StrokeInputConditioner conditioner = inputConditioner;
+    if (conditioner == null) {
+      VertexCacheOptimizer.Statistics statistics = meshStatistics;
+      return statistics == null ? inputStatistics : inputStatistics + ", " + statistics;
+    }
+    return String.format(
+        "%s: %d input points, %d after conditioning, %d after simplification in %d bytes",
+        TAG,
+        conditioner.getInputCount(),
+        conditioner.getEmittedCount(),
+        getNumOfPoints(),
+        getPointByteSize());
   }
 
   @Override
   public String toString() {
     String result = "Vector3[] strokePoints = {";
-    for (Vector3 vector3 : lineSimplifier.getPoints()) {
-      result += ("new Vector3(" + vector3.x + "f, " + vector3.y + "f, " + vector3.z + "f),\n ");
+    PointList points = getPoints();
+    for (int i = 0; i < points.size(); i++) {
+      result +=
+          ("new Vector3(" + points.getX(i) + "f, " + points.getY(i) + "f, " + points.getZ(i)
+              + "f),\n ");
     }
     return result.substring(0, result.length() - 3) + "};";
   }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.math.MathHelper;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conditions raw stroke points before they reach the {@link LineSimplifier}.
+ *
+ * <p>Points are first smoothed with a {@link OneEuroFilter} per axis to remove tracking and touch
+ * jitter, then resampled with a spacing that depends on how sharply the stroke is turning: points
+ * are kept close together on tight curves and far apart on straight runs.
+ */
+public class StrokeInputConditioner {
+
+  private static final float MINIMUM_CUTOFF = 1.5f;
+  private static final float BETA = 10f;
+  private static final float DERIVATIVE_CUTOFF = 1f;
+  private static final float MINIMUM_SPACING = 0.005f;
+  private static final float MAXIMUM_SPACING = 0.015f;
+  // Turning by this many degrees or more between two points uses the minimum spacing.
+  private static final float SHARP_TURN_DEGREES = 30f;
+
+  private final OneEuroFilter filterX =
+      new OneEuroFilter(MINIMUM_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+  private final OneEuroFilter filterY =
+      new OneEuroFilter(MINIMUM_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+  private final OneEuroFilter filterZ =
+      new OneEuroFilter(MINIMUM_CUTOFF, BETA, DERIVATIVE_CUTOFF);
+
+  private final Vector3 filtered = new Vector3();
+  private final Vector3 direction = new Vector3();
+  private Vector3 lastEmitted;
+  private boolean hasDirection;
+
+  private int inputCount;
+  private int emittedCount;
+
+  public StrokeInputConditioner() {}
+
+  /**
+   * Filters a point and decides whether it should be kept.
+   *
+   * @return the point to add to the stroke, or null if it should be skipped
+   */
+  public Vector3 add(Vector3 point, long timeMillis) {
+    inputCount++;
+    filtered.set(
+        filterX.filter(point.x, timeMillis),
+        filterY.filter(point.y, timeMillis),
+        filterZ.filter(point.z, timeMillis));
+
+    if (lastEmitted == null) {
+      return emit();
+    }
+
+    float dx = filtered.x - lastEmitted.x;
+    float dy = filtered.y - lastEmitted.y;
+    float dz = filtered.z - lastEmitted.z;
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    if (distance < MINIMUM_SPACING) {
+      return null;
+    }
+
+    float spacing = MAXIMUM_SPACING;
+    if (hasDirection) {
+      float cosine = (dx * direction.x + dy * direction.y + dz * direction.z) / distance;
+      float degrees = (float) Math.toDegrees(Math.acos(MathHelper.clamp(cosine, -1f, 1f)));
+      spacing =
+          MathHelper.lerp(
+              MAXIMUM_SPACING,
+              MINIMUM_SPACING,
+              MathHelper.clamp(degrees / SHARP_TURN_DEGREES, 0f, 1f));
+    }
+    if (distance < spacing) {
+      return null;
+    }
+
+    direction.set(dx / distance, dy / distance, dz / distance);
+    hasDirection = true;
+    return emit();
+  }
+
+  /**
+   * Returns the most recent filtered point if it was held back by the resampling, so the stroke
+   * ends where the pointer was lifted. Returns null otherwise.
+   */
+  public Vector3 flush() {
+    if (lastEmitted == null
+        || Vector3.subtract(filtered, lastEmitted).length() < MINIMUM_SPACING) {
+      return null;
+    }
+    return emit();
+  }
+
+  private Vector3 emit() {
+    lastEmitted = new Vector3(filtered);
+    emittedCount++;
+    return lastEmitted;
+  }
+
+  public void reset() {
+    filterX.reset();
+    filterY.reset();
+    filterZ.reset();
+    lastEmitted = null;
+    hasDirection = false;
+    inputCount = 0;
+    emittedCount = 0;
+  }
+
+  public int getInputCount() {
+    return inputCount;
+  }
+
+  public int getEmittedCount() {
+    return emittedCount;
+  }
+
+  /**
+   * Runs a recorded trace through a fresh conditioner, for comparing point counts and shapes
+   * offline.
+   *
+   * <p>A trace is the raw input of a stroke: the points passed to {@link Stroke#addLocal}, with the
+   * event times they came with. The filter depends on the time between points, so the recorded
+   * times are replayed as they are. {@link Stroke#toString()} is no trace, its points have already
+   * been conditioned and simplified.
+   *
+   * @param points the recorded points
+   * @param times when each point was sampled, with the same indices as the points
+   * @return the points that would have been added to the stroke
+   */
+  public static List<Vector3> replay(PointList points, PointTimes times) {
+    StrokeInputConditioner conditioner = new StrokeInputConditioner();
+    ArrayList<Vector3> result = new ArrayList<>();
+    for (int i = 0; i < points.size(); i++) {
+      Vector3 kept = conditioner.add(points.get(i), times.getMillis(i));
+      if (kept != null) {
+        result.add(kept);
+      }
+    }
+    Vector3 last = conditioner.flush();
+    if (last != null) {
+      result.add(last);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.math.Vector3;
+import java.util.List;
+
+/**
+ * Receives the edits that make up a drawing, in the order they happened. Points are in the local
+ * space of the drawing's anchor and have already been conditioned, so replaying the same calls
+ * into new {@link Stroke}s rebuilds the same drawing.
+ */
+public interface StrokeListener {
+
+  /** Starts a stroke in the given {@link StrokePalette} color. */
+  void onStrokeBegin(int strokeId, int colorId, float radius);
+
+  void onStrokePoints(int strokeId, List<Vector3> pointsInLocal);
+
+  void onStrokeEnd(int strokeId);
+
+  /** Removes the most recent stroke. */
+  void onUndo();
+
+  /** Removes all strokes. */
+  void onClear();
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.Texture;
+import com.google.ar.sceneform.rendering.Texture.Sampler;
+import com.google.ar.sceneform.rendering.Texture.Sampler.MagFilter;
+import com.google.ar.sceneform.rendering.Texture.Sampler.MinFilter;
+import com.google.ar.sceneform.rendering.Texture.Sampler.WrapMode;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A small texture with one row per stroke color, so that strokes of every color share one
+ * material. A stroke selects its row with the v coordinate of its vertices, see {@link
+ * ExtrudedCylinder}.
+ *
+ * <p>All rows are solid colors except the rainbow row, whose hue changes along u. Strokes use the
+ * distance along the stroke in meters as u and the texture repeats in that direction, so a rainbow
+ * stroke goes through all hues once per meter like it did with its own rainbow texture.
+ */
+public final class StrokePalette {
+
+  // Identify the colors to the peer of a shared drawing as well.
+  public static final int WHITE = 0;
+  public static final int RED = 1;
+  public static final int GREEN = 2;
+  public static final int BLUE = 3;
+  public static final int BLACK = 4;
+  public static final int RAINBOW = 5;
+  public static final int COUNT = 6;
+
+  private static final int[] SOLID_COLORS = {
+    Color.WHITE, Color.RED, Color.GREEN, Color.BLUE, Color.BLACK
+  };
+  private static final int WIDTH = 64;
+  // Several texels per row, so that filtering at the center of a row never reaches the next one.
+  private static final int ROW_HEIGHT = 4;
+
+  private StrokePalette() {}
+
+  /** Returns the v coordinate of the center of the color's row. Unknown colors are drawn white. */
+  public static float getV(int colorId) {
+    int row = colorId >= 0 && colorId < COUNT ? colorId : WHITE;
+    return (row + .5f) / COUNT;
+  }
+
+  /** Draws the palette, one row per color id. */
+  public static Bitmap createBitmap() {
+    int[] pixels = new int[WIDTH * ROW_HEIGHT * COUNT];
+    float[] hsv = {0, 1, 1};
+    for (int row = 0; row < COUNT; row++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int color;
+        if (row == RAINBOW) {
+          hsv[0] = 360f * x / WIDTH;
+          color = Color.HSVToColor(hsv);
+        } else {
+          color = SOLID_COLORS[row];
+        }
+        for (int y = 0; y < ROW_HEIGHT; y++) {
+          pixels[(row * ROW_HEIGHT + y) * WIDTH + x] = color;
+        }
+      }
+    }
+    return Bitmap.createBitmap(pixels, WIDTH, ROW_HEIGHT * COUNT, Bitmap.Config.ARGB_8888);
+  }
+
+  /**
+   * Creates the material shared by all strokes. Rows are clamped and never mipmapped, so colors
+   * don't bleed into each other at a distance.
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public static CompletableFuture<Material> makeMaterial(Context context) {
+    return Texture.builder()
+        .setSource(createBitmap())
+        .setUsage(Texture.Usage.COLOR)
+        .setSampler(
+            Sampler.builder()
+                .setWrapModeS(WrapMode.REPEAT)
+                .setWrapModeT(WrapMode.CLAMP_TO_EDGE)
+                .setMinFilter(MinFilter.LINEAR)
+                .setMagFilter(MagFilter.LINEAR)
+                .build())
+        .build()
+        .thenCompose(texture -> MaterialFactory.makeOpaqueWithTexture(context, texture));
+  }
+
+  /**
+   * Creates a fully transparent material, for the parts of strokes that are hidden but keep their
+   * place in the mesh, see {@link Stroke#setChunkVisible}.
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public static CompletableFuture<Material> makeHiddenMaterial(Context context) {
+    return MaterialFactory.makeTransparentWithColor(
+        context, new com.google.ar.sceneform.rendering.Color(0, 0, 0, 0));
+  }
+}
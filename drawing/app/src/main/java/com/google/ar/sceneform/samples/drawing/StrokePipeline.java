@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the filtering, simplification and meshing of one {@link Stroke} on a worker thread, so that
+ * strokes drawn at the same time are processed in parallel.
+ *
+ * <p>The main thread queues points with {@link #add(Vector3, Vector3, long)} and picks up the
+ * results once per frame with {@link #publish(StrokeListener, int)}. The points of one stroke are
+ * processed in order, at most one task per stroke is queued on the executor at a time, and when
+ * the worker falls behind, all points that are waiting are added before the mesh is rebuilt once.
+ * Pipelines share nothing with each other, so they never wait on each other.
+ */
+public class StrokePipeline {
+
+  private final Stroke stroke;
+  private final Executor executor;
+  private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final ConcurrentLinkedQueue<Vector3> conditionedPoints = new ConcurrentLinkedQueue<>();
+  private final AtomicReference<Shape> pendingShape = new AtomicReference<>();
+  private final ArrayList<Vector3> publishedPoints = new ArrayList<>();
+  private volatile boolean finished;
+  private volatile boolean cancelled;
+
+  private static class Command {
+    final Vector3 pointInLocal;
+    final Vector3 predictedTipInLocal;
+    final long eventTimeMillis;
+
+    Command(Vector3 pointInLocal, Vector3 predictedTipInLocal, long eventTimeMillis) {
+      this.pointInLocal = pointInLocal;
+      this.predictedTipInLocal = predictedTipInLocal;
+      this.eventTimeMillis = eventTimeMillis;
+    }
+  }
+
+  // Wraps the definition because a null definition, a stroke too short to draw, is a result too.
+  private static class Shape {
+    final RenderableDefinition definition;
+
+    Shape(RenderableDefinition definition) {
+      this.definition = definition;
+    }
+  }
+
+  private static final Command FINISH = new Command(null, null, 0);
+
+  public StrokePipeline(Stroke stroke, Executor executor) {
+    this.stroke = stroke;
+    this.executor = executor;
+  }
+
+  public Stroke getStroke() {
+    return stroke;
+  }
+
+  /** Queues a point, both given in world space. Main thread only. */
+  public void add(Vector3 pointInWorld, Vector3 predictedTipInWorld, long eventTimeMillis) {
+    addLocal(
+        stroke.toLocal(pointInWorld),
+        predictedTipInWorld == null ? null : stroke.toLocal(predictedTipInWorld),
+        eventTimeMillis);
+  }
+
+  /** Queues a point given in the local space of the stroke. May be called from any one thread. */
+  void addLocal(Vector3 pointInLocal, Vector3 predictedTipInLocal, long eventTimeMillis) {
+    submit(new Command(pointInLocal, predictedTipInLocal, eventTimeMillis));
+  }
+
+  /** Queues the end of the stroke. */
+  public void finish() {
+    submit(FINISH);
+  }
+
+  /** Drops all queued work and results, e.g. when the stroke is undone while being drawn. */
+  public void cancel() {
+    cancelled = true;
+    commands.clear();
+    stroke.detach();
+  }
+
+  /** Returns true when nothing is queued or running for this pipeline. */
+  public boolean isIdle() {
+    return !scheduled.get() && commands.isEmpty();
+  }
+
+  private void submit(Command command) {
+    commands.add(command);
+    if (scheduled.compareAndSet(false, true)) {
+      executor.execute(this::process);
+    }
+  }
+
+  private void process() {
+    do {
+      boolean changed = false;
+      Command command;
+      while ((command = commands.poll()) != null && !cancelled) {
+        Vector3 conditionedPoint;
+        if (command == FINISH) {
+          conditionedPoint = stroke.finishPoints();
+        } else {
+          conditionedPoint =
+              stroke.addLocal(
+                  command.pointInLocal, command.predictedTipInLocal, command.eventTimeMillis);
+        }
+        if (conditionedPoint != null) {
+          conditionedPoints.add(conditionedPoint);
+        }
+        changed |= stroke.consumeShapeChanged();
+      }
+      if (changed && !cancelled) {
+        pendingShape.set(new Shape(stroke.buildDefinition()));
+      }
+      if (stroke.isFinished()) {
+        finished = true;
+      }
+      scheduled.set(false);
+      // A command that was queued after the loop ended but before the flag was cleared.
+    } while (!commands.isEmpty() && scheduled.compareAndSet(false, true));
+  }
+
+  /**
+   * Applies the newest mesh and reports the points conditioned since the last call. Main thread
+   * only, once per frame.
+   *
+   * @return true once the stroke is finished and all of its results have been published
+   */
+  public boolean publish(StrokeListener listener, int strokeId) {
+    // Everything the worker did before finishing is visible after reading the flag.
+    boolean wasFinished = finished;
+    if (cancelled) {
+      return true;
+    }
+    publishedPoints.clear();
+    Vector3 point;
+    while ((point = conditionedPoints.poll()) != null) {
+      publishedPoints.add(point);
+    }
+    if (listener != null && !publishedPoints.isEmpty()) {
+      listener.onStrokePoints(strokeId, publishedPoints);
+    }
+    Shape shape = pendingShape.getAndSet(null);
+    if (shape != null) {
+      stroke.applyDefinition(shape.definition);
+    }
+    return wasFinished;
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.view.MotionEvent;
+
+/**
+ * Extrapolates where the pointer will be a short time in the future from its recent samples, so
+ * that the tip of a stroke can be drawn under the finger instead of a frame or two behind it.
+ *
+ * <p>The velocity is a least squares fit over the most recent samples. Every prediction made by
+ * {@link #predict()}, which is the one that gets drawn, is kept until the samples reach its time.
+ * It is then compared with the pointer position interpolated between the samples around that time,
+ * which gives a running measure of how far the drawn tips were off.
+ */
+public class StrokePredictor {
+
+  private static final String TAG = StrokePredictor.class.getSimpleName();
+  // Roughly one and a half frames at 60 fps.
+  private static final long PREDICTION_MILLIS = 24;
+  private static final long SAMPLE_WINDOW_MILLIS = 50;
+  private static final int MAXIMUM_SAMPLES = 8;
+  // Predictions waiting for the samples to reach their time, about one per frame.
+  private static final int MAXIMUM_PENDING_PREDICTIONS = 8;
+
+  private final float[] sampleX = new float[MAXIMUM_SAMPLES];
+  private final float[] sampleY = new float[MAXIMUM_SAMPLES];
+  private final long[] sampleTime = new long[MAXIMUM_SAMPLES];
+  private int sampleCount;
+  private int newestSample = -1;
+
+  private float velocityX;
+  private float velocityY;
+  private boolean hasVelocity;
+
+  private float predictedX;
+  private float predictedY;
+
+  private final float[] pendingX = new float[MAXIMUM_PENDING_PREDICTIONS];
+  private final float[] pendingY = new float[MAXIMUM_PENDING_PREDICTIONS];
+  private final long[] pendingTime = new long[MAXIMUM_PENDING_PREDICTIONS];
+  private int oldestPending;
+  private int pendingCount;
+
+  private int errorCount;
+  private float errorSum;
+  private float errorMax;
+
+  public StrokePredictor() {}
+
+  /** Forgets all samples and prediction errors, typically at the start of a new stroke. */
+  public void reset() {
+    sampleCount = 0;
+    newestSample = -1;
+    hasVelocity = false;
+    pendingCount = 0;
+    errorCount = 0;
+    errorSum = 0;
+    errorMax = 0;
+  }
+
+  /** Adds the historical samples batched into the event followed by its current position. */
+  public void addSamples(MotionEvent event) {
+    addSamples(event, 0);
+  }
+
+  /** Adds the samples of one pointer of a multi-touch event. */
+  public void addSamples(MotionEvent event, int pointerIndex) {
+    for (int i = 0; i < event.getHistorySize(); i++) {
+      addSample(
+          event.getHistoricalX(pointerIndex, i),
+          event.getHistoricalY(pointerIndex, i),
+          event.getHistoricalEventTime(i));
+    }
+    addSample(event.getX(pointerIndex), event.getY(pointerIndex), event.getEventTime());
+  }
+
+  public void addSample(float x, float y, long timeMillis) {
+    if (newestSample >= 0) {
+      long elapsed = timeMillis - sampleTime[newestSample];
+      if (elapsed <= 0) {
+        return;
+      }
+      scorePredictions(x, y, timeMillis);
+    }
+
+    newestSample = (newestSample + 1) % MAXIMUM_SAMPLES;
+    sampleX[newestSample] = x;
+    sampleY[newestSample] = y;
+    sampleTime[newestSample] = timeMillis;
+    sampleCount = Math.min(sampleCount + 1, MAXIMUM_SAMPLES);
+    updateVelocity();
+  }
+
+  // Compares the predictions whose time lies between the newest sample and the new one with the
+  // pointer position at that time, assuming it moved in a straight line between the two.
+  private void scorePredictions(float x, float y, long timeMillis) {
+    float previousX = sampleX[newestSample];
+    float previousY = sampleY[newestSample];
+    long previousTime = sampleTime[newestSample];
+    while (pendingCount > 0 && pendingTime[oldestPending] <= timeMillis) {
+      float ratio =
+          (float) (pendingTime[oldestPending] - previousTime) / (timeMillis - previousTime);
+      float errorX = pendingX[oldestPending] - (previousX + (x - previousX) * ratio);
+      float errorY = pendingY[oldestPending] - (previousY + (y - previousY) * ratio);
+      float error = (float) Math.hypot(errorX, errorY);
+      errorCount++;
+      errorSum += error;
+      errorMax = Math.max(errorMax, error);
+      oldestPending = (oldestPending + 1) % MAXIMUM_PENDING_PREDICTIONS;
+      pendingCount--;
+    }
+  }
+
+  // Fits x(t) and y(t) with straight lines over the samples inside the window.
+  private void updateVelocity() {
+    long newestTime = sampleTime[newestSample];
+    int count = 0;
+    float meanT = 0;
+    float meanX = 0;
+    float meanY = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      int index = (newestSample - i + MAXIMUM_SAMPLES) % MAXIMUM_SAMPLES;
+      long age = newestTime - sampleTime[index];
+      if (age > SAMPLE_WINDOW_MILLIS) {
+        break;
+      }
+      meanT -= age;
+      meanX += sampleX[index];
+      meanY += sampleY[index];
+      count++;
+    }
+    if (count < 2) {
+      hasVelocity = false;
+      return;
+    }
+    meanT /= count;
+    meanX /= count;
+    meanY /= count;
+
+    float covarianceX = 0;
+    float covarianceY = 0;
+    float varianceT = 0;
+    for (int i = 0; i < count; i++) {
+      int index = (newestSample - i + MAXIMUM_SAMPLES) % MAXIMUM_SAMPLES;
+      float t = (sampleTime[index] - newestTime) - meanT;
+      covarianceX += t * (sampleX[index] - meanX);
+      covarianceY += t * (sampleY[index] - meanY);
+      varianceT += t * t;
+    }
+    if (varianceT <= 0) {
+      hasVelocity = false;
+      return;
+    }
+    velocityX = covarianceX / varianceT;
+    velocityY = covarianceY / varianceT;
+    hasVelocity = true;
+  }
+
+  /**
+   * Extrapolates the pointer position {@link #PREDICTION_MILLIS} past the newest sample. The
+   * prediction is remembered and scored once the samples reach its time, so call this only for
+   * predictions that are actually drawn.
+   *
+   * @return true if a prediction is available through {@link #getPredictedX()} and {@link
+   *     #getPredictedY()}
+   */
+  public boolean predict() {
+    if (!hasVelocity) {
+      return false;
+    }
+    predictedX = sampleX[newestSample] + velocityX * PREDICTION_MILLIS;
+    predictedY = sampleY[newestSample] + velocityY * PREDICTION_MILLIS;
+    long time = sampleTime[newestSample] + PREDICTION_MILLIS;
+    int newestPending = (oldestPending + pendingCount - 1) % MAXIMUM_PENDING_PREDICTIONS;
+    if (pendingCount > 0 && pendingTime[newestPending] == time) {
+      // Predicted twice from the same sample, only the one drawn last counts.
+      pendingCount--;
+    } else if (pendingCount == MAXIMUM_PENDING_PREDICTIONS) {
+      oldestPending = (oldestPending + 1) % MAXIMUM_PENDING_PREDICTIONS;
+      pendingCount--;
+    }
+    int index = (oldestPending + pendingCount) % MAXIMUM_PENDING_PREDICTIONS;
+    pendingX[index] = predictedX;
+    pendingY[index] = predictedY;
+    pendingTime[index] = time;
+    pendingCount++;
+    return true;
+  }
+
+  public float getPredictedX() {
+    return predictedX;
+  }
+
+  public float getPredictedY() {
+    return predictedY;
+  }
+
+  /** Returns the number of drawn predictions that were compared against the pointer. */
+  public int getErrorCount() {
+    return errorCount;
+  }
+
+  /** Returns the mean distance in pixels between predicted and actual pointer positions. */
+  public float getMeanError() {
+    return errorCount == 0 ? 0 : errorSum / errorCount;
+  }
+
+  /** Returns the largest distance in pixels between a predicted and actual pointer position. */
+  public float getMaxError() {
+    return errorMax;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d drawn predictions, mean error %.1fpx, max error %.1fpx",
+        TAG, errorCount, getMeanError(), getMaxError());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+/**
+ * Constants and encoding helpers shared by {@link StrokeStreamSender} and {@link
+ * StrokeStreamReceiver}.
+ *
+ * <p>Every message is {@code length type timestamp payload}, where the length counts the bytes
+ * after itself and is at most {@link #MAXIMUM_MESSAGE_LENGTH}, and the timestamp is the sender's
+ * {@link android.os.SystemClock#uptimeMillis()}. All integers are unsigned varints of at most 63
+ * bits, signed values are zigzag encoded first. Positions are quantized to a tenth of a millimeter
+ * and the points of a stroke are sent as the difference to the previous point of the same stroke,
+ * which at the usual point spacing fits one byte per axis.
+ *
+ * <pre>
+ *   STROKE_BEGIN  strokeId colorId radius
+ *   STROKE_POINTS strokeId count (dx dy dz) * count
+ *   STROKE_END    strokeId
+ *   UNDO
+ *   CLEAR
+ *   CLOCK_REQUEST
+ *   CLOCK_RESPONSE requestTimestamp
+ * </pre>
+ *
+ * <p>The peers don't share a clock. Either of them can send a {@code CLOCK_REQUEST}, which the
+ * other answers right away with a {@code CLOCK_RESPONSE} that carries the timestamp of the request
+ * back, so that the requester can measure the round trip and the offset between the two clocks.
+ */
+final class StrokeProtocol {
+
+  static final int STROKE_BEGIN = 1;
+  static final int STROKE_POINTS = 2;
+  static final int STROKE_END = 3;
+  static final int UNDO = 4;
+  static final int CLEAR = 5;
+  static final int CLOCK_REQUEST = 6;
+  static final int CLOCK_RESPONSE = 7;
+
+  // Messages carry at most a frame of points, this is far more than a sender ever writes.
+  static final int MAXIMUM_MESSAGE_LENGTH = 64 * 1024;
+
+  static final float METERS_PER_UNIT = 0.0001f;
+
+  private StrokeProtocol() {}
+
+  static int quantize(float meters) {
+    return Math.round(meters / METERS_PER_UNIT);
+  }
+
+  static float dequantize(int units) {
+    return units * METERS_PER_UNIT;
+  }
+
+  static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
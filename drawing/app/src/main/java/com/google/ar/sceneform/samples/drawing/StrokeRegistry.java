@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The strokes of a drawing, in the order they were drawn, as a series of immutable versions that
+ * any thread can read without locks while the main thread keeps changing the drawing.
+ *
+ * <p>Every change publishes a new {@link Snapshot} with one atomic write. A reader gets the current
+ * snapshot with {@link #getSnapshot()} and can keep using it for as long as it likes: it never
+ * changes, no matter what the writer does next. Versions only grow, so a reader can tell whether
+ * the drawing changed since the snapshot it last looked at.
+ *
+ * <p>Snapshots share one backing array. Appending writes the slot after the last one and publishes
+ * a snapshot that is one longer, which older snapshots never look at, so it doesn't copy. Removing
+ * the last stroke publishes a shorter snapshot; the array is only copied when a later append would
+ * overwrite a slot an older snapshot can still see. Appends are amortized constant time, undo and
+ * clear are constant time.
+ *
+ * <p>Only one thread may change the registry, in the app the main thread. The strokes themselves
+ * are still changed by their pipelines while they are being drawn, so readers on other threads
+ * should only look at the points of strokes that are {@link Stroke#isFinished() finished}.
+ */
+public class StrokeRegistry {
+
+  private static final String TAG = StrokeRegistry.class.getSimpleName();
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** An immutable version of the drawing. */
+  public static final class Snapshot extends AbstractList<Stroke> {
+    private final long version;
+    private final Stroke[] strokes;
+    private final int size;
+
+    Snapshot(long version, Stroke[] strokes, int size) {
+      this.version = version;
+      this.strokes = strokes;
+      this.size = size;
+    }
+
+    /** Returns the version of the drawing, higher for every change. */
+    public long getVersion() {
+      return version;
+    }
+
+    @Override
+    public Stroke get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+      }
+      return strokes[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private final AtomicReference<Snapshot> current =
+      new AtomicReference<>(new Snapshot(0, new Stroke[INITIAL_CAPACITY], 0));
+  // The number of slots of the current array that were ever written. Writer thread only.
+  private int writtenSlots;
+  private int copyCount;
+
+  /** Returns the current version of the drawing. Any thread. */
+  public Snapshot getSnapshot() {
+    return current.get();
+  }
+
+  /** Appends a stroke. */
+  public void add(Stroke stroke) {
+    add(current.get().size, stroke);
+  }
+
+  /** Inserts a stroke, moving the ones after it back. Copies unless it is an append. */
+  public void add(int index, Stroke stroke) {
+    Snapshot snapshot = current.get();
+    if (index < 0 || index > snapshot.size) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + snapshot.size);
+    }
+    Stroke[] strokes = snapshot.strokes;
+    if (index < snapshot.size || snapshot.size < writtenSlots || snapshot.size == strokes.length) {
+      strokes = new Stroke[Math.max(INITIAL_CAPACITY, (snapshot.size + 1) * 2)];
+      System.arraycopy(snapshot.strokes, 0, strokes, 0, index);
+      System.arraycopy(snapshot.strokes, index, strokes, index + 1, snapshot.size - index);
+      writtenSlots = snapshot.size + 1;
+      copyCount++;
+    } else {
+      writtenSlots++;
+    }
+    strokes[index] = stroke;
+    publish(strokes, snapshot.size + 1);
+  }
+
+  /** Removes and returns the last stroke, or returns null if there is none. */
+  public Stroke removeLast() {
+    Snapshot snapshot = current.get();
+    if (snapshot.size == 0) {
+      return null;
+    }
+    Stroke stroke = snapshot.strokes[snapshot.size - 1];
+    publish(snapshot.strokes, snapshot.size - 1);
+    return stroke;
+  }
+
+  /** Removes all strokes. */
+  public void clear() {
+    writtenSlots = 0;
+    publish(new Stroke[INITIAL_CAPACITY], 0);
+  }
+
+  public int size() {
+    return current.get().size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /** Returns how often a change had to copy the strokes, for benchmarks. */
+  public int getCopyCount() {
+    return copyCount;
+  }
+
+  private void publish(Stroke[] strokes, int size) {
+    current.set(new Snapshot(current.get().version + 1, strokes, size));
+  }
+
+  @Override
+  public String toString() {
+    Snapshot snapshot = current.get();
+    return String.format(
+        "%s: version %d, %d strokes, %d copies", TAG, snapshot.version, snapshot.size, copyCount);
+  }
+}
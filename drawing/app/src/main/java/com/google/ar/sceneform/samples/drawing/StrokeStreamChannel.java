@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.util.Log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moves stroke stream bytes to and from a peer with non-blocking NIO on its own thread, so that
+ * neither sending nor receiving ever waits on the network from the main thread.
+ *
+ * <p>{@link #send(ByteBuffer)} queues bytes and returns immediately. Received bytes are queued as
+ * they arrive and picked up with {@link #poll()}, usually once per frame.
+ */
+public class StrokeStreamChannel implements Closeable {
+
+  private static final String TAG = StrokeStreamChannel.class.getSimpleName();
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private interface Setup {
+    void run(StrokeStreamChannel channel) throws IOException;
+  }
+
+  private final Selector selector;
+  private final Thread thread;
+  private final ConcurrentLinkedQueue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<ByteBuffer> incoming = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+  private SelectionKey readKey;
+  private SelectionKey writeKey;
+  private volatile boolean connected;
+  private volatile boolean closed;
+
+  private StrokeStreamChannel(String name, Setup setup) throws IOException {
+    selector = Selector.open();
+    thread = new Thread(() -> run(setup), name);
+    thread.start();
+  }
+
+  /** Connects to a peer that is listening with {@link #listen(String, int)}. */
+  public static StrokeStreamChannel connect(String host, int port) throws IOException {
+    return new StrokeStreamChannel(
+        TAG + " to " + host + ":" + port,
+        channel -> {
+          SocketChannel socket = SocketChannel.open();
+          socket.configureBlocking(false);
+          socket.connect(new InetSocketAddress(host, port));
+          channel.readKey = socket.register(channel.selector, SelectionKey.OP_CONNECT);
+          channel.writeKey = channel.readKey;
+        });
+  }
+
+  /**
+   * Waits for the first peer that connects to the given port of the given local address. Only the
+   * network of that address can connect, e.g. nothing but {@code adb forward} for the loopback
+   * address.
+   */
+  public static StrokeStreamChannel listen(String bindAddress, int port) throws IOException {
+    return new StrokeStreamChannel(
+        TAG + " on " + bindAddress + ":" + port,
+        channel -> {
+          ServerSocketChannel server = ServerSocketChannel.open();
+          server.configureBlocking(false);
+          server.socket().bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+          server.register(channel.selector, SelectionKey.OP_ACCEPT);
+        });
+  }
+
+  /**
+   * Returns two channels connected to each other through in-process pipes, a stand-in for a
+   * socket that works without network access.
+   */
+  public static StrokeStreamChannel[] openLoopback() throws IOException {
+    Pipe forward = Pipe.open();
+    Pipe backward = Pipe.open();
+    return new StrokeStreamChannel[] {
+      new StrokeStreamChannel(
+          TAG + " loopback a", channel -> channel.attach(backward.source(), forward.sink())),
+      new StrokeStreamChannel(
+          TAG + " loopback b", channel -> channel.attach(forward.source(), backward.sink()))
+    };
+  }
+
+  /** Queues bytes for the peer. Bytes sent before the connection is up are kept until it is. */
+  public void send(ByteBuffer bytes) {
+    outgoing.add(bytes);
+    selector.wakeup();
+  }
+
+  /** Returns the next chunk of received bytes, or null if nothing new has arrived. */
+  public ByteBuffer poll() {
+    return incoming.poll();
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  private void attach(SelectableChannel source, SelectableChannel sink) throws IOException {
+    source.configureBlocking(false);
+    sink.configureBlocking(false);
+    readKey = source.register(selector, SelectionKey.OP_READ);
+    writeKey = source == sink ? readKey : sink.register(selector, 0);
+    connected = true;
+  }
+
+  private void run(Setup setup) {
+    try {
+      setup.run(this);
+      while (!closed) {
+        updateWriteInterest();
+        selector.select();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            SocketChannel socket = ((ServerSocketChannel) key.channel()).accept();
+            if (socket != null) {
+              key.cancel();
+              key.channel().close();
+              attach(socket, socket);
+            }
+            continue;
+          }
+          if (key.isConnectable()) {
+            SocketChannel socket = (SocketChannel) key.channel();
+            if (socket.finishConnect()) {
+              key.interestOps(SelectionKey.OP_READ);
+              connected = true;
+            }
+            continue;
+          }
+          if (key.isReadable()) {
+            read(key);
+          }
+          if (key.isValid() && key.isWritable()) {
+            write(key);
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      Log.e(TAG, "Stroke stream failed", e);
+    } finally {
+      connected = false;
+      for (SelectionKey key : selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (IOException e) {
+          Log.w(TAG, "Unable to close channel", e);
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        Log.w(TAG, "Unable to close selector", e);
+      }
+    }
+  }
+
+  private void updateWriteInterest() {
+    if (!connected || writeKey == null || !writeKey.isValid()) {
+      return;
+    }
+    int ops = writeKey == readKey ? SelectionKey.OP_READ : 0;
+    if (!outgoing.isEmpty()) {
+      ops |= SelectionKey.OP_WRITE;
+    }
+    writeKey.interestOps(ops);
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    readBuffer.clear();
+    int count = ((ReadableByteChannel) key.channel()).read(readBuffer);
+    if (count < 0) {
+      // The peer went away.
+      closed = true;
+      return;
+    }
+    readBuffer.flip();
+    ByteBuffer chunk = ByteBuffer.allocate(readBuffer.remaining());
+    chunk.put(readBuffer);
+    chunk.flip();
+    incoming.add(chunk);
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    WritableByteChannel channel = (WritableByteChannel) key.channel();
+    ByteBuffer bytes;
+    while ((bytes = outgoing.peek()) != null) {
+      channel.write(bytes);
+      if (bytes.hasRemaining()) {
+        // The socket buffer is full, the rest goes out when it becomes writable again.
+        return;
+      }
+      outgoing.poll();
+    }
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.os.SystemClock;
+import android.util.Log;
+import com.google.ar.sceneform.math.Vector3;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Decodes {@link StrokeProtocol} messages as their bytes arrive. Bytes can be handed over in
+ * chunks of any size: complete messages are passed to a {@link StrokeListener} right away and an
+ * incomplete message at the end of a chunk is kept until the rest of it arrives.
+ *
+ * <p>The peer isn't trusted. A message longer than {@link StrokeProtocol#MAXIMUM_MESSAGE_LENGTH}
+ * or one whose fields don't fit its length stops the stream, see {@link #isFailed()}, since there
+ * is no way to find the start of the next message after it.
+ *
+ * <p>The latency reported for each message is the time from when the sender encoded it, or
+ * collected its first point, to when it was decoded. The two devices don't share a clock, so the
+ * offset between them is estimated from round trips of {@link #requestClock()}, and messages that
+ * arrive before the first round trip has completed don't count towards the latency.
+ */
+public class StrokeStreamReceiver {
+
+  private static final String TAG = StrokeStreamReceiver.class.getSimpleName();
+  // Returned by readVarint() if the bytes end before the varint does.
+  private static final long INCOMPLETE = -1;
+  // Senders only write varints of up to 63 bits, so that values are never negative.
+  private static final int MAXIMUM_VARINT_LENGTH = 9;
+  // A point is three varints of at least one byte each.
+  private static final int MINIMUM_POINT_LENGTH = 3;
+
+  private static class MalformedMessageException extends Exception {
+    MalformedMessageException(String message) {
+      super(message);
+    }
+  }
+
+  private byte[] buffer = new byte[1024];
+  private int start;
+  private int end;
+  private int position;
+  // Fields of a message are never read past its end.
+  private int limit;
+  private boolean failed;
+
+  private final HashMap<Integer, int[]> lastPoints = new HashMap<>();
+  private final ArrayList<Vector3> points = new ArrayList<>();
+  private final StrokeStreamSender.Encoder message = new StrokeStreamSender.Encoder();
+  private final StrokeStreamSender.Encoder replies = new StrokeStreamSender.Encoder();
+
+  private long byteCount;
+  private int messageCount;
+  private int latencyCount;
+  private long latencySumMillis;
+  private long latencyMaxMillis;
+
+  // The uptime of the peer minus ours, from the round trip that took the least time.
+  private long peerClockOffsetMillis;
+  private long minimumRoundTripMillis = Long.MAX_VALUE;
+  private int roundTripCount;
+  private long roundTripSumMillis;
+
+  /**
+   * Decodes every complete message in the received bytes and the ones kept from before.
+   *
+   * @param listener receives the edits, or null on a peer that only answers clock requests
+   */
+  public void receive(ByteBuffer bytes, StrokeListener listener) {
+    if (failed) {
+      bytes.position(bytes.limit());
+      return;
+    }
+    int length = bytes.remaining();
+    if (end + length > buffer.length) {
+      System.arraycopy(buffer, start, buffer, 0, end - start);
+      end -= start;
+      start = 0;
+      if (end + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, end + length));
+      }
+    }
+    bytes.get(buffer, end, length);
+    end += length;
+    byteCount += length;
+
+    try {
+      while (decodeMessage(listener)) {}
+    } catch (MalformedMessageException e) {
+      Log.e(TAG, "Stopped decoding the stroke stream: " + e.getMessage());
+      failed = true;
+      start = 0;
+      end = 0;
+    }
+  }
+
+  /** Returns true if the peer sent an invalid message. Nothing is decoded after one. */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns a message that asks the peer for its clock. Sending one every now and then keeps the
+   * estimate of the clock offset, and with it the latency, accurate.
+   */
+  public ByteBuffer requestClock() {
+    StrokeStreamSender.Encoder request = new StrokeStreamSender.Encoder();
+    message.size = 0;
+    message.writeByte(StrokeProtocol.CLOCK_REQUEST);
+    message.writeVarint(SystemClock.uptimeMillis());
+    request.writeMessage(message);
+    return ByteBuffer.wrap(Arrays.copyOf(request.bytes, request.size));
+  }
+
+  /** Returns the answers to the clock requests of the peer, or null if there are none. */
+  public ByteBuffer takeReplies() {
+    if (replies.size == 0) {
+      return null;
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(Arrays.copyOf(replies.bytes, replies.size));
+    replies.size = 0;
+    return bytes;
+  }
+
+  // Returns false if the buffer doesn't hold a complete message.
+  private boolean decodeMessage(StrokeListener listener) throws MalformedMessageException {
+    position = start;
+    limit = end;
+    long messageLength = readVarint();
+    if (messageLength == INCOMPLETE) {
+      return false;
+    }
+    if (messageLength == 0 || messageLength > StrokeProtocol.MAXIMUM_MESSAGE_LENGTH) {
+      throw new MalformedMessageException("message length " + messageLength);
+    }
+    if (end - position < messageLength) {
+      return false;
+    }
+    int messageEnd = position + (int) messageLength;
+    limit = messageEnd;
+    int type = buffer[position++];
+    long timeMillis = readField();
+    switch (type) {
+      case StrokeProtocol.STROKE_BEGIN:
+        {
+          int strokeId = (int) readField();
+          int colorId = (int) readField();
+          float radius = StrokeProtocol.dequantize((int) readField());
+          if (listener != null) {
+            lastPoints.put(strokeId, new int[3]);
+            listener.onStrokeBegin(strokeId, colorId, radius);
+          }
+          break;
+        }
+      case StrokeProtocol.STROKE_POINTS:
+        {
+          int strokeId = (int) readField();
+          long count = readField();
+          if (count > (messageEnd - position) / MINIMUM_POINT_LENGTH) {
+            throw new MalformedMessageException(count + " points in " + messageLength + " bytes");
+          }
+          int[] last = lastPoints.get(strokeId);
+          if (last == null) {
+            break;
+          }
+          points.clear();
+          for (int i = 0; i < count; i++) {
+            last[0] += readSignedField();
+            last[1] += readSignedField();
+            last[2] += readSignedField();
+            points.add(
+                new Vector3(
+                    StrokeProtocol.dequantize(last[0]),
+                    StrokeProtocol.dequantize(last[1]),
+                    StrokeProtocol.dequantize(last[2])));
+          }
+          listener.onStrokePoints(strokeId, points);
+          break;
+        }
+      case StrokeProtocol.STROKE_END:
+        {
+          int strokeId = (int) readField();
+          if (lastPoints.remove(strokeId) != null) {
+            listener.onStrokeEnd(strokeId);
+          }
+          break;
+        }
+      case StrokeProtocol.UNDO:
+        if (listener != null) {
+          listener.onUndo();
+        }
+        break;
+      case StrokeProtocol.CLEAR:
+        if (listener != null) {
+          listener.onClear();
+        }
+        break;
+      case StrokeProtocol.CLOCK_REQUEST:
+        message.size = 0;
+        message.writeByte(StrokeProtocol.CLOCK_RESPONSE);
+        message.writeVarint(SystemClock.uptimeMillis());
+        message.writeVarint(timeMillis);
+        replies.writeMessage(message);
+        break;
+      case StrokeProtocol.CLOCK_RESPONSE:
+        updateClockOffset(readField(), timeMillis);
+        break;
+      default:
+        // Messages from a newer sender are skipped, their length is known.
+        break;
+    }
+    start = messageEnd;
+    messageCount++;
+
+    if (minimumRoundTripMillis != Long.MAX_VALUE && type != StrokeProtocol.CLOCK_RESPONSE) {
+      long latencyMillis = SystemClock.uptimeMillis() - (timeMillis - peerClockOffsetMillis);
+      latencySumMillis += latencyMillis;
+      latencyMaxMillis = Math.max(latencyMaxMillis, latencyMillis);
+      latencyCount++;
+    }
+    return true;
+  }
+
+  // The peer answered at peerTimeMillis somewhere between when we asked and now, assume halfway.
+  private void updateClockOffset(long requestTimeMillis, long peerTimeMillis) {
+    long now = SystemClock.uptimeMillis();
+    long roundTripMillis = now - requestTimeMillis;
+    if (roundTripMillis < 0) {
+      return;
+    }
+    roundTripCount++;
+    roundTripSumMillis += roundTripMillis;
+    if (roundTripMillis <= minimumRoundTripMillis) {
+      minimumRoundTripMillis = roundTripMillis;
+      peerClockOffsetMillis = peerTimeMillis - (requestTimeMillis + roundTripMillis / 2);
+    }
+  }
+
+  // Returns INCOMPLETE if the varint doesn't end before the limit.
+  private long readVarint() throws MalformedMessageException {
+    long value = 0;
+    for (int shift = 0; position < limit; shift += 7) {
+      if (shift >= MAXIMUM_VARINT_LENGTH * 7) {
+        throw new MalformedMessageException("varint longer than 63 bits");
+      }
+      byte b = buffer[position++];
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    return INCOMPLETE;
+  }
+
+  // Reads a field of the current message, which is complete, so the field must be too.
+  private long readField() throws MalformedMessageException {
+    long value = readVarint();
+    if (value == INCOMPLETE) {
+      throw new MalformedMessageException("field runs past the end of its message");
+    }
+    return value;
+  }
+
+  private int readSignedField() throws MalformedMessageException {
+    return StrokeProtocol.unzigzag((int) readField());
+  }
+
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  public int getMessageCount() {
+    return messageCount;
+  }
+
+  public float getMeanLatencyMillis() {
+    return latencyCount == 0 ? 0 : (float) latencySumMillis / latencyCount;
+  }
+
+  public long getMaxLatencyMillis() {
+    return latencyMaxMillis;
+  }
+
+  /** Returns the mean time clock requests took to be answered, or 0 if none were. */
+  public float getMeanRoundTripMillis() {
+    return roundTripCount == 0 ? 0 : (float) roundTripSumMillis / roundTripCount;
+  }
+
+  /** Returns the estimated uptime of the peer minus ours, see {@link #requestClock()}. */
+  public long getPeerClockOffsetMillis() {
+    return peerClockOffsetMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d messages, %d bytes, latency mean %.1fms, max %dms, round trip %.1fms",
+        TAG,
+        messageCount,
+        byteCount,
+        getMeanLatencyMillis(),
+        latencyMaxMillis,
+        getMeanRoundTripMillis());
+  }
+}
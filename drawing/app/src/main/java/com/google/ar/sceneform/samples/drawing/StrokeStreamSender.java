@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.os.SystemClock;
+import com.google.ar.sceneform.math.Vector3;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Encodes the edits of a drawing into {@link StrokeProtocol} messages.
+ *
+ * <p>Points are collected per stroke and only written out as one message when {@link
+ * #takeBatch()} is called, typically once per frame, or when another message has to go first.
+ * Encoding never blocks: the bytes are handed to whatever transport the caller uses, e.g. a {@link
+ * StrokeStreamChannel}.
+ */
+public class StrokeStreamSender implements StrokeListener {
+
+  private static final String TAG = StrokeStreamSender.class.getSimpleName();
+  // Points are split over several messages before one gets near the length receivers accept.
+  private static final int MAXIMUM_BATCH_LENGTH = StrokeProtocol.MAXIMUM_MESSAGE_LENGTH / 2;
+
+  private final Encoder output = new Encoder();
+  private final Encoder message = new Encoder();
+  private final Encoder batch = new Encoder();
+  private final HashMap<Integer, int[]> lastPoints = new HashMap<>();
+
+  private int batchStrokeId;
+  private int batchCount;
+  private long batchTimeMillis;
+
+  private long byteCount;
+  private int messageCount;
+  private int pointCount;
+  private int activeStrokes;
+  private long activeSinceMillis;
+  private long drawingMillis;
+
+  /** A growable byte array that writes varints. */
+  static class Encoder {
+    byte[] bytes = new byte[256];
+    int size;
+
+    void writeByte(int value) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, size * 2);
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    void writeVarint(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      writeByte((int) value);
+    }
+
+    void writeSignedVarint(int value) {
+      writeVarint(StrokeProtocol.zigzag(value) & 0xFFFFFFFFL);
+    }
+
+    void write(Encoder other) {
+      for (int i = 0; i < other.size; i++) {
+        writeByte(other.bytes[i]);
+      }
+    }
+
+    /** Writes a complete message, its length followed by the bytes of the given encoder. */
+    void writeMessage(Encoder message) {
+      writeVarint(message.size);
+      write(message);
+    }
+  }
+
+  @Override
+  public void onStrokeBegin(int strokeId, int colorId, float radius) {
+    flushPoints();
+    startMessage(StrokeProtocol.STROKE_BEGIN, SystemClock.uptimeMillis());
+    message.writeVarint(strokeId);
+    message.writeVarint(colorId);
+    message.writeVarint(StrokeProtocol.quantize(radius));
+    endMessage();
+
+    lastPoints.put(strokeId, new int[3]);
+    if (activeStrokes++ == 0) {
+      activeSinceMillis = SystemClock.uptimeMillis();
+    }
+  }
+
+  @Override
+  public void onStrokePoints(int strokeId, List<Vector3> pointsInLocal) {
+    int[] last = lastPoints.get(strokeId);
+    if (last == null) {
+      return;
+    }
+    if (batchCount > 0 && batchStrokeId != strokeId) {
+      flushPoints();
+    }
+    if (batchCount == 0) {
+      batchStrokeId = strokeId;
+      batchTimeMillis = SystemClock.uptimeMillis();
+    }
+    for (int i = 0; i < pointsInLocal.size(); i++) {
+      if (batch.size >= MAXIMUM_BATCH_LENGTH) {
+        flushPoints();
+        batchStrokeId = strokeId;
+      }
+      Vector3 point = pointsInLocal.get(i);
+      int x = StrokeProtocol.quantize(point.x);
+      int y = StrokeProtocol.quantize(point.y);
+      int z = StrokeProtocol.quantize(point.z);
+      batch.writeSignedVarint(x - last[0]);
+      batch.writeSignedVarint(y - last[1]);
+      batch.writeSignedVarint(z - last[2]);
+      last[0] = x;
+      last[1] = y;
+      last[2] = z;
+      batchCount++;
+    }
+    pointCount += pointsInLocal.size();
+  }
+
+  @Override
+  public void onStrokeEnd(int strokeId) {
+    flushPoints();
+    startMessage(StrokeProtocol.STROKE_END, SystemClock.uptimeMillis());
+    message.writeVarint(strokeId);
+    endMessage();
+
+    if (lastPoints.remove(strokeId) != null && --activeStrokes == 0) {
+      drawingMillis += SystemClock.uptimeMillis() - activeSinceMillis;
+    }
+  }
+
+  @Override
+  public void onUndo() {
+    flushPoints();
+    startMessage(StrokeProtocol.UNDO, SystemClock.uptimeMillis());
+    endMessage();
+  }
+
+  @Override
+  public void onClear() {
+    flushPoints();
+    startMessage(StrokeProtocol.CLEAR, SystemClock.uptimeMillis());
+    endMessage();
+  }
+
+  /**
+   * Returns the bytes of all messages encoded since the previous call, including the points that
+   * were still being batched, or null if there are none.
+   */
+  public ByteBuffer takeBatch() {
+    flushPoints();
+    if (output.size == 0) {
+      return null;
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(Arrays.copyOf(output.bytes, output.size));
+    output.size = 0;
+    return bytes;
+  }
+
+  private void flushPoints() {
+    if (batchCount == 0) {
+      return;
+    }
+    startMessage(StrokeProtocol.STROKE_POINTS, batchTimeMillis);
+    message.writeVarint(batchStrokeId);
+    message.writeVarint(batchCount);
+    message.write(batch);
+    endMessage();
+    batch.size = 0;
+    batchCount = 0;
+  }
+
+  private void startMessage(int type, long timeMillis) {
+    message.size = 0;
+    message.writeByte(type);
+    message.writeVarint(timeMillis);
+  }
+
+  private void endMessage() {
+    int start = output.size;
+    output.writeMessage(message);
+    byteCount += output.size - start;
+    messageCount++;
+  }
+
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  public int getPointCount() {
+    return pointCount;
+  }
+
+  /** Returns the encoded bytes per second during which at least one stroke was being drawn. */
+  public float getBytesPerDrawingSecond() {
+    long millis = drawingMillis;
+    if (activeStrokes > 0) {
+      millis += SystemClock.uptimeMillis() - activeSinceMillis;
+    }
+    return millis == 0 ? 0 : byteCount * 1000f / millis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d messages, %d points, %d bytes (%.1f bytes per point), %.0f bytes/s of drawing",
+        TAG,
+        messageCount,
+        pointCount,
+        byteCount,
+        pointCount == 0 ? 0f : (float) byteCount / pointCount,
+        getBytesPerDrawingSecond());
+  }
+}
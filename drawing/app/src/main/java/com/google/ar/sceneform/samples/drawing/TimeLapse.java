@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.sceneform.rendering.Material;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays how a drawing was made, in real time or faster, without building meshes while it plays.
+ *
+ * <p>The mesh of every finished stroke is already split into chunks of {@link
+ * Stroke#CHUNK_SEGMENTS} segments, one submesh each, see {@link Stroke#getChunkCount()}. The chunks
+ * of all strokes are sorted by the time their last point was drawn, using the {@link PointTimes}
+ * of the strokes. Playing then only moves a cursor along that order and shows the chunks it
+ * passes, so a frame costs as much as the chunks that appear in it, whatever the size of the
+ * drawing. {@link #seekTo(long)} finds the cursor position for any time with a binary search and
+ * only shows or hides the chunks between the old and the new position.
+ *
+ * <p>Pauses longer than {@link #MAXIMUM_PAUSE_MILLIS} are cut short, so that a break between two
+ * strokes doesn't show as a still picture. Copies of a stroke share its mesh and are replayed with
+ * it. Strokes that aren't finished are hidden while the time lapse plays.
+ */
+public class TimeLapse {
+
+  private static final String TAG = TimeLapse.class.getSimpleName();
+  private static final long MAXIMUM_PAUSE_MILLIS = 1000;
+  private static final long UNSET = -1;
+
+  private final List<Stroke> strokes;
+  private final Material hiddenMaterial;
+  private final float speed;
+  private final ArrayList<Chunk> chunks = new ArrayList<>();
+  // The time each chunk appears at, in playback time, which starts at 0 and has no long pauses.
+  private final long[] chunkPlaybackMillis;
+
+  private int visibleChunkCount;
+  private boolean isPlaying;
+  private boolean isStopped;
+  private long playbackMillis;
+  private long clockStartPlaybackMillis;
+  private long clockStartUptimeMillis = UNSET;
+  private long longestUpdateNanos;
+  private int seekCount;
+
+  private static class Chunk {
+    final Stroke stroke;
+    final int index;
+    final long timeMillis;
+
+    Chunk(Stroke stroke, int index, long timeMillis) {
+      this.stroke = stroke;
+      this.index = index;
+      this.timeMillis = timeMillis;
+    }
+
+    void setVisible(boolean visible, Material hiddenMaterial) {
+      stroke.setChunkVisible(index, visible, hiddenMaterial);
+    }
+  }
+
+  /**
+   * Orders the chunks of the finished strokes. Nothing changes in the scene yet. Main thread only.
+   *
+   * @param strokes the drawing, e.g. a {@link StrokeRegistry.Snapshot}, which must not change
+   * @param hiddenMaterial the material of chunks that aren't showing yet, see {@link
+   *     StrokePalette#makeHiddenMaterial}
+   * @param speed how much faster than real time to play
+   */
+  public TimeLapse(List<Stroke> strokes, Material hiddenMaterial, float speed) {
+    this.strokes = strokes;
+    this.hiddenMaterial = hiddenMaterial;
+    this.speed = speed;
+    for (int i = 0; i < strokes.size(); i++) {
+      Stroke stroke = strokes.get(i);
+      // A worker may still be finishing the points of the others, e.g. while a finger draws.
+      if (!stroke.isFinished()) {
+        continue;
+      }
+      PointTimes times = stroke.getTimes();
+      int lastPoint = Math.min(stroke.getPoints().size(), times.size()) - 1;
+      int chunkCount = stroke.getChunkCount();
+      for (int chunk = 0; chunk < chunkCount; chunk++) {
+        int to = Math.min((chunk + 1) * Stroke.CHUNK_SEGMENTS, lastPoint);
+        chunks.add(new Chunk(stroke, chunk, times.getMillis(to)));
+      }
+    }
+    // The sort is stable, so chunks drawn at the same time, e.g. restored ones, keep their order.
+    Collections.sort(chunks, (a, b) -> Long.compare(a.timeMillis, b.timeMillis));
+    chunkPlaybackMillis = new long[chunks.size()];
+    for (int i = 1; i < chunks.size(); i++) {
+      long pause = chunks.get(i).timeMillis - chunks.get(i - 1).timeMillis;
+      chunkPlaybackMillis[i] = chunkPlaybackMillis[i - 1] + Math.min(pause, MAXIMUM_PAUSE_MILLIS);
+    }
+  }
+
+  /** Hides the strokes and plays their chunks from the start. Main thread only. */
+  public void start() {
+    if (isStopped || isPlaying) {
+      return;
+    }
+    for (int i = 0; i < strokes.size(); i++) {
+      Stroke stroke = strokes.get(i);
+      if (stroke.getChunkCount() == 0) {
+        stroke.setVisible(false);
+      }
+    }
+    for (int i = 0; i < chunks.size(); i++) {
+      chunks.get(i).setVisible(false, hiddenMaterial);
+    }
+    isPlaying = true;
+    seekTo(0);
+  }
+
+  /**
+   * Jumps to how the drawing looked at a time, in playback time from 0 to {@link
+   * #getDurationMillis()}, and plays on from there.
+   */
+  public void seekTo(long playbackMillis) {
+    if (!isPlaying) {
+      return;
+    }
+    this.playbackMillis = Math.max(0, Math.min(playbackMillis, getDurationMillis()));
+    int count = countUntil(this.playbackMillis);
+    for (int i = visibleChunkCount; i < count; i++) {
+      chunks.get(i).setVisible(true, hiddenMaterial);
+    }
+    for (int i = count; i < visibleChunkCount; i++) {
+      chunks.get(i).setVisible(false, hiddenMaterial);
+    }
+    visibleChunkCount = count;
+    clockStartPlaybackMillis = this.playbackMillis;
+    clockStartUptimeMillis = UNSET;
+    seekCount++;
+  }
+
+  /**
+   * Shows the chunks that were drawn by now. Call once per frame on the main thread.
+   *
+   * @param uptimeMillis the frame time, in the {@link android.os.SystemClock#uptimeMillis()} time
+   *     base
+   * @return true once the whole drawing is showing
+   */
+  public boolean update(long uptimeMillis) {
+    if (!isPlaying) {
+      return false;
+    }
+    long start = System.nanoTime();
+    if (clockStartUptimeMillis == UNSET) {
+      clockStartUptimeMillis = uptimeMillis;
+    }
+    playbackMillis =
+        clockStartPlaybackMillis + (long) ((uptimeMillis - clockStartUptimeMillis) * speed);
+    while (visibleChunkCount < chunks.size()
+        && chunkPlaybackMillis[visibleChunkCount] <= playbackMillis) {
+      chunks.get(visibleChunkCount++).setVisible(true, hiddenMaterial);
+    }
+    longestUpdateNanos = Math.max(longestUpdateNanos, System.nanoTime() - start);
+    return visibleChunkCount == chunks.size();
+  }
+
+  /** Shows the whole drawing again. Main thread only. */
+  public void stop() {
+    if (isStopped) {
+      return;
+    }
+    isStopped = true;
+    if (!isPlaying) {
+      return;
+    }
+    isPlaying = false;
+    for (int i = visibleChunkCount; i < chunks.size(); i++) {
+      chunks.get(i).setVisible(true, hiddenMaterial);
+    }
+    for (int i = 0; i < strokes.size(); i++) {
+      strokes.get(i).setVisible(true);
+    }
+  }
+
+  public boolean isPlaying() {
+    return isPlaying;
+  }
+
+  /** Returns how long the whole drawing takes to play at a speed of one. */
+  public long getDurationMillis() {
+    return chunks.isEmpty() ? 0 : chunkPlaybackMillis[chunks.size() - 1];
+  }
+
+  // Returns the number of chunks that appear at or before the given playback time.
+  private int countUntil(long playbackMillis) {
+    int low = 0;
+    int high = chunks.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (chunkPlaybackMillis[middle] <= playbackMillis) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d strokes in %d chunks, %.1fs of drawing at %.1fx, %d of %d chunks showing at %.1fs,"
+            + " %d seeks, longest frame update %.3fms",
+        TAG,
+        strokes.size(),
+        chunks.size(),
+        getDurationMillis() / 1000f,
+        speed,
+        visibleChunkCount,
+        chunks.size(),
+        playbackMillis / 1000f,
+        seekCount,
+        longestUpdateNanos / 1e6f);
+  }
+}
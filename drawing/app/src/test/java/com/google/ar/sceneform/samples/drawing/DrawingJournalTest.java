@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.sceneform.math.Vector3;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Writes edits to a {@link DrawingJournal} in a temporary directory and opens it again. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DrawingJournalTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final StrokeStreamSender encoder = new StrokeStreamSender();
+
+  @Test
+  public void reopen_recoversFinishedStrokes() throws IOException {
+    DrawingJournal journal = new DrawingJournal(folder.getRoot());
+    journal.getRecovery().join();
+    drawStroke(0, StrokePalette.WHITE, 3);
+    drawStroke(0, StrokePalette.WHITE, 5);
+    journal.append(encoder.takeBatch());
+    closeAndWait(journal);
+
+    List<DrawingJournal.RecoveredStroke> strokes = reopen();
+    assertEquals(2, strokes.size());
+    assertEquals(3, strokes.get(0).getPoints().size());
+    assertEquals(5, strokes.get(1).getPoints().size());
+    assertEquals(4f, strokes.get(1).getPoints().get(4).z, 0f);
+  }
+
+  @Test
+  public void reopen_recoversUndo() throws IOException {
+    DrawingJournal journal = new DrawingJournal(folder.getRoot());
+    journal.getRecovery().join();
+    drawStroke(0, StrokePalette.WHITE, 3);
+    drawStroke(0, StrokePalette.WHITE, 5);
+    encoder.onUndo();
+    journal.append(encoder.takeBatch());
+    closeAndWait(journal);
+
+    List<DrawingJournal.RecoveredStroke> strokes = reopen();
+    assertEquals(1, strokes.size());
+    assertEquals(3, strokes.get(0).getPoints().size());
+  }
+
+  @Test
+  public void append_afterClose_isDropped() throws IOException {
+    DrawingJournal journal = new DrawingJournal(folder.getRoot());
+    journal.getRecovery().join();
+    drawStroke(0, StrokePalette.WHITE, 3);
+    journal.append(encoder.takeBatch());
+    journal.close();
+    drawStroke(0, StrokePalette.WHITE, 5);
+    journal.append(encoder.takeBatch());
+    journal.getTermination().join();
+
+    assertEquals(1, reopen().size());
+  }
+
+  private void drawStroke(int strokeId, int colorId, int pointCount) {
+    encoder.onStrokeBegin(strokeId, colorId, 0.005f);
+    for (int i = 0; i < pointCount; i++) {
+      encoder.onStrokePoints(strokeId, Arrays.asList(new Vector3(0, 0, i)));
+    }
+    encoder.onStrokeEnd(strokeId);
+  }
+
+  private List<DrawingJournal.RecoveredStroke> reopen() throws IOException {
+    DrawingJournal journal = new DrawingJournal(folder.getRoot());
+    List<DrawingJournal.RecoveredStroke> strokes = journal.getRecovery().join();
+    closeAndWait(journal);
+    return strokes;
+  }
+
+  private static void closeAndWait(DrawingJournal journal) {
+    journal.close();
+    journal.getTermination().join();
+  }
+}
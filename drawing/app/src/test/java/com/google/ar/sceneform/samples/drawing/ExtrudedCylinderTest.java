@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Builds finished strokes from a fixed corpus of synthetic strokes and checks what the vertex cache
+ * optimization does to them: wandering lines from a few points to a few hundred, drawn with a fixed
+ * random seed so every run sees the same meshes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ExtrudedCylinderTest {
+
+  private static final int STROKE_COUNT = 64;
+  private static final int MAXIMUM_POINTS_PER_STROKE = 400;
+  private static final float STEP = 0.01f;
+  private static final long SEED = 45;
+
+  @Test
+  public void finishedCylinder_missesFewerVertices() {
+    VertexCacheOptimizer.Statistics statistics = buildCorpus();
+
+    // The rings of a cylinder are emitted side by side, so every vertex is missed about twice.
+    assertTrue(statistics.toString(), statistics.getAcmrBefore() >= 1.0f);
+    assertTrue(statistics.toString(), statistics.getAcmrAfter() <= 0.7f);
+  }
+
+  @Test
+  public void finishedCylinder_dropsUnusedVertices() {
+    VertexCacheOptimizer.Statistics statistics = buildCorpus();
+
+    assertTrue(
+        statistics.toString(),
+        statistics.getVertexCountAfter() < statistics.getVertexCountBefore());
+  }
+
+  @Test
+  public void finishedCylinder_makesOneSubmeshPerChunk() {
+    // 17 segments: two full chunks of 8 and one of a single segment.
+    PointStore points = makeStroke(new Random(SEED), 18);
+    RenderableDefinition definition =
+        ExtrudedCylinder.makeFinishedCylinder(0.005f, points, null, StrokePalette.WHITE, 8, null);
+
+    assertEquals(3, ExtrudedCylinder.getSubmeshCount(points.size(), 8));
+    assertEquals(3, definition.getSubmeshes().size());
+    // 48 indices per segment, 24 per cap, the start cap in the first chunk and the end cap in the
+    // last.
+    assertEquals(24 + 8 * 48, definition.getSubmeshes().get(0).getTriangleIndices().size());
+    assertEquals(8 * 48, definition.getSubmeshes().get(1).getTriangleIndices().size());
+    assertEquals(48 + 24, definition.getSubmeshes().get(2).getTriangleIndices().size());
+  }
+
+  private static VertexCacheOptimizer.Statistics buildCorpus() {
+    Random random = new Random(SEED);
+    VertexCacheOptimizer.Statistics statistics = new VertexCacheOptimizer.Statistics();
+    for (int stroke = 0; stroke < STROKE_COUNT; stroke++) {
+      PointStore points = makeStroke(random, 2 + random.nextInt(MAXIMUM_POINTS_PER_STROKE - 1));
+      ExtrudedCylinder.makeFinishedCylinder(
+          0.005f, points, null, StrokePalette.WHITE, Stroke.CHUNK_SEGMENTS, statistics);
+    }
+    return statistics;
+  }
+
+  // A random walk that turns a little at every point, like a hand drawing a curve.
+  private static PointStore makeStroke(Random random, int pointCount) {
+    PointStore points = new PointStore();
+    float x = 0;
+    float y = 0;
+    float z = 0;
+    double heading = random.nextDouble() * 2 * Math.PI;
+    double pitch = 0;
+    for (int i = 0; i < pointCount; i++) {
+      points.add(x, y, z);
+      heading += random.nextGaussian() * 0.3;
+      pitch = 0.8 * pitch + random.nextGaussian() * 0.1;
+      x += (float) (STEP * Math.cos(heading) * Math.cos(pitch));
+      y += (float) (STEP * Math.sin(pitch));
+      z += (float) (STEP * Math.sin(heading) * Math.cos(pitch));
+    }
+    return points;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Runs {@link FrameScheduler} frames by hand with a budget no slice of these tests gets near. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FrameSchedulerTest {
+
+  private static final float BUDGET_MILLIS = 1000;
+
+  private final FrameScheduler scheduler = new FrameScheduler(BUDGET_MILLIS);
+  private int sliceCount;
+
+  @Test
+  public void continuingTask_runsUntilDoneInOneFrame() {
+    scheduler.post(
+        "continue",
+        FrameScheduler.PRIORITY_NORMAL,
+        () ->
+            ++sliceCount < 5
+                ? FrameScheduler.SliceResult.CONTINUE
+                : FrameScheduler.SliceResult.DONE);
+
+    scheduler.runFrame();
+
+    assertEquals(5, sliceCount);
+    assertFalse(scheduler.hasPendingTasks());
+  }
+
+  @Test
+  public void waitingTask_runsOncePerFrame() {
+    scheduler.post(
+        "wait",
+        FrameScheduler.PRIORITY_NORMAL,
+        () -> {
+          sliceCount++;
+          return FrameScheduler.SliceResult.WAIT;
+        });
+
+    scheduler.runFrame();
+    assertEquals(1, sliceCount);
+    assertTrue(scheduler.isQueued("wait"));
+
+    scheduler.runFrame();
+    assertEquals(2, sliceCount);
+  }
+
+  @Test
+  public void waitingTask_doesNotHoldUpOthers() {
+    scheduler.post(
+        "wait", FrameScheduler.PRIORITY_HIGH, () -> FrameScheduler.SliceResult.WAIT);
+    scheduler.post("run", FrameScheduler.PRIORITY_LOW, () -> sliceCount++);
+
+    scheduler.runFrame();
+
+    assertEquals(1, sliceCount);
+    assertEquals(1, scheduler.getQueueDepth());
+  }
+}
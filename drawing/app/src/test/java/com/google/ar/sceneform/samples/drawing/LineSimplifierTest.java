@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks that {@link LineSimplifier}, which works on indices into packed points, keeps exactly the
+ * points the earlier implementation on lists of {@link Vector3} kept.
+ */
+@RunWith(JUnit4.class)
+public class LineSimplifierTest {
+
+  private static final float EPSILON = 1e-6f;
+
+  /** The simplifier as it was before points were packed, kept as the reference. */
+  private static class Vector3LineSimplifier {
+    private static final float MAXIMUM_SMOOTHING_DISTANCE = 0.005f;
+    private static final int POINT_SMOOTHING_INTERVAL = 10;
+
+    private final ArrayList<Vector3> points = new ArrayList<>();
+    private final ArrayList<Vector3> smoothedPoints = new ArrayList<>();
+
+    void add(Vector3 point) {
+      points.add(point);
+      if (points.size() - smoothedPoints.size() > POINT_SMOOTHING_INTERVAL) {
+        smoothPoints();
+      }
+    }
+
+    private void smoothPoints() {
+      List<Vector3> pointsToSmooth =
+          points.subList(points.size() - POINT_SMOOTHING_INTERVAL - 1, points.size() - 1);
+      ArrayList<Vector3> newlySmoothedPoints = smoothPoints(pointsToSmooth);
+      points.subList(points.size() - POINT_SMOOTHING_INTERVAL - 1, points.size() - 1).clear();
+      points.addAll(points.size() - 1, newlySmoothedPoints);
+      smoothedPoints.addAll(newlySmoothedPoints);
+    }
+
+    private ArrayList<Vector3> smoothPoints(List<Vector3> pointsToSmooth) {
+      ArrayList<Vector3> results = new ArrayList<>();
+      float maxDistance = 0.0f;
+      int index = 0;
+      float distance;
+      int endIndex = pointsToSmooth.size() - 1;
+      for (int i = 0; i < endIndex - 1; i++) {
+        distance = getPerpendicularDistance(points.get(0), points.get(endIndex), points.get(i));
+        if (distance > maxDistance) {
+          index = i;
+          maxDistance = distance;
+        }
+      }
+      if (maxDistance > MAXIMUM_SMOOTHING_DISTANCE) {
+        results.addAll(smoothPoints(pointsToSmooth.subList(0, index)));
+        results.addAll(smoothPoints(pointsToSmooth.subList(index + 1, endIndex)));
+      } else {
+        results.addAll(pointsToSmooth);
+      }
+      return results;
+    }
+
+    private float getPerpendicularDistance(Vector3 start, Vector3 end, Vector3 point) {
+      Vector3 crossProduct =
+          Vector3.cross(Vector3.subtract(point, start), Vector3.subtract(point, end));
+      return crossProduct.length() / Vector3.subtract(end, start).length();
+    }
+  }
+
+  @Test
+  public void straightLine_matchesVector3Implementation() {
+    ArrayList<Vector3> points = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      points.add(new Vector3(i * 0.002f, 0, -0.5f));
+    }
+    assertSamePoints(points);
+  }
+
+  @Test
+  public void jitteryStrokes_matchVector3Implementation() {
+    Random random = new Random(40);
+    for (int stroke = 0; stroke < 50; stroke++) {
+      // Jitter from a few tenths of a millimeter up to well above the smoothing distance.
+      float jitter = 0.0002f * (stroke + 1);
+      ArrayList<Vector3> points = new ArrayList<>();
+      Vector3 position = new Vector3();
+      for (int i = 0; i < 50 + random.nextInt(400); i++) {
+        position =
+            Vector3.add(
+                position,
+                new Vector3(
+                    0.003f + jitter * (float) random.nextGaussian(),
+                    0.001f + jitter * (float) random.nextGaussian(),
+                    jitter * (float) random.nextGaussian()));
+        points.add(position);
+      }
+      assertSamePoints(points);
+    }
+  }
+
+  @Test
+  public void circle_matchesVector3Implementation() {
+    ArrayList<Vector3> points = new ArrayList<>();
+    for (int i = 0; i < 360; i++) {
+      double angle = Math.toRadians(i * 2);
+      points.add(new Vector3(0.1f * (float) Math.cos(angle), 0.1f * (float) Math.sin(angle), 0));
+    }
+    assertSamePoints(points);
+  }
+
+  // Feeds both implementations and compares the points they keep. Every point is timed with its
+  // input index, so the times tell which input point each kept point must be.
+  private static void assertSamePoints(List<Vector3> input) {
+    Vector3LineSimplifier reference = new Vector3LineSimplifier();
+    LineSimplifier simplifier = new LineSimplifier();
+    for (int i = 0; i < input.size(); i++) {
+      reference.add(input.get(i));
+      simplifier.add(input.get(i), i);
+    }
+
+    List<Vector3> expected = reference.points;
+    PointList actual = simplifier.getPoints();
+    PointTimes times = simplifier.getTimes();
+    assertEquals(expected.size(), actual.size());
+    assertEquals(actual.size(), times.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertPoint(expected.get(i), actual, i);
+      assertPoint(input.get((int) times.getMillis(i)), actual, i);
+    }
+  }
+
+  private static void assertPoint(Vector3 expected, PointList actual, int index) {
+    assertEquals(expected.x, actual.getX(index), EPSILON);
+    assertEquals(expected.y, actual.getY(index), EPSILON);
+    assertEquals(expected.z, actual.getZ(index), EPSILON);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Feeds {@link OneEuroFilter} synthetic signals. */
+@RunWith(JUnit4.class)
+public class OneEuroFilterTest {
+
+  private static final long SEED = 27;
+
+  @Test
+  public void stillSignal_isSmoothed() {
+    OneEuroFilter filter = new OneEuroFilter(1.5f, 10f, 1f);
+    Random random = new Random(SEED);
+    float rawSpread = 0;
+    float filteredSpread = 0;
+    for (int i = 0; i < 200; i++) {
+      float value = (float) random.nextGaussian() * 0.001f;
+      float filtered = filter.filter(value, i * 16L);
+      if (i >= 20) {
+        rawSpread = Math.max(rawSpread, Math.abs(value));
+        filteredSpread = Math.max(filteredSpread, Math.abs(filtered));
+      }
+    }
+    assertTrue(filteredSpread + " of " + rawSpread, filteredSpread < rawSpread / 4);
+  }
+
+  @Test
+  public void fastMovement_isFollowedClosely() {
+    // A meter per second, where a still signal's cutoff would lag by several centimeters.
+    OneEuroFilter filter = new OneEuroFilter(1.5f, 10f, 1f);
+    float filtered = 0;
+    for (int i = 0; i <= 60; i++) {
+      filtered = filter.filter(i * 0.016f, i * 16L);
+    }
+    assertTrue("lag " + (60 * 0.016f - filtered), 60 * 0.016f - filtered < 0.02f);
+  }
+
+  @Test
+  public void repeatedTime_keepsThePreviousValue() {
+    OneEuroFilter filter = new OneEuroFilter(1.5f, 10f, 1f);
+    filter.filter(1f, 0);
+    assertEquals(1f, filter.filter(5f, 0), 0f);
+  }
+}
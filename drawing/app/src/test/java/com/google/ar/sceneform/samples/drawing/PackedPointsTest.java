@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks how far the points of {@link PackedPoints} are from the ones that were packed. */
+@RunWith(JUnit4.class)
+public class PackedPointsTest {
+
+  private static final int LEVELS = 0xFFFF;
+
+  @Test
+  public void floats_areExact() {
+    PointStore points = randomPoints(new Random(1), 500, 2f);
+    PackedPoints packed = PackedPoints.pack(points, false);
+
+    assertFalse(packed.isQuantized());
+    assertEquals(points.size(), packed.size());
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals(points.getX(i), packed.getX(i), 0);
+      assertEquals(points.getY(i), packed.getY(i), 0);
+      assertEquals(points.getZ(i), packed.getZ(i), 0);
+    }
+    assertEquals(points.size() * 3 * 4, packed.getByteSize());
+  }
+
+  @Test
+  public void quantized_areWithinHalfAStep() {
+    Random random = new Random(2);
+    // From a scribble of a few millimeters to a stroke across a room.
+    for (float extent : new float[] {0.005f, 0.1f, 1f, 10f}) {
+      PointStore points = randomPoints(random, 1000, extent);
+      PackedPoints packed = PackedPoints.pack(points, true);
+
+      assertTrue(packed.isQuantized());
+      assertEquals(points.size(), packed.size());
+      float[] maximumError = maximumErrors(points, packed);
+      float[] bounds = axisExtents(points);
+      for (int axis = 0; axis < 3; axis++) {
+        float halfStep = bounds[axis] / LEVELS / 2;
+        // The dequantized value is computed in floats, which adds rounding at the magnitude of
+        // the coordinates, up to a meter away from the origin here.
+        float rounding = 4 * Math.ulp(1 + extent);
+        assertTrue(
+            "axis " + axis + " of " + extent + "m: " + maximumError[axis],
+            maximumError[axis] <= halfStep + rounding);
+      }
+    }
+  }
+
+  @Test
+  public void quantized_flatAxisIsExact() {
+    PointStore points = new PointStore();
+    for (int i = 0; i < 100; i++) {
+      points.add(i * 0.01f, 0.25f, -1f);
+    }
+    PackedPoints packed = PackedPoints.pack(points, true);
+
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals(0.25f, packed.getY(i), 0);
+      assertEquals(-1f, packed.getZ(i), 0);
+    }
+  }
+
+  @Test
+  public void quantized_keepsTheBoundingBox() {
+    PointStore points = randomPoints(new Random(3), 200, 0.5f);
+    PackedPoints packed = PackedPoints.pack(points, true);
+
+    float[] expected = axisExtents(points);
+    float[] actual = axisExtents(packed);
+    for (int axis = 0; axis < 3; axis++) {
+      assertEquals(expected[axis], actual[axis], Math.ulp(expected[axis]) * 4);
+    }
+    // A sixth of a Vector3 per point, plus the origin and step of each axis.
+    assertEquals(points.size() * 3 * 2 + 6 * 4, packed.getByteSize());
+  }
+
+  private static PointStore randomPoints(Random random, int count, float extent) {
+    PointStore points = new PointStore();
+    for (int i = 0; i < count; i++) {
+      points.add(
+          (random.nextFloat() - 0.5f) * extent,
+          (random.nextFloat() - 0.5f) * extent + 1f,
+          (random.nextFloat() - 0.5f) * extent - 1f);
+    }
+    return points;
+  }
+
+  private static float[] maximumErrors(PointList expected, PointList actual) {
+    float[] errors = new float[3];
+    for (int i = 0; i < expected.size(); i++) {
+      errors[0] = Math.max(errors[0], Math.abs(expected.getX(i) - actual.getX(i)));
+      errors[1] = Math.max(errors[1], Math.abs(expected.getY(i) - actual.getY(i)));
+      errors[2] = Math.max(errors[2], Math.abs(expected.getZ(i) - actual.getZ(i)));
+    }
+    return errors;
+  }
+
+  private static float[] axisExtents(PointList points) {
+    float[] minimum = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+    float[] maximum = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int i = 0; i < points.size(); i++) {
+      float[] point = {points.getX(i), points.getY(i), points.getZ(i)};
+      for (int axis = 0; axis < 3; axis++) {
+        minimum[axis] = Math.min(minimum[axis], point[axis]);
+        maximum[axis] = Math.max(maximum[axis], point[axis]);
+      }
+    }
+    return new float[] {
+      maximum[0] - minimum[0], maximum[1] - minimum[1], maximum[2] - minimum[2]
+    };
+  }
+}
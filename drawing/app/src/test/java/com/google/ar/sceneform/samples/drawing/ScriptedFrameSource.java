@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+
+/**
+ * Replays a camera path made of timed keyframes instead of tracking a real camera.
+ *
+ * <p>The pose between two keyframes is interpolated linearly for the position and spherically for
+ * the rotation. Rays are computed with a pinhole camera of the given screen size and vertical field
+ * of view, looking down the negative z axis like the Sceneform camera. Tracking starts at the first
+ * keyframe, so a path that starts late simulates the time ARCore needs to initialize.
+ */
+public class ScriptedFrameSource implements FrameSource {
+
+  private final float width;
+  private final float height;
+  private final float tanHalfFieldOfView;
+
+  private final ArrayList<Long> keyframeTimes = new ArrayList<>();
+  private final ArrayList<Vector3> keyframePositions = new ArrayList<>();
+  private final ArrayList<Quaternion> keyframeRotations = new ArrayList<>();
+
+  private long timeMillis;
+  private final Vector3 position = new Vector3();
+  private final Quaternion rotation = new Quaternion();
+
+  /**
+   * @param width the width of the simulated screen in pixels
+   * @param height the height of the simulated screen in pixels
+   * @param verticalFieldOfViewDegrees the vertical field of view of the simulated camera
+   */
+  public ScriptedFrameSource(int width, int height, float verticalFieldOfViewDegrees) {
+    this.width = width;
+    this.height = height;
+    tanHalfFieldOfView = (float) Math.tan(Math.toRadians(verticalFieldOfViewDegrees) / 2);
+  }
+
+  /** Adds a keyframe to the camera path. Keyframes must be added in time order. */
+  public ScriptedFrameSource addKeyframe(long timeMillis, Vector3 position, Quaternion rotation) {
+    if (!keyframeTimes.isEmpty() && timeMillis <= keyframeTimes.get(keyframeTimes.size() - 1)) {
+      throw new IllegalArgumentException("Keyframes must be added in time order");
+    }
+    keyframeTimes.add(timeMillis);
+    keyframePositions.add(new Vector3(position));
+    keyframeRotations.add(new Quaternion(rotation));
+    return this;
+  }
+
+  /** Moves the camera to where the path puts it at the given time. */
+  public void setTime(long timeMillis) {
+    this.timeMillis = timeMillis;
+    if (keyframeTimes.isEmpty()) {
+      return;
+    }
+    int next = 0;
+    while (next < keyframeTimes.size() && keyframeTimes.get(next) <= timeMillis) {
+      next++;
+    }
+    if (next == 0 || next == keyframeTimes.size()) {
+      int index = next == 0 ? 0 : next - 1;
+      position.set(keyframePositions.get(index));
+      rotation.set(keyframeRotations.get(index));
+      return;
+    }
+    long start = keyframeTimes.get(next - 1);
+    float t = (float) (timeMillis - start) / (keyframeTimes.get(next) - start);
+    position.set(Vector3.lerp(keyframePositions.get(next - 1), keyframePositions.get(next), t));
+    rotation.set(
+        Quaternion.slerp(keyframeRotations.get(next - 1), keyframeRotations.get(next), t));
+  }
+
+  public long getTime() {
+    return timeMillis;
+  }
+
+  @Override
+  public boolean isTracking() {
+    return !keyframeTimes.isEmpty() && timeMillis >= keyframeTimes.get(0);
+  }
+
+  @Override
+  public Pose getCameraPose() {
+    return new Pose(
+        new float[] {position.x, position.y, position.z},
+        new float[] {rotation.x, rotation.y, rotation.z, rotation.w});
+  }
+
+  @Override
+  public Ray screenPointToRay(float x, float y) {
+    float aspectRatio = width / height;
+    Vector3 direction =
+        new Vector3(
+            (2 * x / width - 1) * tanHalfFieldOfView * aspectRatio,
+            (1 - 2 * y / height) * tanHalfFieldOfView,
+            -1);
+    return new Ray(new Vector3(position), Quaternion.rotateVector(rotation, direction));
+  }
+
+  @Override
+  public AnchorNode createAnchorNode(Pose pose) {
+    AnchorNode anchorNode = new AnchorNode();
+    anchorNode.setWorldPosition(new Vector3(pose.tx(), pose.ty(), pose.tz()));
+    anchorNode.setWorldRotation(new Quaternion(pose.qx(), pose.qy(), pose.qz(), pose.qw()));
+    return anchorNode;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.Scene;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Replays a fixed script of touches against a {@link ScriptedFrameSource}, one simulated frame at a
+ * time, and measures how long the touch listener takes for each frame.
+ *
+ * <p>Nothing depends on the wall clock or on a device, so a script produces the same strokes every
+ * time it is run. This makes it possible to compare the cost of the stroke pipeline between two
+ * builds on any machine that can run the app's code, for example under Robolectric.
+ */
+public class ScriptedSession {
+
+  private static final String TAG = ScriptedSession.class.getSimpleName();
+
+  private final ScriptedFrameSource frameSource;
+  private final long frameIntervalMillis;
+
+  private final ArrayList<Touch> touches = new ArrayList<>();
+  private float[] frameMillis = new float[0];
+  private int frameCount;
+
+  private static class Touch {
+    final long timeMillis;
+    final int action;
+    final float x;
+    final float y;
+
+    Touch(long timeMillis, int action, float x, float y) {
+      this.timeMillis = timeMillis;
+      this.action = action;
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  public ScriptedSession(ScriptedFrameSource frameSource, long frameIntervalMillis) {
+    this.frameSource = frameSource;
+    this.frameIntervalMillis = frameIntervalMillis;
+  }
+
+  /** Adds a single touch event. Touches must be added in time order. */
+  public ScriptedSession addTouch(long timeMillis, int action, float x, float y) {
+    if (!touches.isEmpty() && timeMillis < touches.get(touches.size() - 1).timeMillis) {
+      throw new IllegalArgumentException("Touches must be added in time order");
+    }
+    touches.add(new Touch(timeMillis, action, x, y));
+    return this;
+  }
+
+  /**
+   * Adds a straight swipe from one screen point to another, with one move event every {@code
+   * sampleIntervalMillis} like a touch screen reporting at a fixed rate.
+   */
+  public ScriptedSession addSwipe(
+      long startMillis,
+      long durationMillis,
+      long sampleIntervalMillis,
+      float startX,
+      float startY,
+      float endX,
+      float endY) {
+    addTouch(startMillis, MotionEvent.ACTION_DOWN, startX, startY);
+    for (long time = sampleIntervalMillis; time < durationMillis; time += sampleIntervalMillis) {
+      float t = (float) time / durationMillis;
+      addTouch(
+          startMillis + time,
+          MotionEvent.ACTION_MOVE,
+          startX + (endX - startX) * t,
+          startY + (endY - startY) * t);
+    }
+    addTouch(startMillis + durationMillis, MotionEvent.ACTION_UP, endX, endY);
+    return this;
+  }
+
+  /**
+   * Runs the whole script. Every frame moves the camera along its path and then delivers the
+   * touches that happened since the previous frame, the way Sceneform delivers touches between
+   * frames.
+   *
+   * @param listener receives the touches, usually a {@link DrawingController}
+   */
+  public void run(Scene.OnPeekTouchListener listener) {
+    run(listener, null);
+  }
+
+  /**
+   * Runs the whole script like {@link #run(Scene.OnPeekTouchListener)} and calls {@code
+   * afterFrame} at the end of every frame, e.g. {@link DrawingController#applyPendingShapes()}.
+   * Its time counts towards the frame.
+   */
+  public void run(Scene.OnPeekTouchListener listener, Runnable afterFrame) {
+    long endMillis = touches.isEmpty() ? 0 : touches.get(touches.size() - 1).timeMillis;
+    frameMillis = new float[(int) (endMillis / frameIntervalMillis) + 2];
+    frameCount = 0;
+
+    long downTimeMillis = 0;
+    int nextTouch = 0;
+    for (long time = 0; nextTouch < touches.size(); time += frameIntervalMillis) {
+      frameSource.setTime(time);
+      long start = System.nanoTime();
+      while (nextTouch < touches.size() && touches.get(nextTouch).timeMillis <= time) {
+        Touch touch = touches.get(nextTouch++);
+        if (touch.action == MotionEvent.ACTION_DOWN) {
+          downTimeMillis = touch.timeMillis;
+        }
+        MotionEvent event =
+            MotionEvent.obtain(downTimeMillis, touch.timeMillis, touch.action, touch.x, touch.y, 0);
+        listener.onPeekTouch(null, event);
+        event.recycle();
+      }
+      if (afterFrame != null) {
+        afterFrame.run();
+      }
+      frameMillis[frameCount++] = (System.nanoTime() - start) / 1e6f;
+    }
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /** Returns the given percentile of the per frame listener time of the last run. */
+  public float getPercentileMillis(float percentile) {
+    if (frameCount == 0) {
+      return 0;
+    }
+    float[] sorted = Arrays.copyOf(frameMillis, frameCount);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100f * frameCount);
+    return sorted[Math.max(0, Math.min(frameCount - 1, rank - 1))];
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d touches over %d frames, p50 %.3fms, p95 %.3fms, max %.3fms",
+        TAG,
+        touches.size(),
+        frameCount,
+        getPercentileMillis(50),
+        getPercentileMillis(95),
+        getPercentileMillis(100));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Draws scripted swipes with a {@link DrawingController} under Robolectric. The meshes are counted
+ * instead of uploaded, so no GPU is needed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ScriptedStrokeTest {
+
+  private static final long FRAME_INTERVAL_MILLIS = 16;
+  private static final long SAMPLE_INTERVAL_MILLIS = 8;
+  private static final long SWIPE_MILLIS = 400;
+
+  private ScriptedFrameSource frameSource;
+  private DrawingController controller;
+  private int uploadCount;
+
+  @Before
+  public void setUp() {
+    frameSource =
+        new ScriptedFrameSource(1080, 1920, 60)
+            .addKeyframe(0, Vector3.zero(), Quaternion.identity())
+            .addKeyframe(2000, new Vector3(0.2f, 0, 0), Quaternion.identity());
+    controller = new DrawingController(frameSource, new Node(), Runnable::run);
+    controller.setMeshUploader(
+        (definition, previous) -> {
+          uploadCount++;
+          return previous;
+        });
+  }
+
+  @Test
+  public void swipe_drawsOneFinishedStroke() {
+    ScriptedSession session =
+        new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+            .addSwipe(100, SWIPE_MILLIS, SAMPLE_INTERVAL_MILLIS, 200, 900, 900, 1000);
+    session.run(controller, controller::applyPendingShapes);
+
+    assertEquals(1, controller.getStrokes().size());
+    Stroke stroke = controller.getStrokes().get(0);
+    assertTrue(stroke.isFinished());
+    assertTrue(controller.isIdle());
+    // A straight swipe is simplified to a few points, but never to more than were sampled.
+    int sampleCount = (int) (SWIPE_MILLIS / SAMPLE_INTERVAL_MILLIS) + 1;
+    assertTrue(stroke.getNumOfPoints() >= 2);
+    assertTrue(stroke.getNumOfPoints() <= sampleCount);
+    assertEquals(stroke.getNumOfPoints(), stroke.getTimes().size());
+    assertTrue(uploadCount > 0);
+  }
+
+  @Test
+  public void swipe_keepsTheScriptedTimes() {
+    ScriptedSession session =
+        new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+            .addSwipe(100, SWIPE_MILLIS, SAMPLE_INTERVAL_MILLIS, 200, 900, 900, 1000);
+    session.run(controller, controller::applyPendingShapes);
+
+    PointTimes times = controller.getStrokes().get(0).getTimes();
+    assertTrue(times.getStartMillis() >= 100);
+    assertTrue(times.getStartMillis() < 100 + SWIPE_MILLIS / 4);
+    assertTrue(times.getEndMillis() > 100 + SWIPE_MILLIS * 3 / 4);
+    assertTrue(times.getEndMillis() <= 100 + SWIPE_MILLIS);
+    for (int i = 1; i < times.size(); i++) {
+      assertTrue(times.getMillis(i) >= times.getMillis(i - 1));
+    }
+    // The script ends with the last touch, one frame per interval up to it.
+    assertEquals((100 + SWIPE_MILLIS) / FRAME_INTERVAL_MILLIS + 1, session.getFrameCount());
+    assertTrue(session.toString(), session.getPercentileMillis(50) < FRAME_INTERVAL_MILLIS);
+  }
+
+  @Test
+  public void twoSwipes_drawTwoStrokes() {
+    ScriptedSession session =
+        new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+            .addSwipe(100, SWIPE_MILLIS, SAMPLE_INTERVAL_MILLIS, 200, 900, 900, 1000)
+            .addSwipe(700, SWIPE_MILLIS, SAMPLE_INTERVAL_MILLIS, 200, 1300, 900, 1200);
+    session.run(controller, controller::applyPendingShapes);
+
+    assertEquals(2, controller.getStrokes().size());
+    assertTrue(controller.getStrokes().get(0).isFinished());
+    assertTrue(controller.getStrokes().get(1).isFinished());
+    assertTrue(
+        controller.getStrokes().get(1).getTimes().getStartMillis()
+            > controller.getStrokes().get(0).getTimes().getEndMillis());
+  }
+
+  @Test
+  public void swipeBeforeTracking_drawsNothing() {
+    frameSource =
+        new ScriptedFrameSource(1080, 1920, 60)
+            .addKeyframe(1000, Vector3.zero(), Quaternion.identity());
+    controller = new DrawingController(frameSource, new Node(), Runnable::run);
+    controller.setMeshUploader(
+        (definition, previous) -> {
+          uploadCount++;
+          return previous;
+        });
+    new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+        .addSwipe(100, SWIPE_MILLIS, SAMPLE_INTERVAL_MILLIS, 200, 900, 900, 1000)
+        .run(controller, controller::applyPendingShapes);
+
+    assertEquals(0, controller.getStrokes().size());
+    assertEquals(0, uploadCount);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.math.Vector3;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Replays synthetic traces of raw stroke input through {@link StrokeInputConditioner}. */
+@RunWith(JUnit4.class)
+public class StrokeInputConditionerTest {
+
+  private static final long SEED = 27;
+  // Touch and tracking jitter of a millimeter or so, sampled at about 60 Hz with uneven intervals.
+  private static final float JITTER = 0.001f;
+  private static final long SAMPLE_INTERVAL_MILLIS = 16;
+  private static final long SAMPLE_INTERVAL_JITTER_MILLIS = 4;
+
+  @Test
+  public void jitteryLine_keepsFewerPointsCloseToTheLine() {
+    PointStore points = new PointStore();
+    PointTimes times = new PointTimes();
+    // 30 centimeters along x in about three seconds, a few millimeters between samples.
+    recordLine(new Random(SEED), 0.3f, 180, points, times);
+
+    List<Vector3> kept = StrokeInputConditioner.replay(points, times);
+
+    assertTrue("kept " + kept.size(), kept.size() > 1);
+    assertTrue("kept " + kept.size(), kept.size() < points.size() / 3);
+    for (Vector3 point : kept) {
+      float deviation = (float) Math.sqrt(point.y * point.y + point.z * point.z);
+      // Raw samples stray up to three or four times the jitter from the line.
+      assertTrue("deviation " + deviation, deviation < 3 * JITTER);
+    }
+    // The stroke still ends where the pointer was lifted.
+    assertTrue(kept.get(kept.size() - 1).x > 0.28f);
+  }
+
+  @Test
+  public void jitteryLine_isSmootherThanItsTrace() {
+    PointStore points = new PointStore();
+    PointTimes times = new PointTimes();
+    recordLine(new Random(SEED), 0.3f, 180, points, times);
+
+    List<Vector3> kept = StrokeInputConditioner.replay(points, times);
+
+    float rawDeviation = 0;
+    for (int i = 0; i < points.size(); i++) {
+      rawDeviation = Math.max(rawDeviation, Math.abs(points.getY(i)));
+    }
+    float keptDeviation = 0;
+    for (Vector3 point : kept) {
+      keptDeviation = Math.max(keptDeviation, Math.abs(point.y));
+    }
+    assertTrue(keptDeviation + " of " + rawDeviation, keptDeviation < rawDeviation / 2);
+  }
+
+  // A straight line from the origin along x at constant speed, with jitter on every axis and in the
+  // sample times.
+  private static void recordLine(
+      Random random, float length, int sampleCount, PointStore points, PointTimes times) {
+    long timeMillis = 1000;
+    for (int i = 0; i < sampleCount; i++) {
+      points.add(
+          length * i / (sampleCount - 1) + (float) random.nextGaussian() * JITTER,
+          (float) random.nextGaussian() * JITTER,
+          (float) random.nextGaussian() * JITTER);
+      times.add(timeMillis);
+      timeMillis +=
+          SAMPLE_INTERVAL_MILLIS
+              + random.nextInt((int) SAMPLE_INTERVAL_JITTER_MILLIS * 2 + 1)
+              - SAMPLE_INTERVAL_JITTER_MILLIS;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+import com.google.ar.sceneform.math.Vector3;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Sends strokes through a {@link StrokeStreamChannel#openLoopback() loopback} channel and feeds
+ * {@link StrokeStreamReceiver} hand made messages, valid and invalid ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class StrokeStreamTest {
+
+  private static final int FRAMES = 1000;
+  private static final int POINTS_PER_FRAME = 10;
+  private static final long TIMEOUT_NANOS = 10_000_000_000L;
+  // Far below what in-process pipes move, so that only a stalled channel fails.
+  private static final float MINIMUM_BYTES_PER_SECOND = 100_000;
+
+  private final RecordingListener listener = new RecordingListener();
+  private final StrokeStreamReceiver receiver = new StrokeStreamReceiver();
+  private StrokeStreamChannel[] loopback;
+
+  private static class RecordingListener implements StrokeListener {
+    int beginCount;
+    int pointCount;
+    int endCount;
+
+    @Override
+    public void onStrokeBegin(int strokeId, int colorId, float radius) {
+      beginCount++;
+    }
+
+    @Override
+    public void onStrokePoints(int strokeId, List<Vector3> pointsInLocal) {
+      pointCount += pointsInLocal.size();
+    }
+
+    @Override
+    public void onStrokeEnd(int strokeId) {
+      endCount++;
+    }
+
+    @Override
+    public void onUndo() {}
+
+    @Override
+    public void onClear() {}
+  }
+
+  @After
+  public void tearDown() {
+    if (loopback != null) {
+      loopback[0].close();
+      loopback[1].close();
+    }
+  }
+
+  @Test
+  public void loopback_deliversEveryPointQuickly() throws Exception {
+    loopback = StrokeStreamChannel.openLoopback();
+    StrokeStreamChannel senderChannel = loopback[0];
+    StrokeStreamChannel receiverChannel = loopback[1];
+    StrokeStreamSender sender = new StrokeStreamSender();
+    StrokeStreamReceiver responder = new StrokeStreamReceiver();
+
+    // The receiving end measures the clock offset first, like the activity does.
+    receiverChannel.send(receiver.requestClock());
+    awaitBytes(senderChannel, responder, null, 1);
+    senderChannel.send(responder.takeReplies());
+    awaitBytes(receiverChannel, receiver, listener, 1);
+    assertTrue(receiver.getMeanRoundTripMillis() >= 0);
+
+    long start = System.nanoTime();
+    sender.onStrokeBegin(1, StrokePalette.WHITE, 0.005f);
+    ArrayList<Vector3> points = new ArrayList<>();
+    for (int frame = 0; frame < FRAMES; frame++) {
+      points.clear();
+      for (int i = 0; i < POINTS_PER_FRAME; i++) {
+        points.add(new Vector3((frame * POINTS_PER_FRAME + i) * 0.001f, 0, 0));
+      }
+      sender.onStrokePoints(1, points);
+      senderChannel.send(sender.takeBatch());
+    }
+    sender.onStrokeEnd(1);
+    senderChannel.send(sender.takeBatch());
+    long byteCount = receiver.getByteCount() + sender.getByteCount();
+    awaitBytes(receiverChannel, receiver, listener, byteCount);
+    float seconds = (System.nanoTime() - start) / 1e9f;
+
+    assertEquals(1, listener.beginCount);
+    assertEquals(FRAMES * POINTS_PER_FRAME, listener.pointCount);
+    assertEquals(1, listener.endCount);
+    assertFalse(receiver.isFailed());
+    float bytesPerSecond = sender.getByteCount() / seconds;
+    assertTrue(bytesPerSecond + " bytes/s", bytesPerSecond > MINIMUM_BYTES_PER_SECOND);
+    // Both ends share the clock here, so the latency is what the channel adds.
+    assertTrue(receiver.toString(), receiver.getMeanLatencyMillis() >= 0);
+    assertTrue(receiver.toString(), receiver.getMeanLatencyMillis() < seconds * 1000 + 1);
+  }
+
+  @Test
+  public void latency_isCorrectedByPeerClockOffset() {
+    long now = SystemClock.uptimeMillis();
+    // The peer's clock is 5s ahead and it answered as soon as it got the request.
+    receiver.receive(message(StrokeProtocol.CLOCK_RESPONSE, now + 5000, now), listener);
+    assertEquals(5000, receiver.getPeerClockOffsetMillis(), 2);
+
+    // Encoded 7ms ago by the peer's clock.
+    receiver.receive(message(StrokeProtocol.UNDO, now + 5000 - 7), listener);
+    assertEquals(7, receiver.getMeanLatencyMillis(), 2);
+  }
+
+  @Test
+  public void latency_isOnlyMeasuredOnceTheClockIsKnown() {
+    receiver.receive(message(StrokeProtocol.UNDO, 1), listener);
+    assertEquals(1, receiver.getMessageCount());
+    assertEquals(0, receiver.getMeanLatencyMillis(), 0);
+  }
+
+  @Test
+  public void clockRequest_isAnswered() {
+    StrokeStreamReceiver requester = new StrokeStreamReceiver();
+    receiver.receive(requester.requestClock(), listener);
+    requester.receive(receiver.takeReplies(), listener);
+    assertEquals(0, requester.getPeerClockOffsetMillis(), 2);
+    assertEquals(null, receiver.takeReplies());
+  }
+
+  @Test
+  public void oversizedMessage_stopsDecoding() {
+    StrokeStreamSender.Encoder encoder = new StrokeStreamSender.Encoder();
+    encoder.writeVarint(StrokeProtocol.MAXIMUM_MESSAGE_LENGTH + 1);
+    receiver.receive(wrap(encoder), listener);
+
+    assertTrue(receiver.isFailed());
+    // Nothing after it is decoded either.
+    receiver.receive(message(StrokeProtocol.STROKE_BEGIN, 0, 1, 0, 50), listener);
+    assertEquals(0, listener.beginCount);
+  }
+
+  @Test
+  public void pointCountPastMessageEnd_stopsDecoding() {
+    receiver.receive(message(StrokeProtocol.STROKE_BEGIN, 0, 1, 0, 50), listener);
+    // Claims a thousand points but carries one.
+    receiver.receive(message(StrokeProtocol.STROKE_POINTS, 0, 1, 1000, 2, 2, 2), listener);
+
+    assertTrue(receiver.isFailed());
+    assertEquals(1, listener.beginCount);
+    assertEquals(0, listener.pointCount);
+  }
+
+  @Test
+  public void fieldPastMessageEnd_stopsDecoding() {
+    StrokeStreamSender.Encoder message = new StrokeStreamSender.Encoder();
+    message.writeByte(StrokeProtocol.STROKE_BEGIN);
+    message.writeVarint(0);
+    message.writeVarint(1);
+    message.writeVarint(0);
+    // The radius is cut off by the end of the message, the next byte would complete it.
+    message.writeByte(0x80);
+    StrokeStreamSender.Encoder encoder = new StrokeStreamSender.Encoder();
+    encoder.writeMessage(message);
+    encoder.writeByte(0x01);
+    receiver.receive(wrap(encoder), listener);
+
+    assertTrue(receiver.isFailed());
+    assertEquals(0, listener.beginCount);
+  }
+
+  @Test
+  public void longStroke_isSplitIntoMessagesReceiversAccept() {
+    StrokeStreamSender sender = new StrokeStreamSender();
+    ArrayList<Vector3> points = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      // Far apart, so every coordinate takes several bytes.
+      points.add(new Vector3(i * 1f, -i * 1f, i * 0.5f));
+    }
+    sender.onStrokeBegin(1, StrokePalette.WHITE, 0.005f);
+    sender.onStrokePoints(1, points);
+    sender.onStrokeEnd(1);
+    receiver.receive(sender.takeBatch(), listener);
+
+    assertFalse(receiver.isFailed());
+    assertEquals(points.size(), listener.pointCount);
+    assertEquals(1, listener.endCount);
+  }
+
+  // Polls a channel until the receiver has decoded the given number of bytes in total.
+  private static void awaitBytes(
+      StrokeStreamChannel channel,
+      StrokeStreamReceiver receiver,
+      StrokeListener listener,
+      long byteCount)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TIMEOUT_NANOS;
+    while (receiver.getByteCount() < byteCount) {
+      assertTrue("Timed out, " + receiver, System.nanoTime() < deadline);
+      ByteBuffer bytes = channel.poll();
+      if (bytes == null) {
+        Thread.sleep(1);
+      } else {
+        receiver.receive(bytes, listener);
+      }
+    }
+  }
+
+  private static ByteBuffer message(int type, long timeMillis, long... fields) {
+    StrokeStreamSender.Encoder message = new StrokeStreamSender.Encoder();
+    message.writeByte(type);
+    message.writeVarint(timeMillis);
+    for (long field : fields) {
+      message.writeVarint(field);
+    }
+    StrokeStreamSender.Encoder encoder = new StrokeStreamSender.Encoder();
+    encoder.writeMessage(message);
+    return wrap(encoder);
+  }
+
+  private static ByteBuffer wrap(StrokeStreamSender.Encoder encoder) {
+    return ByteBuffer.wrap(Arrays.copyOf(encoder.bytes, encoder.size));
+  }
+}
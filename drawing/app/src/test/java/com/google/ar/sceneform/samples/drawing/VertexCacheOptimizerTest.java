@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.drawing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Runs {@link VertexCacheOptimizer} on regular grids, where the best order is known. */
+@RunWith(JUnit4.class)
+public class VertexCacheOptimizerTest {
+
+  // A grid of 32 by 32 quads, each split into two triangles.
+  private static final int GRID_SIZE = 32;
+
+  @Test
+  public void grid_missesFewerVertices() {
+    int[] indices = makeGrid(GRID_SIZE);
+    VertexCacheOptimizer.Result result =
+        VertexCacheOptimizer.optimize(indices, (GRID_SIZE + 1) * (GRID_SIZE + 1));
+
+    float triangles = indices.length / 3f;
+    float acmrBefore = VertexCacheOptimizer.countCacheMisses(indices) / triangles;
+    float acmrAfter = VertexCacheOptimizer.countCacheMisses(result.indices) / triangles;
+    // Rows longer than the cache miss every vertex twice, about one miss per triangle. A good
+    // order gets close to the 0.5 of a grid that is transformed only once.
+    assertTrue("before " + acmrBefore, acmrBefore > 0.9f);
+    assertTrue("after " + acmrAfter, acmrAfter < 0.75f);
+  }
+
+  @Test
+  public void grid_keepsEveryTriangleAndItsWinding() {
+    int[] indices = makeGrid(GRID_SIZE);
+    VertexCacheOptimizer.Result result =
+        VertexCacheOptimizer.optimize(indices, (GRID_SIZE + 1) * (GRID_SIZE + 1));
+
+    int[] restored = new int[result.indices.length];
+    for (int i = 0; i < restored.length; i++) {
+      restored[i] = result.oldVertexIndices[result.indices[i]];
+    }
+    assertEquals(triangles(indices), triangles(restored));
+  }
+
+  @Test
+  public void ranges_keepTheirTriangles() {
+    // Every row of the grid is a range of its own.
+    int[] indices = makeGrid(GRID_SIZE);
+    int[] rangeEnds = new int[GRID_SIZE];
+    for (int row = 0; row < GRID_SIZE; row++) {
+      rangeEnds[row] = (row + 1) * GRID_SIZE * 6;
+    }
+    VertexCacheOptimizer.Result result =
+        VertexCacheOptimizer.optimize(indices, (GRID_SIZE + 1) * (GRID_SIZE + 1), rangeEnds);
+
+    int rangeStart = 0;
+    for (int rangeEnd : rangeEnds) {
+      int[] before = Arrays.copyOfRange(indices, rangeStart, rangeEnd);
+      int[] after = new int[rangeEnd - rangeStart];
+      for (int i = 0; i < after.length; i++) {
+        after[i] = result.oldVertexIndices[result.indices[rangeStart + i]];
+      }
+      assertEquals(triangles(before), triangles(after));
+      rangeStart = rangeEnd;
+    }
+  }
+
+  @Test
+  public void unusedVertices_areDropped() {
+    // Vertices 0, 2 and 4 are never used.
+    int[] indices = {1, 3, 5, 5, 3, 6};
+    VertexCacheOptimizer.Result result = VertexCacheOptimizer.optimize(indices, 7);
+
+    assertEquals(4, result.oldVertexIndices.length);
+    // Renumbered in the order they are first used.
+    int[] used = result.oldVertexIndices.clone();
+    Arrays.sort(used);
+    assertArrayEquals(new int[] {1, 3, 5, 6}, used);
+    assertEquals(0, result.indices[0]);
+  }
+
+  @Test
+  public void countCacheMisses_countsFifoEvictions() {
+    int size = VertexCacheOptimizer.CACHE_SIZE;
+    int[] indices = new int[size + 2];
+    for (int i = 0; i <= size; i++) {
+      indices[i] = i;
+    }
+    // Vertex 0 was evicted by the last of the size + 1 distinct vertices before it.
+    indices[size + 1] = 0;
+    assertEquals(size + 2, VertexCacheOptimizer.countCacheMisses(indices));
+
+    indices[size + 1] = 1;
+    assertEquals(size + 1, VertexCacheOptimizer.countCacheMisses(indices));
+  }
+
+  // Quads in rows, like the triangles of a mesh are emitted when nobody cares about their order.
+  private static int[] makeGrid(int size) {
+    int[] indices = new int[size * size * 6];
+    int i = 0;
+    for (int row = 0; row < size; row++) {
+      for (int column = 0; column < size; column++) {
+        int topLeft = row * (size + 1) + column;
+        int bottomLeft = topLeft + size + 1;
+        indices[i++] = topLeft;
+        indices[i++] = bottomLeft;
+        indices[i++] = topLeft + 1;
+        indices[i++] = topLeft + 1;
+        indices[i++] = bottomLeft;
+        indices[i++] = bottomLeft + 1;
+      }
+    }
+    return indices;
+  }
+
+  // The triangles as sorted strings, each rotated to start at its smallest index, so that the
+  // same triangle with the same winding always gives the same string.
+  private static List<String> triangles(int[] indices) {
+    ArrayList<String> triangles = new ArrayList<>();
+    for (int i = 0; i < indices.length; i += 3) {
+      int a = indices[i];
+      int b = indices[i + 1];
+      int c = indices[i + 2];
+      if (b < a && b < c) {
+        triangles.add(b + " " + c + " " + a);
+      } else if (c < a && c < b) {
+        triangles.add(c + " " + a + " " + b);
+      } else {
+        triangles.add(a + " " + b + " " + c);
+      }
+    }
+    Collections.sort(triangles);
+    return triangles;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.util.Log;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Steps the lighting scene through every combination of light count, shadows, intensity and orbit
+ * speed without user input, holding each configuration for a fixed number of frames, and writes
+ * the frame time percentiles of each configuration to a CSV file. {@link LightingBenchmarkTest}
+ * runs it in the activity.
+ *
+ * <p>The CSV can be turned into a cost model with {@link LightingCostModel}.
+ */
+public class LightingBenchmark implements Scene.OnUpdateListener {
+
+  /** Applies one benchmark configuration to the scene. */
+  public interface Configurator {
+    void configure(int lightCount, boolean shadowsEnabled, float intensity, float orbitSpeed);
+  }
+
+  static final String CSV_HEADER =
+      "lights,shadows,intensity,orbit_speed,frames,p50_ms,p95_ms,p99_ms";
+
+  private static final String TAG = LightingBenchmark.class.getSimpleName();
+  // Frames skipped after each change, so the cost of the change itself isn't measured.
+  private static final int SETTLE_FRAMES = 30;
+  private static final float[] INTENSITIES = {1000, 6000, 12000};
+  private static final float[] ORBIT_SPEEDS = {0, .5f, 1};
+
+  private final int maximumLights;
+  private final Configurator configurator;
+  private final File outputFile;
+  private final FrameTimeRecorder frameTimeRecorder;
+  private final StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+
+  private int configuration = -1;
+  private int framesInConfiguration;
+  private boolean isFinished;
+
+  public LightingBenchmark(
+      int maximumLights, int measuredFrames, Configurator configurator, File outputFile) {
+    this.maximumLights = maximumLights;
+    this.configurator = configurator;
+    this.outputFile = outputFile;
+    frameTimeRecorder = new FrameTimeRecorder(measuredFrames);
+  }
+
+  private int getConfigurationCount() {
+    return (maximumLights + 1) * 2 * INTENSITIES.length * ORBIT_SPEEDS.length;
+  }
+
+  // Decodes a configuration index, the light count varies slowest.
+  private int getLightCount(int index) {
+    return index / (2 * INTENSITIES.length * ORBIT_SPEEDS.length);
+  }
+
+  private boolean getShadowsEnabled(int index) {
+    return (index / (INTENSITIES.length * ORBIT_SPEEDS.length)) % 2 == 1;
+  }
+
+  private float getIntensity(int index) {
+    return INTENSITIES[(index / ORBIT_SPEEDS.length) % INTENSITIES.length];
+  }
+
+  private float getOrbitSpeed(int index) {
+    return ORBIT_SPEEDS[index % ORBIT_SPEEDS.length];
+  }
+
+  public boolean isFinished() {
+    return isFinished;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (isFinished) {
+      return;
+    }
+    if (configuration >= 0 && ++framesInConfiguration > SETTLE_FRAMES) {
+      frameTimeRecorder.record(frameTime.getDeltaSeconds() * 1000f);
+    }
+    if (configuration >= 0 && !frameTimeRecorder.isFull()) {
+      return;
+    }
+
+    if (configuration >= 0) {
+      csv.append(
+          String.format(
+              Locale.US,
+              "%d,%d,%.0f,%.2f,%d,%.3f,%.3f,%.3f\n",
+              getLightCount(configuration),
+              getShadowsEnabled(configuration) ? 1 : 0,
+              getIntensity(configuration),
+              getOrbitSpeed(configuration),
+              frameTimeRecorder.getCount(),
+              frameTimeRecorder.getPercentile(50),
+              frameTimeRecorder.getPercentile(95),
+              frameTimeRecorder.getPercentile(99)));
+    }
+    configuration++;
+    if (configuration == getConfigurationCount()) {
+      finish();
+      return;
+    }
+    frameTimeRecorder.reset();
+    framesInConfiguration = 0;
+    configurator.configure(
+        getLightCount(configuration),
+        getShadowsEnabled(configuration),
+        getIntensity(configuration),
+        getOrbitSpeed(configuration));
+  }
+
+  private void finish() {
+    isFinished = true;
+    try (Writer writer = new FileWriter(outputFile)) {
+      writer.write(csv.toString());
+      Log.i(TAG, "Wrote " + getConfigurationCount() + " configurations to " + outputFile);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to write benchmark results", e);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import static org.junit.Assert.assertTrue;
+
+import android.Manifest;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.ux.ArFragment;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs a {@link LightingBenchmark} in the regular lighting scene of the activity. Needs an ARCore
+ * device pointed at something it can track: the scene is placed in front of the camera once
+ * tracking starts, without a tap. The CSV is written to the app's external files directory. The
+ * frames measured per configuration and the highest light count can be set with instrumentation
+ * arguments, the light count is passed on to the activity as its maximum_lights extra:
+ *
+ * <pre>
+ * ./gradlew connectedAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.class=\
+ * com.google.ar.sceneform.samples.lighting.LightingBenchmarkTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.benchmark_frames=60 \
+ *     -Pandroid.testInstrumentationRunnerArguments.maximum_lights=16
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class LightingBenchmarkTest {
+
+  private static final String ARGUMENT_FRAMES = "benchmark_frames";
+  private static final String ARGUMENT_MAXIMUM_LIGHTS = "maximum_lights";
+  private static final int DEFAULT_MEASURED_FRAMES = 120;
+  private static final String FILE_NAME = "lighting_benchmark.csv";
+  private static final long TIMEOUT_MINUTES = 30;
+
+  @Rule
+  public final GrantPermissionRule cameraPermission =
+      GrantPermissionRule.grant(Manifest.permission.CAMERA);
+
+  @Rule
+  public final ActivityTestRule<LightingActivity> activityRule =
+      new ActivityTestRule<>(LightingActivity.class, false, false);
+
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private LightingActivity activity;
+  private FrameSource frameSource;
+  private LightingBenchmark benchmark;
+  private boolean isStarted;
+
+  @Test
+  public void run() throws InterruptedException {
+    Intent intent = new Intent();
+    String maximumLights =
+        InstrumentationRegistry.getArguments().getString(ARGUMENT_MAXIMUM_LIGHTS);
+    if (maximumLights != null) {
+      intent.putExtra(LightingActivity.EXTRA_MAXIMUM_LIGHTS, Integer.parseInt(maximumLights));
+    }
+    activity = activityRule.launchActivity(intent);
+    String frames = InstrumentationRegistry.getArguments().getString(ARGUMENT_FRAMES);
+    int measuredFrames =
+        frames == null ? DEFAULT_MEASURED_FRAMES : Math.max(1, Integer.parseInt(frames));
+    File outputFile = new File(activity.getExternalFilesDir(null), FILE_NAME);
+    benchmark =
+        new LightingBenchmark(
+            activity.getMaximumLights(), measuredFrames, this::configure, outputFile);
+
+    ArFragment fragment =
+        (ArFragment) activity.getSupportFragmentManager().findFragmentById(R.id.sceneform_fragment);
+    frameSource = new ArFrameSource(fragment.getArSceneView());
+    Scene scene = fragment.getArSceneView().getScene();
+    InstrumentationRegistry.getInstrumentation()
+        .runOnMainSync(() -> scene.addOnUpdateListener(this::onUpdate));
+
+    assertTrue("Benchmark timed out", finished.await(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+    assertTrue(outputFile.exists());
+  }
+
+  // Places the scene once tracking starts. Once its lights are set up, every frame goes to the
+  // benchmark, with the quality governor and relevance culling held off so that every requested
+  // light is on and the lights column is the number of active lights.
+  private void onUpdate(FrameTime frameTime) {
+    ScenePlacer scenePlacer = activity.getScenePlacer();
+    if (!scenePlacer.hasPlacement()) {
+      if (frameSource.isTracking()) {
+        scenePlacer.placeAt(
+            frameSource
+                .getCameraPose()
+                .compose(Pose.makeTranslation(0, -0.4f, -1f))
+                .extractTranslation());
+      }
+      return;
+    }
+    if (!activity.isLightingInitialized() || benchmark.isFinished()) {
+      return;
+    }
+    if (!isStarted) {
+      activity.holdFullQuality();
+      isStarted = true;
+    }
+    benchmark.onUpdate(frameTime);
+    if (benchmark.isFinished()) {
+      finished.countDown();
+    }
+  }
+
+  private void configure(
+      int lightCount, boolean shadowsEnabled, float intensity, float orbitSpeed) {
+    LightingState lightingState = activity.getLightingState();
+    lightingState.setRequestedLightCount(lightCount);
+    lightingState.setShadowsEnabled(shadowsEnabled);
+    lightingState.setIntensity(intensity);
+    lightingState.setOrbitSpeedMultiplier(orbitSpeed);
+  }
+}
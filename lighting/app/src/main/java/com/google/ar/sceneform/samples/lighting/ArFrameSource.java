@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.Trackable;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.ArSceneView;
+
+/**
+ * Reads the tracking state and plane hits from the ARCore session behind an {@link ArSceneView}.
+ */
+public class ArFrameSource implements FrameSource {
+
+  private final ArSceneView arSceneView;
+
+  public ArFrameSource(ArSceneView arSceneView) {
+    this.arSceneView = arSceneView;
+  }
+
+  @Override
+  public boolean isTracking() {
+    Frame frame = arSceneView.getArFrame();
+    return frame != null && frame.getCamera().getTrackingState() == TrackingState.TRACKING;
+  }
+
+  @Override
+  public Pose getCameraPose() {
+    return arSceneView.getArFrame().getCamera().getPose();
+  }
+
+  @Override
+  public Pose hitTestPlane(float x, float y) {
+    if (!isTracking()) {
+      return null;
+    }
+    for (HitResult hit : arSceneView.getArFrame().hitTest(x, y)) {
+      Trackable trackable = hit.getTrackable();
+      if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
+        return hit.getHitPose();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public AnchorNode createAnchorNode(Pose pose) {
+    return new AnchorNode(arSceneView.getSession().createAnchor(pose));
+  }
+}
@@ -15,13 +15,14 @@
 package com.google.ar.sceneform.samples.lighting;
 
 import com.google.ar.sceneform.rendering.Color;
-import java.util.Arrays;
 import java.util.EnumMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * A convenience class that holds a list of colors. Used to select colors for lights in the sample.
+ *
+ * <p>Every color type has a {@link Palette} that is built once, when the class is loaded, and never
+ * changes, so it can be read from any thread and used for any number of lights.
  */
 public class ColorConfig {
   enum Type {
@@ -45,37 +46,90 @@ public class ColorConfig {
     }
   }
 
-  private static final Map<Type, List<Integer>> colors = new EnumMap<>(Type.class);
-  private static boolean isMapInitialized;
+  /** The colors of one type, already converted to the linear values lights use. */
+  public static final class Palette {
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+
+    private Palette(int... argbColors) {
+      red = new float[argbColors.length];
+      green = new float[argbColors.length];
+      blue = new float[argbColors.length];
+      for (int i = 0; i < argbColors.length; i++) {
+        Color color = new Color(argbColors[i]);
+        red[i] = color.r;
+        green[i] = color.g;
+        blue[i] = color.b;
+      }
+    }
+
+    public int size() {
+      return red.length;
+    }
 
-  public static void initializeMap() {
-    colors.put(
+    /** Copies the color at the given position into {@code out}. Positions wrap around. */
+    public void getColor(int pos, Color out) {
+      int index = pos % red.length;
+      out.set(red[index], green[index], blue[index]);
+    }
+
+    /**
+     * Copies the color at a fractional position into {@code out}, blending linearly between the
+     * neighbouring colors. Positions wrap around, so the last color blends back into the first.
+     */
+    public void getColor(float pos, Color out) {
+      float wrapped = pos % red.length;
+      if (wrapped < 0) {
+        wrapped += red.length;
+      }
+      int index = (int) wrapped;
+      int next = (index + 1) % red.length;
+      float t = wrapped - index;
+      out.set(
+          red[index] + (red[next] - red[index]) * t,
+          green[index] + (green[next] - green[index]) * t,
+          blue[index] + (blue[next] - blue[index]) * t);
+    }
+  }
+
+  private static final Map<Type, Palette> palettes = new EnumMap<>(Type.class);
+
+  static {
+    palettes.put(
         Type.MIXED,
-        Arrays.asList(
+        new Palette(
             android.graphics.Color.GREEN,
             android.graphics.Color.RED,
             android.graphics.Color.YELLOW,
             android.graphics.Color.BLUE));
-    colors.put(Type.RED, Arrays.asList(android.graphics.Color.RED));
-    colors.put(Type.YELLOW, Arrays.asList(android.graphics.Color.YELLOW));
-    colors.put(Type.GREEN, Arrays.asList(android.graphics.Color.GREEN));
-    colors.put(Type.BLUE, Arrays.asList(android.graphics.Color.BLUE));
-    colors.put(Type.MAGENTA, Arrays.asList(android.graphics.Color.MAGENTA));
-    colors.put(Type.WHITE, Arrays.asList(android.graphics.Color.WHITE));
-    isMapInitialized = true;
+    palettes.put(Type.RED, new Palette(android.graphics.Color.RED));
+    palettes.put(Type.YELLOW, new Palette(android.graphics.Color.YELLOW));
+    palettes.put(Type.GREEN, new Palette(android.graphics.Color.GREEN));
+    palettes.put(Type.BLUE, new Palette(android.graphics.Color.BLUE));
+    palettes.put(Type.MAGENTA, new Palette(android.graphics.Color.MAGENTA));
+    palettes.put(Type.WHITE, new Palette(android.graphics.Color.WHITE));
+  }
+
+  public static Palette getPalette(Type type) {
+    return palettes.get(type);
   }
 
   /**
    * Returns the Color identified at a given position in the colors array, if the Enum contains a
-   * single Color it will always default to returning that Color.
+   * single Color it will always default to returning that Color. Positions past the end of the
+   * array wrap around.
+   *
+   * <p>This allocates a new Color, use {@link #getColor(Type, int, Color)} where that matters.
    */
   public static Color getColor(Type type, int pos) {
-    if (!isMapInitialized) {
-      initializeMap();
-    }
-    if (colors.get(type).size() == 1) {
-      return new Color(colors.get(type).get(0));
-    }
-    return new Color(colors.get(type).get(pos));
+    Color color = new Color();
+    getColor(type, pos, color);
+    return color;
+  }
+
+  /** Copies the color at a given position into {@code out} without allocating. */
+  public static void getColor(Type type, int pos, Color out) {
+    palettes.get(type).getColor(pos, out);
   }
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.util.Log;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Runs main thread work that doesn't have to happen in a particular frame, spread over frames so
+ * that it never takes more than a fixed budget of each frame.
+ *
+ * <p>Tasks are queued with a priority and run in slices: a {@link SlicedTask} does a bounded amount
+ * of work per call and is called again, in a later frame if the budget is used up, until it reports
+ * that it is done. Tasks of the same priority take turns slice by slice. A slice only starts if the
+ * longest slice the task took so far still fits into what is left of the budget, so a frame only
+ * goes over budget when a task makes a slice longer than ever before. A slice that doesn't fit
+ * into an empty budget runs alone in a frame and is counted as oversized; such tasks should be cut
+ * into smaller slices.
+ *
+ * <p>A task that can't make progress yet, e.g. because it waits for a resource to load, reports
+ * {@link SliceResult#WAIT} and isn't called again before the next frame, so waiting costs it one
+ * slice per frame instead of the whole budget.
+ *
+ * <p>A task that waited {@link #STARVATION_FRAMES} frames without running is moved up one priority
+ * and counted as starved. Queue depth, starvation and budget overruns are logged every {@link
+ * #FRAMES_PER_REPORT} frames in which there was work.
+ *
+ * <p>Must be used on the main thread. Register it as the last scene update listener, so that its
+ * work comes after the work that has to happen every frame.
+ */
+public class FrameScheduler implements Scene.OnUpdateListener {
+
+  public static final int PRIORITY_HIGH = 0;
+  public static final int PRIORITY_NORMAL = 1;
+  public static final int PRIORITY_LOW = 2;
+
+  public static final int STARVATION_FRAMES = 60;
+  public static final int FRAMES_PER_REPORT = 300;
+
+  private static final String TAG = FrameScheduler.class.getSimpleName();
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  /** What a task wants after a slice. */
+  public enum SliceResult {
+    /** The task is done and is dropped. */
+    DONE,
+    /** The task made progress and is called again, in this frame if the budget allows. */
+    CONTINUE,
+    /** The task couldn't make progress and is called again in the next frame. */
+    WAIT
+  }
+
+  /** Work that is done in slices. */
+  public interface SlicedTask {
+    /** Does the next slice of work. */
+    SliceResult runSlice();
+  }
+
+  private static class Task {
+    final String name;
+    final SlicedTask slicedTask;
+    int priority;
+    long queuedFrame;
+    long longestSliceNanos;
+
+    Task(String name, SlicedTask slicedTask, int priority) {
+      this.name = name;
+      this.slicedTask = slicedTask;
+      this.priority = priority;
+    }
+  }
+
+  private final long budgetNanos;
+  private final ArrayList<ArrayDeque<Task>> queues = new ArrayList<>();
+  // Tasks that waited in this frame, queued again once it is over.
+  private final ArrayList<Task> waitingTasks = new ArrayList<>();
+  private long frameCount;
+
+  // Since the last report.
+  private int workFrames;
+  private int overBudgetFrames;
+  private int oversizedSlices;
+  private int starvedTasks;
+  private int maximumQueueDepth;
+  private long longestWaitFrames;
+  private long longestFrameNanos;
+  private long totalWorkNanos;
+  private int slices;
+
+  /** @param budgetMillis the time per frame this scheduler may spend on tasks */
+  public FrameScheduler(float budgetMillis) {
+    budgetNanos = (long) (budgetMillis * NANOS_PER_MILLI);
+    for (int priority = PRIORITY_HIGH; priority <= PRIORITY_LOW; priority++) {
+      queues.add(new ArrayDeque<>());
+    }
+  }
+
+  /** Queues a task that is done in one go. */
+  public void post(String name, int priority, Runnable runnable) {
+    post(
+        name,
+        priority,
+        () -> {
+          runnable.run();
+          return SliceResult.DONE;
+        });
+  }
+
+  /** Queues a task that is done in slices. */
+  public void post(String name, int priority, SlicedTask slicedTask) {
+    if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) {
+      throw new IllegalArgumentException("Unknown priority " + priority);
+    }
+    Task task = new Task(name, slicedTask, priority);
+    enqueue(task);
+    maximumQueueDepth = Math.max(maximumQueueDepth, getQueueDepth());
+  }
+
+  /** Returns true if a task with this name is queued. */
+  public boolean isQueued(String name) {
+    for (ArrayDeque<Task> queue : queues) {
+      for (Task task : queue) {
+        if (task.name.equals(name)) {
+          return true;
+        }
+      }
+    }
+    for (Task task : waitingTasks) {
+      if (task.name.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getQueueDepth() {
+    int depth = waitingTasks.size();
+    for (ArrayDeque<Task> queue : queues) {
+      depth += queue.size();
+    }
+    return depth;
+  }
+
+  public boolean hasPendingTasks() {
+    return getQueueDepth() > 0;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    runFrame();
+  }
+
+  /** Runs task slices until the budget of this frame is used up or nothing is left to do. */
+  public void runFrame() {
+    frameCount++;
+    if (!hasPendingTasks()) {
+      return;
+    }
+    promoteStarvingTasks();
+
+    long start = System.nanoTime();
+    long deadline = start + budgetNanos;
+    long now = start;
+    boolean ranSlice = false;
+    Task task;
+    while ((task = peekNextTask()) != null) {
+      long remainingNanos = deadline - now;
+      if (ranSlice ? task.longestSliceNanos > remainingNanos : remainingNanos <= 0) {
+        break;
+      }
+      queues.get(task.priority).removeFirst();
+      longestWaitFrames = Math.max(longestWaitFrames, frameCount - task.queuedFrame);
+
+      SliceResult result = task.slicedTask.runSlice();
+      long end = System.nanoTime();
+      long sliceNanos = end - now;
+      now = end;
+      ranSlice = true;
+      slices++;
+      task.longestSliceNanos = Math.max(task.longestSliceNanos, sliceNanos);
+      if (sliceNanos > budgetNanos) {
+        oversizedSlices++;
+        Log.w(
+            TAG,
+            String.format(
+                "Task %s took %.2fms in one slice, over the budget of %.2fms",
+                task.name,
+                (float) sliceNanos / NANOS_PER_MILLI,
+                (float) budgetNanos / NANOS_PER_MILLI));
+      }
+      if (result == SliceResult.CONTINUE) {
+        enqueue(task);
+      } else if (result == SliceResult.WAIT) {
+        waitingTasks.add(task);
+      }
+    }
+    for (int i = 0; i < waitingTasks.size(); i++) {
+      enqueue(waitingTasks.get(i));
+    }
+    waitingTasks.clear();
+
+    long frameNanos = now - start;
+    workFrames++;
+    totalWorkNanos += frameNanos;
+    longestFrameNanos = Math.max(longestFrameNanos, frameNanos);
+    if (frameNanos > budgetNanos) {
+      overBudgetFrames++;
+    }
+    if (workFrames >= FRAMES_PER_REPORT) {
+      Log.i(TAG, toString());
+      resetStatistics();
+    }
+  }
+
+  private void enqueue(Task task) {
+    task.queuedFrame = frameCount;
+    queues.get(task.priority).addLast(task);
+  }
+
+  private Task peekNextTask() {
+    for (ArrayDeque<Task> queue : queues) {
+      if (!queue.isEmpty()) {
+        return queue.peekFirst();
+      }
+    }
+    return null;
+  }
+
+  private void promoteStarvingTasks() {
+    for (int priority = PRIORITY_HIGH + 1; priority <= PRIORITY_LOW; priority++) {
+      Iterator<Task> iterator = queues.get(priority).iterator();
+      while (iterator.hasNext()) {
+        Task task = iterator.next();
+        if (frameCount - task.queuedFrame < STARVATION_FRAMES) {
+          // Queued in order, so the tasks after this one waited even less.
+          break;
+        }
+        iterator.remove();
+        longestWaitFrames = Math.max(longestWaitFrames, frameCount - task.queuedFrame);
+        starvedTasks++;
+        Log.w(TAG, "Task " + task.name + " starved at priority " + priority);
+        task.priority = priority - 1;
+        enqueue(task);
+      }
+    }
+  }
+
+  private void resetStatistics() {
+    workFrames = 0;
+    overBudgetFrames = 0;
+    oversizedSlices = 0;
+    starvedTasks = 0;
+    maximumQueueDepth = getQueueDepth();
+    longestWaitFrames = 0;
+    longestFrameNanos = 0;
+    totalWorkNanos = 0;
+    slices = 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d slices in %d frames, %.2fms average and %.2fms longest of a %.2fms budget, "
+            + "%d frames over budget, %d oversized slices, queue depth %d now and %d at most, "
+            + "%d tasks starved, longest wait %d frames",
+        TAG,
+        slices,
+        workFrames,
+        workFrames == 0 ? 0f : (float) totalWorkNanos / workFrames / NANOS_PER_MILLI,
+        (float) longestFrameNanos / NANOS_PER_MILLI,
+        (float) budgetNanos / NANOS_PER_MILLI,
+        overBudgetFrames,
+        oversizedSlices,
+        getQueueDepth(),
+        maximumQueueDepth,
+        starvedTasks,
+        longestWaitFrames);
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+
+/**
+ * Supplies the tracking state, camera pose and plane hits that placing the scene depends on.
+ *
+ * <p>{@link ArFrameSource} reads them from the live ARCore session. The unit tests replay a camera
+ * path over a flat floor instead, so that the scene can be set up without a device.
+ */
+public interface FrameSource {
+
+  /** Returns true if the camera pose of the current frame can be used. */
+  boolean isTracking();
+
+  /** Returns the camera pose of the current frame in world space. */
+  Pose getCameraPose();
+
+  /**
+   * Returns the pose where the ray through the given screen point, in pixels, hits a detected
+   * plane, or null if it doesn't hit one.
+   */
+  Pose hitTestPlane(float x, float y);
+
+  /** Creates a node that stays at the given world pose. The node is not attached to the scene. */
+  AnchorNode createAnchorNode(Pose pose);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import java.util.Arrays;
+
+/** Collects frame times and reports their percentiles. */
+public class FrameTimeRecorder {
+
+  private final float[] frameTimesMillis;
+  private final float[] sorted;
+  private int count;
+
+  /** @param capacity the number of frames that can be recorded before {@link #reset()} */
+  public FrameTimeRecorder(int capacity) {
+    frameTimesMillis = new float[capacity];
+    sorted = new float[capacity];
+  }
+
+  /** Records one frame, ignoring it if the recorder is full. */
+  public void record(float frameTimeMillis) {
+    if (count < frameTimesMillis.length) {
+      frameTimesMillis[count++] = frameTimeMillis;
+    }
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public boolean isFull() {
+    return count == frameTimesMillis.length;
+  }
+
+  public void reset() {
+    count = 0;
+  }
+
+  /**
+   * Returns the nearest-rank percentile of the recorded frame times.
+   *
+   * @param percentile a value between 0 and 100
+   */
+  public float getPercentile(float percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    System.arraycopy(frameTimesMillis, 0, sorted, 0, count);
+    Arrays.sort(sorted, 0, count);
+    int rank = (int) Math.ceil(percentile / 100f * count);
+    return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+  }
+
+  public float getMean() {
+    float sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += frameTimesMillis[i];
+    }
+    return count == 0 ? 0 : sum / count;
+  }
+}
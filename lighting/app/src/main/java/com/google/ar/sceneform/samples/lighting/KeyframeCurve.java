@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import java.util.Arrays;
+
+/**
+ * A curve through keyframes that repeats every period, e.g. the intensity of a pulsing light.
+ *
+ * <p>Curves are meant to be sampled once into a lookup table with {@link #bake(int)} and not
+ * evaluated per frame. Between keyframes the value is interpolated linearly or, for smooth curves,
+ * with an ease in and out. Before the first and after the last keyframe the value is held, so a
+ * curve that starts and ends with the same value loops seamlessly.
+ */
+public class KeyframeCurve {
+
+  private final float periodSeconds;
+  private final boolean smooth;
+  private float[] times = new float[4];
+  private float[] values = new float[4];
+  private int keyframeCount;
+
+  /**
+   * @param periodSeconds the time after which the curve repeats
+   * @param smooth whether to ease in and out of every keyframe instead of interpolating linearly
+   */
+  public KeyframeCurve(float periodSeconds, boolean smooth) {
+    if (periodSeconds <= 0) {
+      throw new IllegalArgumentException("The period must be positive");
+    }
+    this.periodSeconds = periodSeconds;
+    this.smooth = smooth;
+  }
+
+  /** Returns a curve that always has the given value. */
+  public static KeyframeCurve constant(float value) {
+    return new KeyframeCurve(1, false).addKeyframe(0, value);
+  }
+
+  /** Adds a keyframe. Keyframes must be added in time order and lie within the period. */
+  public KeyframeCurve addKeyframe(float timeSeconds, float value) {
+    if (timeSeconds < 0 || timeSeconds > periodSeconds) {
+      throw new IllegalArgumentException("Keyframes must lie within the period");
+    }
+    if (keyframeCount > 0 && timeSeconds < times[keyframeCount - 1]) {
+      throw new IllegalArgumentException("Keyframes must be added in time order");
+    }
+    if (keyframeCount == times.length) {
+      times = Arrays.copyOf(times, keyframeCount * 2);
+      values = Arrays.copyOf(values, keyframeCount * 2);
+    }
+    times[keyframeCount] = timeSeconds;
+    values[keyframeCount] = value;
+    keyframeCount++;
+    return this;
+  }
+
+  public float getPeriodSeconds() {
+    return periodSeconds;
+  }
+
+  /** Returns the value at a time within the period. */
+  public float evaluate(float timeSeconds) {
+    if (keyframeCount == 0) {
+      return 0;
+    }
+    if (timeSeconds <= times[0]) {
+      return values[0];
+    }
+    int next = 1;
+    while (next < keyframeCount && times[next] < timeSeconds) {
+      next++;
+    }
+    if (next == keyframeCount) {
+      return values[keyframeCount - 1];
+    }
+    int previous = next - 1;
+    float span = times[next] - times[previous];
+    float t = span == 0 ? 1 : (timeSeconds - times[previous]) / span;
+    if (smooth) {
+      t = t * t * (3 - 2 * t);
+    }
+    return values[previous] + (values[next] - values[previous]) * t;
+  }
+
+  /**
+   * Samples one period into a table of {@code sampleCount + 1} values, the last of which is the
+   * value at the end of the period, so that a lookup can interpolate without wrapping.
+   */
+  public float[] bake(int sampleCount) {
+    float[] table = new float[sampleCount + 1];
+    for (int i = 0; i <= sampleCount; i++) {
+      table[i] = evaluate(periodSeconds * i / sampleCount);
+    }
+    return table;
+  }
+
+  /**
+   * Like {@link #bake(int)}, but stores the integral of the curve from the start of the period,
+   * e.g. the angle covered so far when the curve is a speed. The last value is the integral over
+   * the whole period.
+   */
+  public float[] bakeIntegral(int sampleCount) {
+    float[] table = new float[sampleCount + 1];
+    float step = periodSeconds / sampleCount;
+    float previousValue = evaluate(0);
+    for (int i = 1; i <= sampleCount; i++) {
+      float value = evaluate(step * i);
+      table[i] = table[i - 1] + (previousValue + value) / 2 * step;
+      previousValue = value;
+    }
+    return table;
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Light;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Animates the color, intensity, falloff radius and orbit of a set of lights from {@link
+ * KeyframeCurve}s.
+ *
+ * <p>Curves are baked into lookup tables when they are set, so every frame costs a few table
+ * lookups per light however many keyframes the curves have, and nothing is allocated per frame.
+ * All lights play the same curves, each at its own phase, and a light property is only set when
+ * its value changed. Like {@link LightOrbitController}, values are computed from the absolute time
+ * since the first frame, so nothing drifts and disabled lights can simply be skipped.
+ */
+public class LightAnimator implements Scene.OnUpdateListener {
+
+  private static final int SAMPLES_PER_CURVE = 256;
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  // Spreads the phases of any number of lights evenly over a period.
+  private static final double GOLDEN_RATIO_FRACTION = (Math.sqrt(5) - 1) / 2;
+
+  private final ArrayList<Node> orbits = new ArrayList<>();
+  private final ArrayList<Node> lightNodes = new ArrayList<>();
+  private final Color color = new Color();
+  private final Quaternion rotation = new Quaternion();
+
+  // Per light: the phase as a fraction of a period, and the values that were set last.
+  private float[] phases = new float[0];
+  private float[] appliedRed = new float[0];
+  private float[] appliedGreen = new float[0];
+  private float[] appliedBlue = new float[0];
+  private float[] appliedIntensities = new float[0];
+  private float[] appliedFalloffRadii = new float[0];
+
+  private BakedCurve redCurve;
+  private BakedCurve greenCurve;
+  private BakedCurve blueCurve;
+  private BakedCurve intensityCurve;
+  private BakedCurve falloffCurve;
+  private BakedCurve orbitCurve;
+  private long startNanos = -1;
+
+  private static final class BakedCurve {
+    final float[] table;
+    final double periodSeconds;
+    // Adds the last value for every completed period, for curves baked as integrals.
+    final boolean accumulating;
+
+    BakedCurve(float[] table, float periodSeconds, boolean accumulating) {
+      this.table = table;
+      this.periodSeconds = periodSeconds;
+      this.accumulating = accumulating;
+    }
+
+    double sample(double timeSeconds, float phase) {
+      double periods = timeSeconds / periodSeconds + phase;
+      double completedPeriods = Math.floor(periods);
+      float position = (float) (periods - completedPeriods) * (table.length - 1);
+      int index = Math.min((int) position, table.length - 2);
+      float value = table[index] + (table[index + 1] - table[index]) * (position - index);
+      return accumulating ? completedPeriods * table[table.length - 1] + value : value;
+    }
+  }
+
+  /**
+   * Animates the light under {@code lightNode}. If {@code orbit} isn't null it is rotated about its
+   * y-axis by the orbit curve; it shouldn't also be added to a {@link LightOrbitController}.
+   *
+   * @return the index of the light
+   */
+  public int addLight(Node orbit, Node lightNode) {
+    int index = lightNodes.size();
+    orbits.add(orbit);
+    lightNodes.add(lightNode);
+    if (index == phases.length) {
+      int capacity = Math.max(4, index * 2);
+      phases = Arrays.copyOf(phases, capacity);
+      appliedRed = Arrays.copyOf(appliedRed, capacity);
+      appliedGreen = Arrays.copyOf(appliedGreen, capacity);
+      appliedBlue = Arrays.copyOf(appliedBlue, capacity);
+      appliedIntensities = Arrays.copyOf(appliedIntensities, capacity);
+      appliedFalloffRadii = Arrays.copyOf(appliedFalloffRadii, capacity);
+    }
+    phases[index] = (float) ((index * GOLDEN_RATIO_FRACTION) % 1.0);
+    appliedRed[index] = Float.NaN;
+    appliedIntensities[index] = Float.NaN;
+    appliedFalloffRadii[index] = Float.NaN;
+    return index;
+  }
+
+  public int getLightCount() {
+    return lightNodes.size();
+  }
+
+  /**
+   * Cycles the lights through a palette.
+   *
+   * @param positionCurve the position in the palette over time, fractions blend neighbouring colors
+   */
+  public void setColorCurve(ColorConfig.Palette palette, KeyframeCurve positionCurve) {
+    float[] positions = positionCurve.bake(SAMPLES_PER_CURVE);
+    float[] red = new float[positions.length];
+    float[] green = new float[positions.length];
+    float[] blue = new float[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      palette.getColor(positions[i], color);
+      red[i] = color.r;
+      green[i] = color.g;
+      blue[i] = color.b;
+    }
+    float period = positionCurve.getPeriodSeconds();
+    redCurve = new BakedCurve(red, period, false);
+    greenCurve = new BakedCurve(green, period, false);
+    blueCurve = new BakedCurve(blue, period, false);
+  }
+
+  /** Animates the intensity as {@code intensity} times the value of the curve. */
+  public void setIntensityCurve(float intensity, KeyframeCurve multiplierCurve) {
+    intensityCurve = bakeScaled(multiplierCurve, intensity);
+  }
+
+  /** Animates the falloff radius as {@code falloffRadius} times the value of the curve. */
+  public void setFalloffCurve(float falloffRadius, KeyframeCurve multiplierCurve) {
+    falloffCurve = bakeScaled(multiplierCurve, falloffRadius);
+  }
+
+  /**
+   * Rotates the orbits at {@code degreesPerSecond} times the value of the curve. The angle is the
+   * integral of the speed, so speed changes never make an orbit jump.
+   */
+  public void setOrbitCurve(float degreesPerSecond, KeyframeCurve speedMultiplierCurve) {
+    float[] table = speedMultiplierCurve.bakeIntegral(SAMPLES_PER_CURVE);
+    for (int i = 0; i < table.length; i++) {
+      table[i] *= degreesPerSecond;
+    }
+    orbitCurve = new BakedCurve(table, speedMultiplierCurve.getPeriodSeconds(), true);
+  }
+
+  private static BakedCurve bakeScaled(KeyframeCurve curve, float scale) {
+    float[] table = curve.bake(SAMPLES_PER_CURVE);
+    for (int i = 0; i < table.length; i++) {
+      table[i] *= scale;
+    }
+    return new BakedCurve(table, curve.getPeriodSeconds(), false);
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    update(frameTime.getStartTime(TimeUnit.NANOSECONDS));
+  }
+
+  /** Sets every enabled light to its values at the given frame start time. */
+  public void update(long frameStartNanos) {
+    if (startNanos < 0) {
+      startNanos = frameStartNanos;
+    }
+    double timeSeconds = (frameStartNanos - startNanos) / NANOS_PER_SECOND;
+    for (int i = 0; i < lightNodes.size(); i++) {
+      Node lightNode = lightNodes.get(i);
+      if (!lightNode.isEnabled()) {
+        continue;
+      }
+      float phase = phases[i];
+      Light light = lightNode.getLight();
+      if (redCurve != null) {
+        float red = (float) redCurve.sample(timeSeconds, phase);
+        float green = (float) greenCurve.sample(timeSeconds, phase);
+        float blue = (float) blueCurve.sample(timeSeconds, phase);
+        if (red != appliedRed[i] || green != appliedGreen[i] || blue != appliedBlue[i]) {
+          color.set(red, green, blue);
+          light.setColor(color);
+          appliedRed[i] = red;
+          appliedGreen[i] = green;
+          appliedBlue[i] = blue;
+        }
+      }
+      if (intensityCurve != null) {
+        float intensity = (float) intensityCurve.sample(timeSeconds, phase);
+        if (intensity != appliedIntensities[i]) {
+          light.setIntensity(intensity);
+          appliedIntensities[i] = intensity;
+        }
+      }
+      if (falloffCurve != null) {
+        float falloffRadius = (float) falloffCurve.sample(timeSeconds, phase);
+        if (falloffRadius != appliedFalloffRadii[i]) {
+          light.setFalloffRadius(falloffRadius);
+          appliedFalloffRadii[i] = falloffRadius;
+        }
+      }
+      Node orbit = orbits.get(i);
+      if (orbitCurve != null && orbit != null) {
+        double halfAngle = Math.toRadians(orbitCurve.sample(timeSeconds, phase) % 360.0) / 2;
+        rotation.set(0f, (float) Math.sin(halfAngle), 0f, (float) Math.cos(halfAngle));
+        orbit.setLocalRotation(rotation);
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Quaternion;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotates a set of orbit nodes about their y-axis from a single scene update listener.
+ *
+ * <p>Each orientation is computed from the absolute time elapsed since the orbit's speed last
+ * changed instead of being compounded frame by frame, so rotations don't drift over long sessions.
+ * No objects are allocated per frame.
+ */
+public class LightOrbitController implements Scene.OnUpdateListener {
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final ArrayList<Node> orbits = new ArrayList<>();
+  private final Quaternion rotation = new Quaternion();
+
+  // Per orbit: the angle at phaseStartNanos, and the speed multiplier since then.
+  private double[] phaseDegrees = new double[0];
+  private long[] phaseStartNanos = new long[0];
+  private float[] speedMultipliers = new float[0];
+
+  private float degreesPerSecond = 90f;
+  private long frameStartNanos;
+  private int framesPerUpdate = 1;
+  private int framesSinceUpdate;
+
+  /** Adds an orbit node and returns its index. */
+  public int addOrbit(Node orbit, float speedMultiplier) {
+    int index = orbits.size();
+    orbits.add(orbit);
+    if (index == speedMultipliers.length) {
+      int capacity = Math.max(4, index * 2);
+      phaseDegrees = Arrays.copyOf(phaseDegrees, capacity);
+      phaseStartNanos = Arrays.copyOf(phaseStartNanos, capacity);
+      speedMultipliers = Arrays.copyOf(speedMultipliers, capacity);
+    }
+    phaseDegrees[index] = 0;
+    phaseStartNanos[index] = frameStartNanos;
+    speedMultipliers[index] = speedMultiplier;
+    return index;
+  }
+
+  public void clear() {
+    orbits.clear();
+  }
+
+  public int getOrbitCount() {
+    return orbits.size();
+  }
+
+  public void setDegreesPerSecond(float degreesPerSecond) {
+    for (int i = 0; i < orbits.size(); i++) {
+      rebase(i);
+    }
+    this.degreesPerSecond = degreesPerSecond;
+  }
+
+  /**
+   * Updates the orbits only every {@code framesPerUpdate} frames to save CPU time. Since angles are
+   * computed from absolute time, skipped frames don't slow the orbits down.
+   */
+  public void setFramesPerUpdate(int framesPerUpdate) {
+    this.framesPerUpdate = Math.max(1, framesPerUpdate);
+  }
+
+  public void setSpeedMultiplier(float speedMultiplier) {
+    for (int i = 0; i < orbits.size(); i++) {
+      setSpeedMultiplier(i, speedMultiplier);
+    }
+  }
+
+  public void setSpeedMultiplier(int index, float speedMultiplier) {
+    rebase(index);
+    speedMultipliers[index] = speedMultiplier;
+  }
+
+  // Starts a new phase at the current angle so that a speed change doesn't make the orbit jump.
+  private void rebase(int index) {
+    phaseDegrees[index] = getAngleDegrees(index, frameStartNanos);
+    phaseStartNanos[index] = frameStartNanos;
+  }
+
+  private double getAngleDegrees(int index, long timeNanos) {
+    double elapsedSeconds = (timeNanos - phaseStartNanos[index]) / NANOS_PER_SECOND;
+    double degrees = degreesPerSecond * speedMultipliers[index] * elapsedSeconds;
+    return (phaseDegrees[index] + degrees) % 360.0;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    update(frameTime.getStartTime(TimeUnit.NANOSECONDS));
+  }
+
+  /** Moves the orbits to where they are at the given frame start time. */
+  public void update(long frameStartNanos) {
+    this.frameStartNanos = frameStartNanos;
+    if (++framesSinceUpdate < framesPerUpdate) {
+      return;
+    }
+    framesSinceUpdate = 0;
+    for (int i = 0; i < orbits.size(); i++) {
+      double halfAngle = Math.toRadians(getAngleDegrees(i, frameStartNanos)) / 2;
+      rotation.set(0f, (float) Math.sin(halfAngle), 0f, (float) Math.cos(halfAngle));
+      orbits.get(i).setLocalRotation(rotation);
+    }
+  }
+}
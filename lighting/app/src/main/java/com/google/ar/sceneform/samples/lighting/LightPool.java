@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.NodeParent;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Light;
+import com.google.ar.sceneform.rendering.Light.Type;
+import java.util.ArrayList;
+
+/**
+ * Creates orbiting point lights the first time they are needed and keeps them for reuse.
+ *
+ * <p>Lowering the light count doesn't destroy lights, the {@link LightRelevanceManager} simply
+ * stops enabling them and they are reused when the count goes up again. Intensity, color and
+ * falloff are stored here and applied to every light at once, including lights created later.
+ */
+public class LightPool {
+
+  private static final int LIGHTS_PER_ROW = 4;
+  private static final float LIGHT_SPACING_METERS = .2f;
+  private static final float ROW_SPACING_METERS = .15f;
+
+  private final NodeParent parent;
+  private final float height;
+  private final LightOrbitController orbitController;
+  private final LightRelevanceManager lightRelevanceManager;
+  private final int maximumLights;
+  private final ArrayList<Node> lightNodes = new ArrayList<>();
+  private final Color color = new Color();
+
+  private float intensity;
+  private float falloffRadius;
+  private ColorConfig.Type colorType;
+  private float orbitSpeedMultiplier;
+
+  /**
+   * @param parent the node the light orbits are attached to
+   * @param height the height of the lights above the parent
+   * @param maximumLights the most lights the pool will ever create
+   */
+  public LightPool(
+      NodeParent parent,
+      float height,
+      int maximumLights,
+      LightOrbitController orbitController,
+      LightRelevanceManager lightRelevanceManager) {
+    this.parent = parent;
+    this.height = height;
+    this.maximumLights = maximumLights;
+    this.orbitController = orbitController;
+    this.lightRelevanceManager = lightRelevanceManager;
+  }
+
+  /** Makes sure the first {@code count} lights exist and asks for exactly that many to be lit. */
+  public void setLightCount(int count) {
+    count = Math.min(count, maximumLights);
+    while (lightNodes.size() < count) {
+      createLight(lightNodes.size());
+    }
+    lightRelevanceManager.setRequestedLightCount(count);
+  }
+
+  private void createLight(int index) {
+    Light light =
+        Light.builder(Type.POINT)
+            .setFalloffRadius(falloffRadius)
+            .setShadowCastingEnabled(false)
+            .setIntensity(intensity)
+            .setColor(ColorConfig.getColor(colorType, index))
+            .build();
+
+    // The first row matches the original four lights, further rows alternate front and back.
+    int row = index / LIGHTS_PER_ROW;
+    float rowOffset = ((row + 1) / 2) * ROW_SPACING_METERS * (row % 2 == 1 ? 1 : -1);
+    Vector3 localPosition =
+        new Vector3(
+            -0.4f + (index % LIGHTS_PER_ROW) * LIGHT_SPACING_METERS, height, rowOffset);
+
+    Node orbit = new Node();
+    orbit.setParent(parent);
+    orbitController.addOrbit(orbit, orbitSpeedMultiplier);
+
+    Node lightNode = new Node();
+    lightNode.setParent(orbit);
+    lightNode.setLocalPosition(localPosition);
+    lightNode.setLight(light);
+    lightNode.setEnabled(false);
+
+    lightNodes.add(lightNode);
+    lightRelevanceManager.addLightNode(lightNode);
+  }
+
+  /** @return the number of lights updated */
+  public int setIntensity(float intensity) {
+    this.intensity = intensity;
+    for (int i = 0; i < lightNodes.size(); i++) {
+      lightNodes.get(i).getLight().setIntensity(intensity);
+    }
+    return lightNodes.size();
+  }
+
+  /** @return the number of lights updated */
+  public int setFalloffRadius(float falloffRadius) {
+    this.falloffRadius = falloffRadius;
+    for (int i = 0; i < lightNodes.size(); i++) {
+      lightNodes.get(i).getLight().setFalloffRadius(falloffRadius);
+    }
+    return lightNodes.size();
+  }
+
+  /** @return the number of lights updated */
+  public int setColorType(ColorConfig.Type colorType) {
+    this.colorType = colorType;
+    // Lights copy the color they are given, so one instance serves all of them.
+    for (int i = 0; i < lightNodes.size(); i++) {
+      ColorConfig.getColor(colorType, i, color);
+      lightNodes.get(i).getLight().setColor(color);
+    }
+    return lightNodes.size();
+  }
+
+  public void setOrbitSpeedMultiplier(float orbitSpeedMultiplier) {
+    this.orbitSpeedMultiplier = orbitSpeedMultiplier;
+    orbitController.setSpeedMultiplier(orbitSpeedMultiplier);
+  }
+
+  public int getMaximumLights() {
+    return maximumLights;
+  }
+
+  /** Returns the number of lights created so far. */
+  public int getCreatedLightCount() {
+    return lightNodes.size();
+  }
+}
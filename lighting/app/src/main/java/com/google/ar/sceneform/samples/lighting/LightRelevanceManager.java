@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.view.View;
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.collision.Box;
+import com.google.ar.sceneform.collision.CollisionShape;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Light;
+import com.google.ar.sceneform.rendering.Renderable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Decides every frame which point lights are worth rendering.
+ *
+ * <p>A light is relevant when its falloff sphere is inside the camera's view frustum, tested
+ * against its near, far and side planes, and touches the bounds of at least one receiver node.
+ * Relevant lights are ranked by intensity weighted with the screen area their falloff sphere
+ * covers, and at most {@link #setMaximumActiveLights(int)} of them are enabled. Everything else is
+ * disabled so it doesn't add shading cost. Scoring a light allocates nothing.
+ */
+public class LightRelevanceManager implements Scene.OnUpdateListener {
+
+  private static final int DEFAULT_MAXIMUM_ACTIVE_LIGHTS = 4;
+
+  private final Camera camera;
+  private final View sceneView;
+  private final ArrayList<Node> lightNodes = new ArrayList<>();
+  private final ArrayList<Node> receivers = new ArrayList<>();
+
+  // Per receiver world space bounding spheres, refreshed once per frame.
+  private float[] receiverBounds = new float[0];
+  // Per light scores of the current frame, and the candidate lights with the selected ones first.
+  private float[] scores = new float[0];
+  private int[] ranking = new int[0];
+  private boolean[] selected = new boolean[0];
+
+  // Camera and frustum of the current frame and a temporary for light positions, reused so that
+  // scoring lights doesn't allocate.
+  private final Vector3 cameraPosition = new Vector3();
+  private final Vector3 cameraForward = new Vector3();
+  private final Vector3 lightPosition = new Vector3();
+  private final Vector3[] cornerDirections = {
+    new Vector3(), new Vector3(), new Vector3(), new Vector3()
+  };
+  private final float[] planeNormals = new float[4 * 3];
+  private float focalLengthPixels;
+  private float screenArea;
+
+  private int requestedLightCount;
+  private int maximumActiveLights = DEFAULT_MAXIMUM_ACTIVE_LIGHTS;
+  private int activeLightCount;
+  private boolean cullingEnabled = true;
+
+  public LightRelevanceManager(Camera camera, View sceneView) {
+    this.camera = camera;
+    this.sceneView = sceneView;
+  }
+
+  public void addLightNode(Node lightNode) {
+    lightNodes.add(lightNode);
+    if (scores.length < lightNodes.size()) {
+      scores = Arrays.copyOf(scores, lightNodes.size() * 2);
+      ranking = Arrays.copyOf(ranking, lightNodes.size() * 2);
+      selected = Arrays.copyOf(selected, lightNodes.size() * 2);
+    }
+  }
+
+  /** Adds a node whose renderable bounds can receive light. */
+  public void addReceiver(Node receiver) {
+    receivers.add(receiver);
+    receiverBounds = Arrays.copyOf(receiverBounds, receivers.size() * 4);
+  }
+
+  /** Sets how many lights the user asked for; only the first lights are ever candidates. */
+  public void setRequestedLightCount(int requestedLightCount) {
+    this.requestedLightCount = requestedLightCount;
+  }
+
+  public void setMaximumActiveLights(int maximumActiveLights) {
+    this.maximumActiveLights = maximumActiveLights;
+  }
+
+  /**
+   * Turns relevance culling off or back on. Without it the first requested lights are enabled, up
+   * to the maximum, whether they light anything on screen or not, e.g. so that measurements of the
+   * cost of lights aren't skewed by which of them happen to be culled.
+   */
+  public void setCullingEnabled(boolean cullingEnabled) {
+    this.cullingEnabled = cullingEnabled;
+  }
+
+  public boolean isCullingEnabled() {
+    return cullingEnabled;
+  }
+
+  public int getActiveLightCount() {
+    return activeLightCount;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (cullingEnabled) {
+      updateReceiverBounds();
+      updateFrustum();
+    }
+
+    int candidates = 0;
+    for (int i = 0; i < lightNodes.size(); i++) {
+      if (i >= requestedLightCount) {
+        scores[i] = 0;
+      } else {
+        scores[i] = cullingEnabled ? score(i) : 1;
+      }
+      if (scores[i] > 0) {
+        ranking[candidates++] = i;
+      }
+    }
+    activeLightCount = Math.min(candidates, maximumActiveLights);
+    selectTopScores(candidates, activeLightCount);
+    Arrays.fill(selected, false);
+    for (int i = 0; i < activeLightCount; i++) {
+      selected[ranking[i]] = true;
+    }
+    for (int i = 0; i < lightNodes.size(); i++) {
+      Node lightNode = lightNodes.get(i);
+      boolean enabled = selected[i];
+      if (lightNode.isEnabled() != enabled) {
+        lightNode.setEnabled(enabled);
+      }
+    }
+  }
+
+  // Takes the camera position, forward direction and the four side planes of the view frustum from
+  // the rays through the screen corners, once per frame so that scoring a light allocates nothing.
+  private void updateFrustum() {
+    camera.getWorldModelMatrix().decomposeTranslation(cameraPosition);
+    cameraForward.set(camera.getForward());
+    float width = Math.max(1, sceneView.getWidth());
+    float height = Math.max(1, sceneView.getHeight());
+    setCornerDirection(0, 0, 0);
+    setCornerDirection(1, width, 0);
+    setCornerDirection(2, width, height);
+    setCornerDirection(3, 0, height);
+    for (int i = 0; i < 4; i++) {
+      Vector3 a = cornerDirections[i];
+      Vector3 b = cornerDirections[(i + 1) % 4];
+      float normalX = a.y * b.z - a.z * b.y;
+      float normalY = a.z * b.x - a.x * b.z;
+      float normalZ = a.x * b.y - a.y * b.x;
+      float length = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+      // Points inside the frustum must be on the positive side of every plane.
+      if (normalX * cameraForward.x + normalY * cameraForward.y + normalZ * cameraForward.z < 0) {
+        length = -length;
+      }
+      planeNormals[i * 3] = normalX / length;
+      planeNormals[i * 3 + 1] = normalY / length;
+      planeNormals[i * 3 + 2] = normalZ / length;
+    }
+    // The horizontal focal length in pixels, from the angle between forward and a right corner.
+    Vector3 corner = cornerDirections[1];
+    float cornerDepth = Vector3.dot(corner, cameraForward);
+    float cornerSide = Math.abs(Vector3.dot(corner, camera.getRight()));
+    focalLengthPixels = cornerSide > 0 ? width / 2 * cornerDepth / cornerSide : width;
+    screenArea = width * height;
+  }
+
+  private void setCornerDirection(int corner, float x, float y) {
+    cornerDirections[corner].set(camera.screenPointToRay(x, y).getDirection());
+  }
+
+  private void updateReceiverBounds() {
+    for (int i = 0; i < receivers.size(); i++) {
+      Node receiver = receivers.get(i);
+      Renderable renderable = receiver.getRenderable();
+      CollisionShape shape = renderable == null ? null : renderable.getCollisionShape();
+      if (!receiver.isActive() || !(shape instanceof Box)) {
+        receiverBounds[i * 4 + 3] = -1;
+        continue;
+      }
+      Box box = (Box) shape;
+      Vector3 center = receiver.localToWorldPoint(box.getCenter());
+      Vector3 scale = receiver.getWorldScale();
+      float maximumScale = Math.max(scale.x, Math.max(scale.y, scale.z));
+      receiverBounds[i * 4] = center.x;
+      receiverBounds[i * 4 + 1] = center.y;
+      receiverBounds[i * 4 + 2] = center.z;
+      receiverBounds[i * 4 + 3] = box.getSize().length() / 2 * maximumScale;
+    }
+  }
+
+  // Returns 0 for lights that can't contribute to the image, a positive score otherwise.
+  private float score(int index) {
+    Node lightNode = lightNodes.get(index);
+    Light light = lightNode.getLight();
+    if (light == null) {
+      return 0;
+    }
+    float radius = light.getFalloffRadius();
+    lightNode.getWorldModelMatrix().decomposeTranslation(lightPosition);
+    if (!touchesReceiver(lightPosition, radius)) {
+      return 0;
+    }
+
+    float toLightX = lightPosition.x - cameraPosition.x;
+    float toLightY = lightPosition.y - cameraPosition.y;
+    float toLightZ = lightPosition.z - cameraPosition.z;
+    float depth =
+        toLightX * cameraForward.x + toLightY * cameraForward.y + toLightZ * cameraForward.z;
+    if (depth < camera.getNearClipPlane() - radius || depth > camera.getFarClipPlane() + radius) {
+      return 0;
+    }
+    for (int i = 0; i < 4; i++) {
+      float distance =
+          toLightX * planeNormals[i * 3]
+              + toLightY * planeNormals[i * 3 + 1]
+              + toLightZ * planeNormals[i * 3 + 2];
+      if (distance < -radius) {
+        return 0;
+      }
+    }
+    if (depth <= camera.getNearClipPlane() + radius) {
+      // The falloff sphere reaches the near plane inside the frustum, so it covers the screen.
+      return light.getIntensity();
+    }
+
+    float projectedRadius = radius / depth * focalLengthPixels;
+    float coverage = (float) Math.PI * projectedRadius * projectedRadius / screenArea;
+    return light.getIntensity() * Math.max(Math.min(coverage, 1f), Float.MIN_VALUE);
+  }
+
+  private boolean touchesReceiver(Vector3 position, float radius) {
+    for (int i = 0; i < receivers.size(); i++) {
+      float receiverRadius = receiverBounds[i * 4 + 3];
+      if (receiverRadius < 0) {
+        continue;
+      }
+      float dx = position.x - receiverBounds[i * 4];
+      float dy = position.y - receiverBounds[i * 4 + 1];
+      float dz = position.z - receiverBounds[i * 4 + 2];
+      float reach = radius + receiverRadius;
+      if (dx * dx + dy * dy + dz * dz < reach * reach) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Moves the k highest scoring of the first count lights in the ranking to its front, in no
+  // particular order. This is a quickselect: in stress scenes there can be hundreds of candidates,
+  // and finding the top k takes linear time on average where sorting all of them wouldn't. It
+  // doesn't allocate, and the same scores always select the same lights.
+  private void selectTopScores(int count, int k) {
+    if (k <= 0 || k >= count) {
+      return;
+    }
+    int left = 0;
+    int right = count - 1;
+    while (left < right) {
+      float pivot = scores[ranking[(left + right) >>> 1]];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (scores[ranking[i]] > pivot) {
+          i++;
+        }
+        while (scores[ranking[j]] < pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int light = ranking[i];
+          ranking[i++] = ranking[j];
+          ranking[j--] = light;
+        }
+      }
+      // Now the lights up to j score at least the pivot and those from i on at most the pivot.
+      if (k - 1 <= j) {
+        right = j;
+      } else if (k - 1 >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+}
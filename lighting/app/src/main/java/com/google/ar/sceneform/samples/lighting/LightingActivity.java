@@ -21,6 +21,7 @@ import android.content.Context;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
+import android.support.annotation.VisibleForTesting;
 import android.support.design.widget.BottomSheetDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
@@ -31,32 +32,21 @@ import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import android.widget.CompoundButton;
-import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.Spinner;
 import android.widget.Toast;
 import android.widget.ToggleButton;
-import com.google.ar.core.Anchor;
 import com.google.ar.core.HitResult;
 import com.google.ar.core.Plane;
 import com.google.ar.sceneform.AnchorNode;
-import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.Node.OnTapListener;
 import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.Color;
-import com.google.ar.sceneform.rendering.Light;
-import com.google.ar.sceneform.rendering.Light.Type;
-import com.google.ar.sceneform.rendering.Material;
-import com.google.ar.sceneform.rendering.MaterialFactory;
 import com.google.ar.sceneform.rendering.ModelRenderable;
-import com.google.ar.sceneform.rendering.ShapeFactory;
-import com.google.ar.sceneform.rendering.ViewRenderable;
 import com.google.ar.sceneform.ux.ArFragment;
-import java.util.ArrayList;
 import java.util.concurrent.CompletionException;
 
 /**
@@ -81,21 +71,30 @@ public class LightingActivity extends AppCompatActivity {
   private SeekBar numberOfLightsSlider;
   private Spinner lightColorSpinner;
 
+  private FrameSource frameSource;
+  private ScenePlacer scenePlacer;
   private AnchorNode anchorNode;
 
   private boolean isLightingInitialized;
-  private boolean hasPlacedShapes;
 
   private Node modelNode1;
   private Node modelNode2;
-  private Node openMenuNode;
-  private final ArrayList<Node> pointlightNodes = new ArrayList<>();
-
-  // Create (initial) colors for the lights.
-  private ColorConfig.Type pointlightColorConfig = ColorConfig.Type.RED;
+  private Node boxNode;
+  private MaterialMenu materialMenu;
+  private LightPool lightPool;
+  private int maximumLights;
+  private int maximumActiveLights;
+  private final LightOrbitController orbitController = new LightOrbitController();
+  private LightRelevanceManager lightRelevanceManager;
+  private final RenderableCache renderableCache = new RenderableCache(this);
+  private final StartupMetrics startupMetrics = new StartupMetrics();
+  private final StartupScheduler startupScheduler = new StartupScheduler();
+  private final FrameScheduler frameScheduler = new FrameScheduler(DEFERRABLE_BUDGET_MILLIS);
+  private StressConfig stressConfig;
+  private QualityGovernor qualityGovernor;
+  private boolean isQualityHeld;
 
   // Create color for the box.
-  private static final Color GREY = new Color(0.5f, 0.5f, 0.5f);
   private static final Color DARK_GREY = new Color(0.2f, 0.2f, 0.2f);
 
   // Create dimensions for the box.
@@ -108,136 +107,232 @@ public class LightingActivity extends AppCompatActivity {
   private static final int MAXIMUM_LIGHT_INTENSITY = 12000;
   private static final float LIGHT_FALLOFF_RADIUS = .5f;
 
-  // Create light number values
+  // Create light number values, the maximum can be raised with the maximum_lights intent extra.
   private static final int DEFAULT_LIGHT_NUMBER = 2;
   private static final int MAXIMUM_LIGHT_NUMBER = 4;
+  @VisibleForTesting static final String EXTRA_MAXIMUM_LIGHTS = "maximum_lights";
+  private static final String EXTRA_MAXIMUM_ACTIVE_LIGHTS = "maximum_active_lights";
+
+  private static final String TASK_LIGHTING_MENU = "lighting menu";
+  private static final String TASK_LIGHTS = "lights";
+  // Scene setup that can wait a frame gets this much of each frame, little enough to fit a 16ms
+  // frame next to the per frame work.
+  private static final float DEFERRABLE_BUDGET_MILLIS = 4f;
 
-  private static final int MAXIMUM_MATERIAL_PROPERTY_VALUE = 100;
   private static final int MAXIMUM_LIGHT_SPEED = 100;
 
+  // Sceneform renders at the display refresh rate, so that is the frame rate to protect, even
+  // though ARCore only delivers camera frames at 30 fps.
+  private static final int QUALITY_WINDOW_FRAMES = 30;
+  private static final int REDUCED_ORBIT_FRAMES_PER_UPDATE = 3;
+
   private static final Quaternion ROTATION_180_DEGREES = new Quaternion(Vector3.up(), 180f);
 
+  // Create (initial) settings for the lights, the lights are red by default.
+  private final LightingState lightingState =
+      new LightingState(
+          DEFAULT_LIGHT_INTENSITY, ColorConfig.Type.RED, 1f, DEFAULT_LIGHT_NUMBER, true);
+
   @Override
   @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    startupMetrics.markActivityCreated();
     if (!checkIsSupportedDeviceOrFinish(this)) {
       return;
     }
 
     setContentView(R.layout.activity_light);
+    qualityGovernor =
+        QualityGovernor.forRefreshRate(
+            getWindowManager().getDefaultDisplay().getRefreshRate(), QUALITY_WINDOW_FRAMES);
+    stressConfig = StressConfig.fromIntent(getIntent());
+    maximumLights =
+        Math.max(1, getIntent().getIntExtra(EXTRA_MAXIMUM_LIGHTS, MAXIMUM_LIGHT_NUMBER));
 
     fragment = (ArFragment) getSupportFragmentManager().findFragmentById(R.id.sceneform_fragment);
+    frameSource = new ArFrameSource(fragment.getArSceneView());
+    fragment.getArSceneView().getScene().addOnUpdateListener(startupMetrics);
+    fragment.getArSceneView().getScene().addOnUpdateListener(startupScheduler);
+    fragment.getArSceneView().getScene().addOnUpdateListener(this::applyLightingState);
+    fragment.getArSceneView().getScene().addOnUpdateListener(orbitController);
+    fragment.getArSceneView().getScene().addOnUpdateListener(frameScheduler);
+
+    // Asset loading is critical so that it overlaps with the session start, it runs in the
+    // background anyway. The lighting menu isn't needed until the user opens it.
+    startupScheduler.runCritical("asset preload", this::preloadAssets);
+
+    scenePlacer = new ScenePlacer(frameSource, this::placeScene);
+    // The tap is hit tested again through the frame source, the same way scripted taps are.
+    fragment.setOnTapArPlaneListener(
+        (HitResult hitResult, Plane plane, MotionEvent motionEvent) -> {
+          if (scenePlacer.onTap(motionEvent.getX(), motionEvent.getY())) {
+            startupMetrics.markTap();
+          }
+        });
 
-    // Create material asynchronously, then use it to create a cube renderable on the main thread.
-    MaterialFactory.makeOpaqueWithColor(this, GREY)
-        .thenAccept(
-            material -> {
-              Material boxMaterial = material.makeCopy();
-              boxMaterial.setFloat3(MaterialFactory.MATERIAL_COLOR, DARK_GREY);
-              boxRenderable =
-                  ShapeFactory.makeCube(
-                      CUBE_SIZE_METERS, new Vector3(0, CUBE_SIZE_METERS.y / 2, 0), boxMaterial);
-            })
-        .exceptionally(
-            throwable -> {
-              displayError(throwable);
-              throw new CompletionException(throwable);
-            });
-    ModelRenderable.builder()
-        .setSource(this, R.raw.shader_d)
-        .build()
-        .thenAccept(
-            modelRenderable -> {
-              shaderModel1 = modelRenderable;
-              shaderModel2 = modelRenderable.makeCopy();
+    Button launchMenuButton = (Button) findViewById(R.id.expand_controls);
+    // The stress scene is driven by its launch configuration only.
+    launchMenuButton.setVisibility(stressConfig == null ? View.VISIBLE : View.GONE);
+    launchMenuButton.setOnClickListener(
+        view -> {
+          startupScheduler.ensureRun(TASK_LIGHTING_MENU);
+          lightUiMenu.create();
+          lightUiMenu.show();
+        });
+    startupScheduler.addDeferrable(TASK_LIGHTING_MENU, this::setupLightingUi);
+    startupScheduler.start();
+  }
+
+  // Loads the model and creates the box material in the background while the session starts.
+  @SuppressWarnings({"FutureReturnValueIgnored"})
+  private void preloadAssets() {
+    renderableCache
+        .preload(CUBE_SIZE_METERS, DARK_GREY)
+        .thenRun(
+            () -> {
+              startupMetrics.markAssetsReady();
+              scenePlacer.setReady();
             })
         .exceptionally(
             throwable -> {
               displayError(throwable);
               throw new CompletionException(throwable);
             });
+  }
 
-    fragment.setOnTapArPlaneListener(
-        (HitResult hitResult, Plane plane, MotionEvent motionEvent) -> {
-          // Create an anchor at tap location.
-          Anchor newAnchor = hitResult.createAnchor();
-          if (hasPlacedShapes) {
-            // If we've already created the scene, we just need to reposition where it's anchored.
-            Anchor oldAnchor = anchorNode.getAnchor();
-            if (oldAnchor != null) {
-              oldAnchor.detach();
-            }
-            anchorNode.setAnchor(newAnchor);
-          } else {
-            // Build the scene and position it with the anchor.
-            // Create the AnchorNode.
-            anchorNode = new AnchorNode(newAnchor);
-            anchorNode.setParent(fragment.getArSceneView().getScene());
-
-            modelNode1 =
-                createShapeNode(
-                    anchorNode,
-                    shaderModel1,
-                    new Vector3(0.2f, MODEL_CUBE_HEIGHT_OFFSET_METERS, 0.0f));
-            modelNode1.setLocalRotation(ROTATION_180_DEGREES);
-
-            modelNode2 =
-                createShapeNode(
-                    anchorNode,
-                    shaderModel2,
-                    new Vector3(-0.2f, MODEL_CUBE_HEIGHT_OFFSET_METERS, 0.0f));
-            modelNode2.setLocalRotation(ROTATION_180_DEGREES);
-
-            // Create ViewRenderable Menus for each model
-            createMenuNode(modelNode1, new Vector3(0.0f, 0.35f, 0.0f));
-            createMenuNode(modelNode2, new Vector3(0.0f, 0.35f, 0.0f));
-
-            // Create a thin box beneath the models.
-            createShapeNode(anchorNode, boxRenderable, new Vector3(0.0f, 0.0f, 0.0f));
-
-            // Setup lights.
-            setUpLights();
-
-            hasPlacedShapes = true;
-          }
-        });
+  private void placeScene(AnchorNode newAnchorNode) {
+    // Build the scene and position it with the anchor.
+    anchorNode = newAnchorNode;
+    anchorNode.setParent(fragment.getArSceneView().getScene());
+
+    if (stressConfig != null) {
+      placeStressScene();
+      return;
+    }
+
+    shaderModel1 = renderableCache.obtainModel();
+    shaderModel2 = renderableCache.obtainModel();
+    boxRenderable = renderableCache.getBoxRenderable();
+
+    modelNode1 =
+        createShapeNode(
+            anchorNode, shaderModel1, new Vector3(0.2f, MODEL_CUBE_HEIGHT_OFFSET_METERS, 0.0f));
+    modelNode1.setLocalRotation(ROTATION_180_DEGREES);
+
+    modelNode2 =
+        createShapeNode(
+            anchorNode, shaderModel2, new Vector3(-0.2f, MODEL_CUBE_HEIGHT_OFFSET_METERS, 0.0f));
+    modelNode2.setLocalRotation(ROTATION_180_DEGREES);
+
+    // Share one ViewRenderable menu between the models, it is created on the first tap.
+    materialMenu =
+        new MaterialMenu(this, lightingState, new Vector3(0.0f, 0.35f, 0.0f), this::displayError);
+    modelNode1.setOnTapListener((hitTestResult, motionEvent) -> materialMenu.toggle(modelNode1));
+    modelNode2.setOnTapListener((hitTestResult, motionEvent) -> materialMenu.toggle(modelNode2));
+
+    // Create a thin box beneath the models.
+    boxNode = createShapeNode(anchorNode, boxRenderable, new Vector3(0.0f, 0.0f, 0.0f));
+
+    // Setup lights in a later slice, so that this frame only has to take the models.
+    frameScheduler.post(TASK_LIGHTS, FrameScheduler.PRIORITY_HIGH, this::setUpLights);
+
+    startupMetrics.markPlaced();
+  }
 
-    setupLightingUi();
+  // Replaces the regular scene with a configurable grid of models and lights.
+  private void placeStressScene() {
+    StressScene stressScene = new StressScene(stressConfig, renderableCache, orbitController);
+    lightRelevanceManager =
+        new LightRelevanceManager(
+            fragment.getArSceneView().getScene().getCamera(), fragment.getArSceneView());
+    stressScene.place(anchorNode, lightRelevanceManager, frameScheduler);
+    fragment.getArSceneView().getScene().addOnUpdateListener(lightRelevanceManager);
+    fragment.getArSceneView().getScene().addOnUpdateListener(stressScene);
+
+    startupMetrics.markPlaced();
   }
 
   private void setUpLights() {
-    Light.Builder lightBuilder =
-        Light.builder(Type.POINT)
-            .setFalloffRadius(LIGHT_FALLOFF_RADIUS)
-            .setShadowCastingEnabled(false)
-            .setIntensity(intensityBar.getProgress());
-
-    for (int i = 0; i < 4; i++) {
-      // Sets the color of and creates the light.
-      lightBuilder.setColor(ColorConfig.getColor(pointlightColorConfig, i));
-      Light light = lightBuilder.build();
-
-      // Create node and set its light.
-      Vector3 localPosition =
-          new Vector3(-0.4f + (i * .2f), POINTLIGHT_CUBE_HEIGHT_OFFSET_METERS, 0.0f);
-
-      RotatingNode orbit = new RotatingNode();
-      orbit.setParent(anchorNode);
-
-      Node lightNode = new Node();
-      lightNode.setParent(orbit);
-      lightNode.setLocalPosition(localPosition);
-      lightNode.setLight(light);
-      //  Check if lights are currently switched on or off, and update accordingly.
-      lightNode.setEnabled(toggleLights.isChecked());
-
-      pointlightNodes.add(lightNode);
-    }
+    lightRelevanceManager =
+        new LightRelevanceManager(
+            fragment.getArSceneView().getScene().getCamera(), fragment.getArSceneView());
+    lightRelevanceManager.addReceiver(modelNode1);
+    lightRelevanceManager.addReceiver(modelNode2);
+    lightRelevanceManager.addReceiver(boxNode);
+
+    maximumActiveLights = getIntent().getIntExtra(EXTRA_MAXIMUM_ACTIVE_LIGHTS, maximumLights);
+    lightRelevanceManager.setMaximumActiveLights(maximumActiveLights);
+
+    // Lights are only created once the light count asks for them.
+    lightPool =
+        new LightPool(
+            anchorNode,
+            POINTLIGHT_CUBE_HEIGHT_OFFSET_METERS,
+            maximumLights,
+            orbitController,
+            lightRelevanceManager);
+    lightPool.setIntensity(lightingState.getIntensity());
+    lightPool.setFalloffRadius(LIGHT_FALLOFF_RADIUS);
+    lightPool.setColorType(lightingState.getColorType());
+    lightPool.setOrbitSpeedMultiplier(lightingState.getOrbitSpeedMultiplier());
+
+    //  Check if lights are currently switched on or off, and update accordingly.
+    lightPool.setLightCount(lightingState.getRequestedLightCount());
+    fragment.getArSceneView().getScene().addOnUpdateListener(lightRelevanceManager);
+
+    // Trade quality for frame time when the device can't keep up, e.g. when it's throttled.
+    qualityGovernor.setOnLevelChangedListener(
+        (previousLevel, newLevel) -> {
+          Log.i(TAG, "Quality level changed from " + previousLevel + " to " + newLevel);
+          applyQualityLevel();
+        });
+    fragment
+        .getArSceneView()
+        .getScene()
+        .addOnUpdateListener(
+            frameTime -> {
+              if (!isQualityHeld) {
+                qualityGovernor.record(frameTime.getDeltaSeconds() * 1000f);
+              }
+            });
 
     isLightingInitialized = true;
   }
 
+  @VisibleForTesting
+  ScenePlacer getScenePlacer() {
+    return scenePlacer;
+  }
+
+  @VisibleForTesting
+  LightingState getLightingState() {
+    return lightingState;
+  }
+
+  @VisibleForTesting
+  int getMaximumLights() {
+    return maximumLights;
+  }
+
+  @VisibleForTesting
+  boolean isLightingInitialized() {
+    return isLightingInitialized;
+  }
+
+  /**
+   * Keeps the scene at full quality, with every requested light on up to the maximum whether it
+   * lights anything on screen or not, so that a measurement sees the configuration it asked for.
+   * Main thread only, once the lighting is initialized.
+   */
+  @VisibleForTesting
+  void holdFullQuality() {
+    isQualityHeld = true;
+    qualityGovernor.reset();
+    lightRelevanceManager.setCullingEnabled(false);
+    lightRelevanceManager.setMaximumActiveLights(maximumLights);
+  }
+
   private void setupLightingUi() {
     // Sets up the dialog box for lighting UI.
     lightUiMenu = new BottomSheetDialog(this);
@@ -245,12 +340,6 @@ public class LightingActivity extends AppCompatActivity {
 
     // Stop the lighting menu from dimming the screen.
     lightUiMenu.getWindow().getAttributes().dimAmount = 0f;
-    Button launchMenuButton = (Button) findViewById(R.id.expand_controls);
-    launchMenuButton.setOnClickListener(
-        view -> {
-          lightUiMenu.create();
-          lightUiMenu.show();
-        });
 
     // Initialize the Lights ToggleButton and default it to "On".
     toggleLights = (ToggleButton) lightUiMenu.findViewById(R.id.lightSwitchControlsButton);
@@ -258,11 +347,8 @@ public class LightingActivity extends AppCompatActivity {
     // Link the state of the light toggle button in the scene to the lights (red, green)
     toggleLights.setOnCheckedChangeListener(
         (buttonView, isChecked) -> {
+          updateRequestedLightCount();
           if (isLightingInitialized) {
-            int numberOfLights = numberOfLightsSlider.getProgress();
-            for (int i = 0; i < pointlightNodes.size(); i++) {
-              pointlightNodes.get(i).setEnabled(isChecked && i < numberOfLights);
-            }
             intensityBar.setEnabled(isChecked);
             lightColorSpinner.setEnabled(isChecked);
             orbitSpeedBar.setEnabled(isChecked);
@@ -276,13 +362,7 @@ public class LightingActivity extends AppCompatActivity {
     toggleShadows.setChecked(true);
 
     toggleShadows.setOnCheckedChangeListener(
-        ((buttonView, isChecked) -> {
-          if (isLightingInitialized) {
-            shaderModel1.setShadowCaster(isChecked);
-            shaderModel2.setShadowCaster(isChecked);
-            boxRenderable.setShadowCaster(isChecked);
-          }
-        }));
+        ((buttonView, isChecked) -> lightingState.setShadowsEnabled(isChecked)));
 
     // Initialize Seekbar to DEFAULT_LIGHT_INTENSITY and set max to MAXIMUM LIGHT INTENSITY
     intensityBar = (SeekBar) lightUiMenu.findViewById(R.id.lightIntensitySeekBar);
@@ -294,18 +374,16 @@ public class LightingActivity extends AppCompatActivity {
         new OnSeekBarChangeListener() {
           @Override
           public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-            if (isLightingInitialized) {
-              for (Node node : pointlightNodes) {
-                node.getLight().setIntensity(progress);
-              }
-            }
+            lightingState.setIntensity(progress);
           }
 
           @Override
           public void onStartTrackingTouch(SeekBar seekBar) {}
 
           @Override
-          public void onStopTrackingTouch(SeekBar seekBar) {}
+          public void onStopTrackingTouch(SeekBar seekBar) {
+            Log.d(TAG, lightingState.toString());
+          }
         });
 
     // Initialize Light Color Spinner and populate it with preset options from ColorPair.
@@ -324,25 +402,14 @@ public class LightingActivity extends AppCompatActivity {
         new OnItemSelectedListener() {
           @Override
           public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-            pointlightColorConfig =
+            lightingState.setColorType(
                 (com.google.ar.sceneform.samples.lighting.ColorConfig.Type)
-                    parent.getItemAtPosition(position);
-            if (isLightingInitialized) {
-              for (int i = 0; i < pointlightNodes.size(); i++) {
-                Light light = pointlightNodes.get(i).getLight();
-                light.setColor(ColorConfig.getColor(pointlightColorConfig, i));
-              }
-            }
+                    parent.getItemAtPosition(position));
           }
 
           @Override
           public void onNothingSelected(AdapterView<?> parent) {
-            if (isLightingInitialized) {
-              for (int i = 0; i < pointlightNodes.size(); i++) {
-                Light light = pointlightNodes.get(i).getLight();
-                light.setColor(ColorConfig.getColor(pointlightColorConfig, i));
-              }
-            }
+            lightingState.setColorType(lightingState.getColorType());
           }
         });
 
@@ -356,12 +423,7 @@ public class LightingActivity extends AppCompatActivity {
         new OnSeekBarChangeListener() {
           @Override
           public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-            if (isLightingInitialized) {
-              for (Node node : pointlightNodes) {
-                RotatingNode orbit = (RotatingNode) node.getParent();
-                orbit.setSpeedMultiplier((float) progress / MAXIMUM_LIGHT_SPEED);
-              }
-            }
+            lightingState.setOrbitSpeedMultiplier((float) progress / MAXIMUM_LIGHT_SPEED);
           }
 
           @Override
@@ -371,18 +433,16 @@ public class LightingActivity extends AppCompatActivity {
           public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
-    // Initialize Number of Lights Slider and set max to 4.
+    // Initialize Number of Lights Slider and set max to 4, unless the intent asks for more.
     numberOfLightsSlider = (SeekBar) lightUiMenu.findViewById(R.id.numOfLightsSlider);
-    numberOfLightsSlider.setMax(MAXIMUM_LIGHT_NUMBER);
+    numberOfLightsSlider.setMax(maximumLights);
     numberOfLightsSlider.setProgress(DEFAULT_LIGHT_NUMBER);
 
     numberOfLightsSlider.setOnSeekBarChangeListener(
         new OnSeekBarChangeListener() {
           @Override
           public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-            for (int i = 0; i < pointlightNodes.size(); i++) {
-              pointlightNodes.get(i).setEnabled(toggleLights.isChecked() && i < progress);
-            }
+            updateRequestedLightCount();
           }
 
           @Override
@@ -393,61 +453,57 @@ public class LightingActivity extends AppCompatActivity {
         });
   }
 
-  private void changeMaterialValue(String propertyName, float change, Node node) {
-    Material material = node.getParent().getRenderable().getMaterial();
-    material.setFloat(propertyName, change);
+  // The relevance manager enables the requested lights that actually light something on screen.
+  private void updateRequestedLightCount() {
+    lightingState.setRequestedLightCount(
+        toggleLights.isChecked() ? numberOfLightsSlider.getProgress() : 0);
   }
 
-  @SuppressWarnings("FutureReturnValueIgnored")
-  private void addMenuToNode(Node node, Vector3 localPosition) {
-    ViewRenderable.builder()
-        .setView(this, R.layout.material_options_view)
-        .build()
-        .thenAccept(
-            viewRenderable -> {
-              node.setRenderable(viewRenderable);
-              node.setEnabled(false);
-              node.setLocalPosition(localPosition);
-              node.setWorldScale(new Vector3(.65f, .65f, .5f));
-              setupMaterialMenu(viewRenderable, node);
-            })
-        .exceptionally(
-            throwable -> {
-              displayError(throwable);
-              throw new CompletionException(throwable);
-            });
+  // Applies the net change made through the lighting UI since the last frame.
+  private void applyLightingState(FrameTime frameTime) {
+    if (!isLightingInitialized) {
+      return;
+    }
+    int dirtyFlags = lightingState.consumeDirtyFlags();
+    if ((dirtyFlags & LightingState.INTENSITY) != 0) {
+      lightingState.countUploads(lightPool.setIntensity(lightingState.getIntensity()));
+    }
+    if ((dirtyFlags & LightingState.COLOR) != 0) {
+      lightingState.countUploads(lightPool.setColorType(lightingState.getColorType()));
+    }
+    if ((dirtyFlags & LightingState.ORBIT_SPEED) != 0) {
+      lightPool.setOrbitSpeedMultiplier(lightingState.getOrbitSpeedMultiplier());
+    }
+    if ((dirtyFlags & LightingState.LIGHT_COUNT) != 0) {
+      lightPool.setLightCount(lightingState.getRequestedLightCount());
+    }
+    if ((dirtyFlags & LightingState.SHADOWS) != 0) {
+      updateShadowCasters();
+    }
+    lightingState.applyMaterialValues();
   }
 
-  private void setupMaterialMenu(ViewRenderable viewRenderable, Node node) {
-    ToggleButton metallicButton =
-        (ToggleButton) viewRenderable.getView().findViewById(R.id.metallic_button);
-    metallicButton.setChecked(true);
-    metallicButton.setOnCheckedChangeListener(
-        new OnCheckedChangeListener() {
-          @Override
-          public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-            float newValue = (isChecked) ? 1f : 0f;
-            changeMaterialValue("metallicFactor", newValue, node);
-          }
-        });
-    SeekBar roughnessBar = (SeekBar) viewRenderable.getView().findViewById(R.id.roughness_slider);
-    roughnessBar.setMax(MAXIMUM_MATERIAL_PROPERTY_VALUE);
-    // Set initial roughness to half of its maximum value
-    roughnessBar.setProgress(MAXIMUM_MATERIAL_PROPERTY_VALUE);
-    roughnessBar.setOnSeekBarChangeListener(
-        new OnSeekBarChangeListener() {
-          @Override
-          public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-            float newValue = progress / (float) MAXIMUM_MATERIAL_PROPERTY_VALUE;
-            changeMaterialValue("roughnessFactor", newValue, node);
-          }
-
-          @Override
-          public void onStartTrackingTouch(SeekBar seekBar) {}
+  // Shadows are cast when the user wants them and the quality governor allows them.
+  private void updateShadowCasters() {
+    boolean shadowsEnabled =
+        lightingState.isShadowsEnabled()
+            && !qualityGovernor.isAtLeast(QualityGovernor.Level.NO_SHADOWS);
+    shaderModel1.setShadowCaster(shadowsEnabled);
+    shaderModel2.setShadowCaster(shadowsEnabled);
+    boxRenderable.setShadowCaster(shadowsEnabled);
+    lightingState.countUploads(3);
+  }
 
-          @Override
-          public void onStopTrackingTouch(SeekBar seekBar) {}
-        });
+  private void applyQualityLevel() {
+    updateShadowCasters();
+    lightRelevanceManager.setMaximumActiveLights(
+        qualityGovernor.isAtLeast(QualityGovernor.Level.REDUCED_LIGHTS)
+            ? Math.max(1, maximumActiveLights / 2)
+            : maximumActiveLights);
+    orbitController.setFramesPerUpdate(
+        qualityGovernor.isAtLeast(QualityGovernor.Level.REDUCED_ORBIT_RATE)
+            ? REDUCED_ORBIT_FRAMES_PER_UPDATE
+            : 1);
   }
 
   private Node createShapeNode(
@@ -459,26 +515,6 @@ public class LightingActivity extends AppCompatActivity {
     return shape;
   }
 
-  private Node createMenuNode(Node node, Vector3 localPosition) {
-    Node menu = new Node();
-    menu.setParent(node);
-    addMenuToNode(menu, localPosition);
-    node.setOnTapListener(
-        new OnTapListener() {
-          @Override
-          public void onTap(HitTestResult hitTestResult, MotionEvent motionEvent) {
-            menu.setEnabled(!menu.isEnabled());
-            if (openMenuNode != null) {
-              openMenuNode.setEnabled(false);
-              openMenuNode = (openMenuNode == menu) ? null : menu;
-            } else {
-              openMenuNode = menu;
-            }
-          }
-        });
-    return menu;
-  }
-
   private void displayError(Throwable throwable) {
     Log.e(TAG, "Unable to read renderable", throwable);
     Toast toast = Toast.makeText(this, "Unable to read renderable", Toast.LENGTH_LONG);
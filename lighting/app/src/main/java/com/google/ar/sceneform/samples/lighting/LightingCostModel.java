@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fits a linear frame time model to the results written by {@code LightingBenchmark}:
+ *
+ * <pre>
+ * frame time = base + lights * perLight + shadows * shadow + lights * shadows * perShadowedLight
+ * </pre>
+ *
+ * <p>where shadows is 0 or 1. This class only uses the JDK, so the analysis can run on a desktop
+ * JVM, see {@code LightingCostReport} in the unit tests.
+ */
+public class LightingCostModel {
+
+  private static final int TERMS = 4;
+
+  private final double baseMillis;
+  private final double perLightMillis;
+  private final double shadowMillis;
+  private final double perShadowedLightMillis;
+
+  private LightingCostModel(double[] coefficients) {
+    baseMillis = coefficients[0];
+    perLightMillis = coefficients[1];
+    shadowMillis = coefficients[2];
+    perShadowedLightMillis = coefficients[3];
+  }
+
+  /**
+   * Fits the model with least squares.
+   *
+   * @param lightCounts the number of lights of each sample
+   * @param shadowsEnabled whether shadows were on for each sample
+   * @param frameTimesMillis the measured frame time of each sample
+   * @throws IllegalArgumentException if the samples don't vary enough to determine every term
+   */
+  public static LightingCostModel fit(
+      int[] lightCounts, boolean[] shadowsEnabled, double[] frameTimesMillis) {
+    // Accumulate the normal equations (X^T X) b = X^T y.
+    double[][] normal = new double[TERMS][TERMS + 1];
+    double[] terms = new double[TERMS];
+    for (int i = 0; i < frameTimesMillis.length; i++) {
+      double shadows = shadowsEnabled[i] ? 1 : 0;
+      terms[0] = 1;
+      terms[1] = lightCounts[i];
+      terms[2] = shadows;
+      terms[3] = lightCounts[i] * shadows;
+      for (int row = 0; row < TERMS; row++) {
+        for (int column = 0; column < TERMS; column++) {
+          normal[row][column] += terms[row] * terms[column];
+        }
+        normal[row][TERMS] += terms[row] * frameTimesMillis[i];
+      }
+    }
+    return new LightingCostModel(solve(normal));
+  }
+
+  // Gaussian elimination with partial pivoting on an augmented matrix.
+  private static double[] solve(double[][] matrix) {
+    int size = matrix.length;
+    for (int pivot = 0; pivot < size; pivot++) {
+      int best = pivot;
+      for (int row = pivot + 1; row < size; row++) {
+        if (Math.abs(matrix[row][pivot]) > Math.abs(matrix[best][pivot])) {
+          best = row;
+        }
+      }
+      if (Math.abs(matrix[best][pivot]) < 1e-9) {
+        throw new IllegalArgumentException(
+            "Need samples with several light counts, both with and without shadows.");
+      }
+      double[] swap = matrix[pivot];
+      matrix[pivot] = matrix[best];
+      matrix[best] = swap;
+      for (int row = pivot + 1; row < size; row++) {
+        double factor = matrix[row][pivot] / matrix[pivot][pivot];
+        for (int column = pivot; column <= size; column++) {
+          matrix[row][column] -= factor * matrix[pivot][column];
+        }
+      }
+    }
+    double[] solution = new double[size];
+    for (int row = size - 1; row >= 0; row--) {
+      double sum = matrix[row][size];
+      for (int column = row + 1; column < size; column++) {
+        sum -= matrix[row][column] * solution[column];
+      }
+      solution[row] = sum / matrix[row][row];
+    }
+    return solution;
+  }
+
+  /**
+   * Reads a benchmark CSV and fits the model to one of its frame time columns.
+   *
+   * @param column the name of the frame time column, for example {@code p50_ms}
+   */
+  public static LightingCostModel fit(Reader csv, String column) throws IOException {
+    BufferedReader reader = new BufferedReader(csv);
+    String header = reader.readLine();
+    if (header == null) {
+      throw new IllegalArgumentException("Empty benchmark file.");
+    }
+    List<String> columns = Arrays.asList(header.trim().split(","));
+    int lightsIndex = columns.indexOf("lights");
+    int shadowsIndex = columns.indexOf("shadows");
+    int frameTimeIndex = columns.indexOf(column);
+    if (lightsIndex < 0 || shadowsIndex < 0 || frameTimeIndex < 0) {
+      throw new IllegalArgumentException("Missing lights, shadows or " + column + " column.");
+    }
+
+    List<String[]> rows = new ArrayList<>();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      if (!line.trim().isEmpty()) {
+        rows.add(line.trim().split(","));
+      }
+    }
+    int[] lightCounts = new int[rows.size()];
+    boolean[] shadowsEnabled = new boolean[rows.size()];
+    double[] frameTimesMillis = new double[rows.size()];
+    for (int i = 0; i < rows.size(); i++) {
+      String[] row = rows.get(i);
+      lightCounts[i] = Integer.parseInt(row[lightsIndex]);
+      shadowsEnabled[i] = Integer.parseInt(row[shadowsIndex]) != 0;
+      frameTimesMillis[i] = Double.parseDouble(row[frameTimeIndex]);
+    }
+    return fit(lightCounts, shadowsEnabled, frameTimesMillis);
+  }
+
+  /** Returns the predicted frame time of a configuration. */
+  public double predictMillis(int lightCount, boolean shadowsEnabled) {
+    double shadows = shadowsEnabled ? 1 : 0;
+    return baseMillis
+        + lightCount * perLightMillis
+        + shadows * shadowMillis
+        + lightCount * shadows * perShadowedLightMillis;
+  }
+
+  /** Returns the most lights that fit in the frame budget, or -1 if not even zero lights do. */
+  public int getAffordableLights(double budgetMillis, boolean shadowsEnabled) {
+    double perLight = perLightMillis + (shadowsEnabled ? perShadowedLightMillis : 0);
+    double remaining = budgetMillis - predictMillis(0, shadowsEnabled);
+    if (remaining < 0) {
+      return -1;
+    }
+    return perLight <= 0 ? Integer.MAX_VALUE : (int) Math.floor(remaining / perLight);
+  }
+
+  public double getBaseMillis() {
+    return baseMillis;
+  }
+
+  public double getPerLightMillis() {
+    return perLightMillis;
+  }
+
+  public double getShadowMillis() {
+    return shadowMillis;
+  }
+
+  public double getPerShadowedLightMillis() {
+    return perShadowedLightMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "base %.3fms, per light %.3fms, shadows %.3fms, per light with shadows +%.3fms",
+        baseMillis, perLightMillis, shadowMillis, perShadowedLightMillis);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.sceneform.rendering.Material;
+import java.util.ArrayList;
+
+/**
+ * Settings written by the lighting UI and applied to the scene at most once per frame.
+ *
+ * <p>Sliders report every intermediate value while they are dragged. Writing those values here
+ * only marks them dirty; the scene update consumes the dirty flags and applies the net change, so
+ * a drag costs one set of light and material parameter uploads per frame.
+ */
+public class LightingState {
+
+  static final int INTENSITY = 1;
+  static final int COLOR = 1 << 1;
+  static final int ORBIT_SPEED = 1 << 2;
+  static final int LIGHT_COUNT = 1 << 3;
+  static final int SHADOWS = 1 << 4;
+
+  private int dirtyFlags;
+  private float intensity;
+  private ColorConfig.Type colorType;
+  private float orbitSpeedMultiplier;
+  private int requestedLightCount;
+  private boolean shadowsEnabled;
+
+  private final ArrayList<MaterialValue> pendingMaterialValues = new ArrayList<>();
+  private final ArrayList<MaterialValue> freeMaterialValues = new ArrayList<>();
+
+  private int changeCount;
+  private int uploadCount;
+
+  public LightingState(
+      float intensity,
+      ColorConfig.Type colorType,
+      float orbitSpeedMultiplier,
+      int requestedLightCount,
+      boolean shadowsEnabled) {
+    this.intensity = intensity;
+    this.colorType = colorType;
+    this.orbitSpeedMultiplier = orbitSpeedMultiplier;
+    this.requestedLightCount = requestedLightCount;
+    this.shadowsEnabled = shadowsEnabled;
+  }
+
+  public void setIntensity(float intensity) {
+    this.intensity = intensity;
+    markDirty(INTENSITY);
+  }
+
+  public void setColorType(ColorConfig.Type colorType) {
+    this.colorType = colorType;
+    markDirty(COLOR);
+  }
+
+  public void setOrbitSpeedMultiplier(float orbitSpeedMultiplier) {
+    this.orbitSpeedMultiplier = orbitSpeedMultiplier;
+    markDirty(ORBIT_SPEED);
+  }
+
+  public void setRequestedLightCount(int requestedLightCount) {
+    this.requestedLightCount = requestedLightCount;
+    markDirty(LIGHT_COUNT);
+  }
+
+  public void setShadowsEnabled(boolean shadowsEnabled) {
+    this.shadowsEnabled = shadowsEnabled;
+    markDirty(SHADOWS);
+  }
+
+  /** Queues a float material parameter; only the last value per material and name is uploaded. */
+  public void setMaterialValue(Material material, String propertyName, float value) {
+    changeCount++;
+    for (int i = 0; i < pendingMaterialValues.size(); i++) {
+      MaterialValue pending = pendingMaterialValues.get(i);
+      if (pending.material == material && pending.propertyName.equals(propertyName)) {
+        pending.value = value;
+        return;
+      }
+    }
+    MaterialValue pending =
+        freeMaterialValues.isEmpty()
+            ? new MaterialValue()
+            : freeMaterialValues.remove(freeMaterialValues.size() - 1);
+    pending.material = material;
+    pending.propertyName = propertyName;
+    pending.value = value;
+    pendingMaterialValues.add(pending);
+  }
+
+  private void markDirty(int flag) {
+    dirtyFlags |= flag;
+    changeCount++;
+  }
+
+  /** Returns the settings changed since the last call and clears them. */
+  public int consumeDirtyFlags() {
+    int flags = dirtyFlags;
+    dirtyFlags = 0;
+    return flags;
+  }
+
+  /** Uploads the queued material parameters. */
+  public void applyMaterialValues() {
+    for (int i = 0; i < pendingMaterialValues.size(); i++) {
+      MaterialValue pending = pendingMaterialValues.get(i);
+      pending.material.setFloat(pending.propertyName, pending.value);
+      uploadCount++;
+      pending.material = null;
+      freeMaterialValues.add(pending);
+    }
+    pendingMaterialValues.clear();
+  }
+
+  /** Counts a parameter upload made on behalf of this state, for {@link #toString()}. */
+  public void countUploads(int uploads) {
+    uploadCount += uploads;
+  }
+
+  public float getIntensity() {
+    return intensity;
+  }
+
+  public ColorConfig.Type getColorType() {
+    return colorType;
+  }
+
+  public float getOrbitSpeedMultiplier() {
+    return orbitSpeedMultiplier;
+  }
+
+  public int getRequestedLightCount() {
+    return requestedLightCount;
+  }
+
+  public boolean isShadowsEnabled() {
+    return shadowsEnabled;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "LightingState: %d changes from the UI, %d parameter uploads", changeCount, uploadCount);
+  }
+
+  private static final class MaterialValue {
+    Material material;
+    String propertyName;
+    float value;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Switches models between levels of detail by their distance to the camera.
+ *
+ * <p>Level {@code i} is used from {@code switchDistances[i - 1]} on. A model close to a switch
+ * distance would pop back and forth with every small camera movement, so it only moves to the
+ * coarser level once it is {@link #HYSTERESIS} further away than the switch distance, and only
+ * moves back once it is that much closer.
+ */
+public class LodSelector implements Scene.OnUpdateListener {
+
+  private static final float HYSTERESIS = 0.1f;
+
+  private final Camera camera;
+  private final float[] switchDistances;
+  private final ArrayList<Node> nodes = new ArrayList<>();
+  private final ArrayList<ModelRenderable[]> levels = new ArrayList<>();
+  private int[] currentLevels = new int[0];
+  private int swapCount;
+
+  /**
+   * @param switchDistances the distances in meters at which the next coarser level is used, in
+   *     increasing order
+   */
+  public LodSelector(Camera camera, float... switchDistances) {
+    this.camera = camera;
+    this.switchDistances = switchDistances;
+  }
+
+  /**
+   * Shows the full detail model on the node and switches it from now on.
+   *
+   * @param modelLevels the model at every level of detail, full detail first
+   */
+  public void addModel(Node node, ModelRenderable[] modelLevels) {
+    int index = nodes.size();
+    nodes.add(node);
+    levels.add(modelLevels);
+    if (index == currentLevels.length) {
+      currentLevels = Arrays.copyOf(currentLevels, Math.max(4, index * 2));
+    }
+    currentLevels[index] = 0;
+    node.setRenderable(modelLevels[0]);
+  }
+
+  /** Sets whether every level of every model casts shadows. */
+  public void setShadowCaster(boolean shadowCaster) {
+    for (int i = 0; i < levels.size(); i++) {
+      for (ModelRenderable level : levels.get(i)) {
+        level.setShadowCaster(shadowCaster);
+      }
+    }
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    Vector3 cameraPosition = camera.getWorldPosition();
+    for (int i = 0; i < nodes.size(); i++) {
+      Node node = nodes.get(i);
+      if (!node.isActive()) {
+        continue;
+      }
+      Vector3 position = node.getWorldPosition();
+      float dx = position.x - cameraPosition.x;
+      float dy = position.y - cameraPosition.y;
+      float dz = position.z - cameraPosition.z;
+      float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+      ModelRenderable[] modelLevels = levels.get(i);
+      int maximumLevel = Math.min(modelLevels.length - 1, switchDistances.length);
+      int level = Math.min(currentLevels[i], maximumLevel);
+      while (level < maximumLevel && distance > switchDistances[level] * (1 + HYSTERESIS)) {
+        level++;
+      }
+      while (level > 0 && distance < switchDistances[level - 1] * (1 - HYSTERESIS)) {
+        level--;
+      }
+      if (level != currentLevels[i]) {
+        currentLevels[i] = level;
+        node.setRenderable(modelLevels[level]);
+        swapCount++;
+      }
+    }
+  }
+
+  /** Returns how many models currently show the given level. */
+  public int getModelCount(int level) {
+    int count = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      if (currentLevels[i] == level) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("LodSelector: models per level");
+    for (int level = 0; level <= switchDistances.length; level++) {
+      result.append(level == 0 ? " " : "/").append(getModelCount(level));
+    }
+    return result.append(", ").append(swapCount).append(" swaps").toString();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.content.Context;
+import android.widget.SeekBar;
+import android.widget.SeekBar.OnSeekBarChangeListener;
+import android.widget.ToggleButton;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.ViewRenderable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * A single material options menu shared by all models.
+ *
+ * <p>The menu's view is only inflated the first time a model is tapped. After that the same menu
+ * node is moved to whichever model was tapped and its controls are rebound to that model's
+ * material, so the cost of placing models doesn't depend on how many of them there are.
+ */
+public class MaterialMenu {
+
+  private static final int MAXIMUM_MATERIAL_PROPERTY_VALUE = 100;
+  private static final Vector3 MENU_SCALE = new Vector3(.65f, .65f, .5f);
+  private static final String METALLIC_FACTOR = "metallicFactor";
+  private static final String ROUGHNESS_FACTOR = "roughnessFactor";
+
+  private final Context context;
+  private final LightingState lightingState;
+  private final Vector3 localPosition;
+  private final Consumer<Throwable> errorHandler;
+  private final Node menuNode = new Node();
+  // Metallic and roughness factors of each model the menu was opened on.
+  private final Map<Node, float[]> materialValues = new HashMap<>();
+
+  private ViewRenderable viewRenderable;
+  private ToggleButton metallicButton;
+  private SeekBar roughnessBar;
+  private boolean isCreating;
+  private boolean isBinding;
+  private Node boundModel;
+
+  /**
+   * @param localPosition the position of the menu relative to the model it is shown on
+   * @param errorHandler called if the menu can't be created
+   */
+  public MaterialMenu(
+      Context context,
+      LightingState lightingState,
+      Vector3 localPosition,
+      Consumer<Throwable> errorHandler) {
+    this.context = context;
+    this.lightingState = lightingState;
+    this.localPosition = localPosition;
+    this.errorHandler = errorHandler;
+  }
+
+  /** Shows the menu on the model, or hides it if it is already showing there. */
+  public void toggle(Node model) {
+    if (boundModel == model && menuNode.isEnabled()) {
+      menuNode.setEnabled(false);
+      return;
+    }
+    boundModel = model;
+    if (viewRenderable == null) {
+      create();
+      return;
+    }
+    showOn(model);
+  }
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  private void create() {
+    if (isCreating) {
+      return;
+    }
+    isCreating = true;
+    ViewRenderable.builder()
+        .setView(context, R.layout.material_options_view)
+        .build()
+        .thenAccept(
+            renderable -> {
+              viewRenderable = renderable;
+              menuNode.setRenderable(renderable);
+              setUpControls();
+              showOn(boundModel);
+            })
+        .exceptionally(
+            throwable -> {
+              isCreating = false;
+              errorHandler.accept(throwable);
+              throw new CompletionException(throwable);
+            });
+  }
+
+  private void setUpControls() {
+    metallicButton = (ToggleButton) viewRenderable.getView().findViewById(R.id.metallic_button);
+    metallicButton.setOnCheckedChangeListener(
+        (buttonView, isChecked) -> setMaterialValue(0, METALLIC_FACTOR, isChecked ? 1f : 0f));
+
+    roughnessBar = (SeekBar) viewRenderable.getView().findViewById(R.id.roughness_slider);
+    roughnessBar.setMax(MAXIMUM_MATERIAL_PROPERTY_VALUE);
+    roughnessBar.setOnSeekBarChangeListener(
+        new OnSeekBarChangeListener() {
+          @Override
+          public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+            float newValue = progress / (float) MAXIMUM_MATERIAL_PROPERTY_VALUE;
+            setMaterialValue(1, ROUGHNESS_FACTOR, newValue);
+          }
+
+          @Override
+          public void onStartTrackingTouch(SeekBar seekBar) {}
+
+          @Override
+          public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+  }
+
+  private void showOn(Node model) {
+    menuNode.setParent(model);
+    menuNode.setLocalPosition(localPosition);
+    menuNode.setWorldScale(MENU_SCALE);
+    menuNode.setEnabled(true);
+
+    // Models start fully metallic and fully rough.
+    float[] values = materialValues.get(model);
+    if (values == null) {
+      values = new float[] {1f, 1f};
+      materialValues.put(model, values);
+    }
+    isBinding = true;
+    metallicButton.setChecked(values[0] > 0);
+    roughnessBar.setProgress(Math.round(values[1] * MAXIMUM_MATERIAL_PROPERTY_VALUE));
+    isBinding = false;
+  }
+
+  private void setMaterialValue(int index, String propertyName, float value) {
+    if (isBinding || boundModel == null) {
+      return;
+    }
+    materialValues.get(boundModel)[index] = value;
+    Material material = boundModel.getRenderable().getMaterial();
+    lightingState.setMaterialValue(material, propertyName, value);
+  }
+}
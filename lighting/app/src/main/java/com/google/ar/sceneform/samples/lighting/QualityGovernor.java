@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+/**
+ * Lowers rendering quality when frames take longer than a budget, and restores it once there is
+ * headroom again.
+ *
+ * <p>Decisions are made on the mean frame time of a full window of frames. After each change the
+ * window starts over, so the effect of the change is measured before the next decision. Quality is
+ * only raised again after several consecutive windows with headroom, which keeps the governor from
+ * oscillating between two levels.
+ *
+ * <p>A window has headroom when its frames take well below the budget. Frame intervals measured on
+ * the display never get there, since they are locked to vsync and never shorter than the refresh
+ * interval, so a governor made with {@link #forRefreshRate(float, int)} also counts a window in
+ * which no frame missed a refresh as headroom.
+ *
+ * <p>This class has no Android dependencies, so its decisions can be checked with synthetic frame
+ * time series.
+ */
+public class QualityGovernor {
+
+  /** Quality levels, from best to cheapest. Every level includes the reductions of the previous. */
+  public enum Level {
+    FULL,
+    NO_SHADOWS,
+    REDUCED_LIGHTS,
+    REDUCED_ORBIT_RATE
+  }
+
+  /** Notified whenever the quality level changes. */
+  public interface OnLevelChangedListener {
+    void onLevelChanged(Level previousLevel, Level newLevel);
+  }
+
+  // Quality is raised only when frames take less than this fraction of the budget.
+  private static final float HEADROOM_RATIO = 0.75f;
+  private static final int WINDOWS_BEFORE_STEP_UP = 3;
+  // Frames may take this much longer than the refresh interval on average, so that vsync jitter and
+  // the odd late frame don't count as missing the display rate.
+  private static final float REFRESH_INTERVAL_SLACK = 1.1f;
+  // A frame longer than this many refresh intervals missed at least one refresh.
+  private static final float MISSED_REFRESH_RATIO = 1.5f;
+
+  private final float budgetMillis;
+  // The refresh interval frames are locked to, or 0 if they aren't.
+  private final float refreshIntervalMillis;
+  private final int windowSize;
+  private OnLevelChangedListener listener;
+
+  private Level level = Level.FULL;
+  private float windowSumMillis;
+  private int windowCount;
+  private int windowMissedRefreshes;
+  private int windowsWithHeadroom;
+  private int transitionCount;
+
+  /**
+   * @param budgetMillis the frame time to stay under
+   * @param windowSize the number of frames averaged for each decision
+   */
+  public QualityGovernor(float budgetMillis, int windowSize) {
+    this(budgetMillis, 0, windowSize);
+  }
+
+  private QualityGovernor(float budgetMillis, float refreshIntervalMillis, int windowSize) {
+    this.budgetMillis = budgetMillis;
+    this.refreshIntervalMillis = refreshIntervalMillis;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Creates a governor that protects the display refresh rate, since the scene renders once per
+   * refresh and not at the rate of the camera.
+   *
+   * @param refreshRateHz the refresh rate of the display, e.g. from {@code
+   *     Display.getRefreshRate()}
+   * @param windowSize the number of frames averaged for each decision
+   */
+  public static QualityGovernor forRefreshRate(float refreshRateHz, int windowSize) {
+    float refreshIntervalMillis = 1000f / refreshRateHz;
+    return new QualityGovernor(
+        refreshIntervalMillis * REFRESH_INTERVAL_SLACK, refreshIntervalMillis, windowSize);
+  }
+
+  public void setOnLevelChangedListener(OnLevelChangedListener listener) {
+    this.listener = listener;
+  }
+
+  /** Records the duration of one frame and returns the quality level to render the next with. */
+  public Level record(float frameTimeMillis) {
+    windowSumMillis += frameTimeMillis;
+    windowCount++;
+    if (refreshIntervalMillis > 0
+        && frameTimeMillis > refreshIntervalMillis * MISSED_REFRESH_RATIO) {
+      windowMissedRefreshes++;
+    }
+    if (windowCount < windowSize) {
+      return level;
+    }
+
+    float meanMillis = windowSumMillis / windowCount;
+    boolean hasHeadroom =
+        meanMillis < budgetMillis * HEADROOM_RATIO
+            || (refreshIntervalMillis > 0 && windowMissedRefreshes == 0);
+    windowSumMillis = 0;
+    windowCount = 0;
+    windowMissedRefreshes = 0;
+    Level[] levels = Level.values();
+    if (meanMillis > budgetMillis) {
+      windowsWithHeadroom = 0;
+      if (level.ordinal() < levels.length - 1) {
+        setLevel(levels[level.ordinal() + 1]);
+      }
+    } else if (hasHeadroom) {
+      windowsWithHeadroom++;
+      if (windowsWithHeadroom >= WINDOWS_BEFORE_STEP_UP && level.ordinal() > 0) {
+        windowsWithHeadroom = 0;
+        setLevel(levels[level.ordinal() - 1]);
+      }
+    } else {
+      windowsWithHeadroom = 0;
+    }
+    return level;
+  }
+
+  private void setLevel(Level newLevel) {
+    Level previousLevel = level;
+    level = newLevel;
+    transitionCount++;
+    if (listener != null) {
+      listener.onLevelChanged(previousLevel, newLevel);
+    }
+  }
+
+  /** Goes back to full quality and starts a new window, e.g. before measuring a fixed scene. */
+  public void reset() {
+    windowSumMillis = 0;
+    windowCount = 0;
+    windowMissedRefreshes = 0;
+    windowsWithHeadroom = 0;
+    if (level != Level.FULL) {
+      setLevel(Level.FULL);
+    }
+  }
+
+  public Level getLevel() {
+    return level;
+  }
+
+  /** Returns true if the current level includes the reductions of {@code other}. */
+  public boolean isAtLeast(Level other) {
+    return level.compareTo(other) >= 0;
+  }
+
+  public int getTransitionCount() {
+    return transitionCount;
+  }
+
+  public float getBudgetMillis() {
+    return budgetMillis;
+  }
+}
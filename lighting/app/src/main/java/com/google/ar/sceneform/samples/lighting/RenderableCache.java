@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.content.Context;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ShapeFactory;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads the renderables used by the lighting scene ahead of time and hands out copies of them.
+ *
+ * <p>Sceneform reads and decodes the model source on its own background threads, so preloading
+ * starts that work as early as possible and {@link #isReady()} tells whether placing the scene
+ * would still have to wait. The first few copies of the model are made while loading, so the
+ * models of the regular scene don't pay for the copy when it is placed. The scene is only moved
+ * once placed and never torn down, so copies aren't returned to the cache. The lower detail
+ * variants of the model generated by the build are loaded too, for models that are switched by a
+ * {@link LodSelector}.
+ */
+public class RenderableCache {
+
+  private static final int PREWARMED_MODEL_COPIES = 2;
+  // The model at full detail first, then the variants with fewer triangles and smaller textures.
+  private static final int[] MODEL_LEVEL_SOURCES = {
+    R.raw.shader_d, R.raw.shader_d_lod1, R.raw.shader_d_lod2
+  };
+
+  private final Context context;
+  private final ArrayDeque<ModelRenderable> prewarmedModels = new ArrayDeque<>();
+  private final ModelRenderable[] modelLevels = new ModelRenderable[MODEL_LEVEL_SOURCES.length];
+  private ModelRenderable model;
+  private ModelRenderable boxRenderable;
+  private CompletableFuture<Void> readyFuture;
+
+  public RenderableCache(Context context) {
+    this.context = context;
+  }
+
+  /**
+   * Starts loading the model and creating the box. Calling this again returns the same future.
+   *
+   * @return a future that completes on the main thread once every renderable is ready
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public CompletableFuture<Void> preload(Vector3 boxSize, Color boxColor) {
+    if (readyFuture != null) {
+      return readyFuture;
+    }
+    CompletableFuture<Void> modelFuture =
+        ModelRenderable.builder()
+            .setSource(context, R.raw.shader_d)
+            .build()
+            .thenAccept(
+                modelRenderable -> {
+                  model = modelRenderable;
+                  modelLevels[0] = modelRenderable;
+                  for (int i = 0; i < PREWARMED_MODEL_COPIES; i++) {
+                    prewarmedModels.add(modelRenderable.makeCopy());
+                  }
+                });
+    CompletableFuture<Void> boxFuture =
+        MaterialFactory.makeOpaqueWithColor(context, boxColor)
+            .thenAccept(
+                material ->
+                    boxRenderable =
+                        ShapeFactory.makeCube(
+                            boxSize, new Vector3(0, boxSize.y / 2, 0), material.makeCopy()));
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[MODEL_LEVEL_SOURCES.length + 1];
+    futures[0] = boxFuture;
+    futures[1] = modelFuture;
+    for (int level = 1; level < MODEL_LEVEL_SOURCES.length; level++) {
+      int index = level;
+      futures[level + 1] =
+          ModelRenderable.builder()
+              .setSource(context, MODEL_LEVEL_SOURCES[level])
+              .build()
+              .thenAccept(modelRenderable -> modelLevels[index] = modelRenderable);
+    }
+    readyFuture = CompletableFuture.allOf(futures);
+    return readyFuture;
+  }
+
+  public boolean isReady() {
+    return readyFuture != null && readyFuture.isDone() && !readyFuture.isCompletedExceptionally();
+  }
+
+  /** Returns a copy of the model with its own material instance. */
+  public ModelRenderable obtainModel() {
+    if (!isReady()) {
+      throw new IllegalStateException("Renderables are not loaded yet.");
+    }
+    ModelRenderable copy = prewarmedModels.poll();
+    return copy != null ? copy : model.makeCopy();
+  }
+
+  /**
+   * Returns a copy of every level of detail of the model, the full detail model first. The levels
+   * share the material instances of the full detail copy, so that parameters set on the model's
+   * material stay in effect when a {@link LodSelector} switches its level. The coarser levels
+   * therefore sample the full size textures, mipmapping keeps that cheap at their distances.
+   */
+  public ModelRenderable[] obtainModelLevels() {
+    ModelRenderable[] levels = new ModelRenderable[modelLevels.length];
+    levels[0] = obtainModel();
+    for (int level = 1; level < levels.length; level++) {
+      levels[level] = modelLevels[level].makeCopy();
+      int submeshCount = Math.min(levels[0].getSubmeshCount(), levels[level].getSubmeshCount());
+      for (int submesh = 0; submesh < submeshCount; submesh++) {
+        levels[level].setMaterial(submesh, levels[0].getMaterial(submesh));
+      }
+    }
+    return levels;
+  }
+
+  public ModelRenderable getBoxRenderable() {
+    if (!isReady()) {
+      throw new IllegalStateException("Renderables are not loaded yet.");
+    }
+    return boxRenderable;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+
+/**
+ * Decides where the scene is anchored. Taps are hit tested against the planes of a {@link
+ * FrameSource}; the first hit places the scene and later hits move it. Hits that come in before
+ * the assets are ready are remembered, and the scene is placed at the latest of them once they are.
+ */
+public class ScenePlacer {
+
+  /** Builds the scene under the node it is anchored to. */
+  public interface Listener {
+    void onPlace(AnchorNode anchorNode);
+  }
+
+  private final FrameSource frameSource;
+  private final Listener listener;
+  private AnchorNode anchorNode;
+  private AnchorNode pendingAnchorNode;
+  private boolean ready;
+
+  public ScenePlacer(FrameSource frameSource, Listener listener) {
+    this.frameSource = frameSource;
+    this.listener = listener;
+  }
+
+  /**
+   * Places or moves the scene where the ray through the given screen point hits a plane.
+   *
+   * @return false if the ray doesn't hit a plane
+   */
+  public boolean onTap(float x, float y) {
+    Pose hitPose = frameSource.hitTestPlane(x, y);
+    if (hitPose == null) {
+      return false;
+    }
+    placeAt(hitPose);
+    return true;
+  }
+
+  /** Places or moves the scene to the given world pose. */
+  public void placeAt(Pose pose) {
+    AnchorNode newAnchorNode = frameSource.createAnchorNode(pose);
+    if (anchorNode != null) {
+      // The scene is already built, we just need to reposition where it's anchored.
+      detachAnchor(anchorNode);
+      Anchor newAnchor = newAnchorNode.getAnchor();
+      anchorNode.setAnchor(newAnchor);
+      if (newAnchor == null) {
+        anchorNode.setWorldPosition(newAnchorNode.getWorldPosition());
+        anchorNode.setWorldRotation(newAnchorNode.getWorldRotation());
+      }
+    } else if (!ready) {
+      if (pendingAnchorNode != null) {
+        detachAnchor(pendingAnchorNode);
+      }
+      pendingAnchorNode = newAnchorNode;
+    } else {
+      place(newAnchorNode);
+    }
+  }
+
+  /** Tells the placer that the scene can be built, placing it if there was a hit already. */
+  public void setReady() {
+    ready = true;
+    if (pendingAnchorNode != null && anchorNode == null) {
+      AnchorNode newAnchorNode = pendingAnchorNode;
+      pendingAnchorNode = null;
+      place(newAnchorNode);
+    }
+  }
+
+  /** Returns true if the scene was placed or will be as soon as it is ready. */
+  public boolean hasPlacement() {
+    return anchorNode != null || pendingAnchorNode != null;
+  }
+
+  /** Returns the node the scene is anchored to, or null if it isn't placed yet. */
+  public AnchorNode getAnchorNode() {
+    return anchorNode;
+  }
+
+  private void place(AnchorNode newAnchorNode) {
+    anchorNode = newAnchorNode;
+    listener.onPlace(anchorNode);
+  }
+
+  private static void detachAnchor(AnchorNode node) {
+    Anchor anchor = node.getAnchor();
+    if (anchor != null) {
+      anchor.detach();
+    }
+  }
+}
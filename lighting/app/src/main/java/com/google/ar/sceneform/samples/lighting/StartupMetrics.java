@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+
+/**
+ * Records how long it takes until the user sees something: process start and activity creation to
+ * the first rendered frame, to the assets being ready, and from the tap that places the scene to
+ * the first frame that shows it. All times are logged in milliseconds.
+ */
+public class StartupMetrics implements Scene.OnUpdateListener {
+
+  private static final String TAG = StartupMetrics.class.getSimpleName();
+
+  private final long processStartMillis = Process.getStartElapsedRealtime();
+  private long activityCreatedMillis;
+  private long firstFrameMillis;
+  private long assetsReadyMillis;
+  private long tapMillis;
+  private boolean placementPending;
+
+  public void markActivityCreated() {
+    activityCreatedMillis = SystemClock.elapsedRealtime();
+  }
+
+  public void markAssetsReady() {
+    assetsReadyMillis = SystemClock.elapsedRealtime();
+    Log.i(
+        TAG,
+        String.format(
+            "Assets ready: %dms after process start, %dms after onCreate",
+            assetsReadyMillis - processStartMillis, assetsReadyMillis - activityCreatedMillis));
+  }
+
+  /** Called for the tap that places the scene. Only the first tap is measured. */
+  public void markTap() {
+    if (tapMillis == 0) {
+      tapMillis = SystemClock.elapsedRealtime();
+    }
+  }
+
+  /** Called once the placed nodes are in the scene; the next frame is the one that shows them. */
+  public void markPlaced() {
+    placementPending = tapMillis != 0;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    long now = SystemClock.elapsedRealtime();
+    if (firstFrameMillis == 0) {
+      firstFrameMillis = now;
+      Log.i(
+          TAG,
+          String.format(
+              "First frame: %dms after process start, %dms after onCreate",
+              firstFrameMillis - processStartMillis, firstFrameMillis - activityCreatedMillis));
+    }
+    if (placementPending) {
+      placementPending = false;
+      Log.i(TAG, String.format("Tap to visible: %dms", now - tapMillis));
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+import java.util.ArrayList;
+
+/**
+ * Runs startup work in two classes: critical tasks run immediately because the first frame needs
+ * them, deferrable tasks wait until the first frame has been rendered or the main thread is idle.
+ *
+ * <p>Deferrable tasks run one at a time, at most one per frame or idle callback, in the order in
+ * which they were added. A task that is needed earlier, e.g. because the user opened a menu it sets
+ * up, can be forced with {@link #ensureRun(String)}. The duration of every task is logged together
+ * with whether it ran on the critical path.
+ *
+ * <p>Must be used on the main thread. Register it as a scene update listener and call {@link
+ * #start()} at the end of {@code onCreate}.
+ */
+public class StartupScheduler implements Scene.OnUpdateListener, MessageQueue.IdleHandler {
+
+  private static final String TAG = StartupScheduler.class.getSimpleName();
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private final long createdNanos = System.nanoTime();
+  private final ArrayList<Task> pendingTasks = new ArrayList<>();
+  private final ArrayList<Task> finishedTasks = new ArrayList<>();
+  private int frameCount;
+
+  private static class Task {
+    final String name;
+    final Runnable runnable;
+    final boolean critical;
+    long startNanos;
+    long durationNanos;
+
+    Task(String name, Runnable runnable, boolean critical) {
+      this.name = name;
+      this.runnable = runnable;
+      this.critical = critical;
+    }
+  }
+
+  /** Runs a task that has to finish before the first frame. */
+  public void runCritical(String name, Runnable runnable) {
+    run(new Task(name, runnable, true));
+  }
+
+  /** Queues a task that can wait until the first frame is on screen. */
+  public void addDeferrable(String name, Runnable runnable) {
+    pendingTasks.add(new Task(name, runnable, false));
+  }
+
+  /** Starts running deferrable tasks whenever the main thread becomes idle. */
+  public void start() {
+    Looper.myQueue().addIdleHandler(this);
+  }
+
+  /** Runs the named deferrable task now unless it already ran. */
+  public void ensureRun(String name) {
+    for (int i = 0; i < pendingTasks.size(); i++) {
+      if (pendingTasks.get(i).name.equals(name)) {
+        run(pendingTasks.remove(i));
+        return;
+      }
+    }
+  }
+
+  public boolean hasPendingTasks() {
+    return !pendingTasks.isEmpty();
+  }
+
+  // The first update comes before the first frame is drawn, so deferred work starts on the second.
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (++frameCount > 1 && !pendingTasks.isEmpty()) {
+      run(pendingTasks.remove(0));
+    }
+  }
+
+  @Override
+  public boolean queueIdle() {
+    if (!pendingTasks.isEmpty()) {
+      run(pendingTasks.remove(0));
+    }
+    return !pendingTasks.isEmpty();
+  }
+
+  private void run(Task task) {
+    task.startNanos = System.nanoTime();
+    task.runnable.run();
+    task.durationNanos = System.nanoTime() - task.startNanos;
+    finishedTasks.add(task);
+    Log.i(
+        TAG,
+        String.format(
+            "%s task %s: started %dms after creation, took %.2fms",
+            task.critical ? "Critical" : "Deferred",
+            task.name,
+            (task.startNanos - createdNanos) / NANOS_PER_MILLI,
+            (float) task.durationNanos / NANOS_PER_MILLI));
+    if (!task.critical && pendingTasks.isEmpty()) {
+      Log.i(TAG, toString());
+    }
+  }
+
+  /** Returns the total time spent in critical tasks, the startup cost the first frame waits for. */
+  public float getCriticalMillis() {
+    long totalNanos = 0;
+    for (Task task : finishedTasks) {
+      if (task.critical) {
+        totalNanos += task.durationNanos;
+      }
+    }
+    return (float) totalNanos / NANOS_PER_MILLI;
+  }
+
+  /** Returns the total time spent in deferrable tasks that have run so far. */
+  public float getDeferredMillis() {
+    long totalNanos = 0;
+    for (Task task : finishedTasks) {
+      if (!task.critical) {
+        totalNanos += task.durationNanos;
+      }
+    }
+    return (float) totalNanos / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d tasks run, critical path %.2fms, deferred %.2fms, %d tasks pending",
+        TAG, finishedTasks.size(), getCriticalMillis(), getDeferredMillis(), pendingTasks.size());
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.content.Intent;
+
+/**
+ * Configuration of the lighting stress mode, read from the launch intent. For example:
+ *
+ * <pre>
+ * adb shell am start -n com.google.ar.sceneform.samples.lighting/.LightingActivity \
+ *     --ei stress_rows 10 --ei stress_columns 10 --ei stress_lights 32 --ez stress_shadows false
+ * </pre>
+ *
+ * <p>With {@code --ez stress_animated true} the lights also change color, intensity, falloff and
+ * orbit speed over time, {@code --ez stress_lod false} keeps every model at full detail and {@code
+ * --ez stress_culling false} keeps every light on instead of culling the ones that light nothing on
+ * screen, so that frame times only depend on the configuration.
+ */
+public class StressConfig {
+
+  static final String EXTRA_ROWS = "stress_rows";
+  static final String EXTRA_COLUMNS = "stress_columns";
+  static final String EXTRA_LIGHTS = "stress_lights";
+  static final String EXTRA_SHADOWS = "stress_shadows";
+  static final String EXTRA_ANIMATED = "stress_animated";
+  static final String EXTRA_LOD = "stress_lod";
+  static final String EXTRA_CULLING = "stress_culling";
+
+  private final int rows;
+  private final int columns;
+  private final int lights;
+  private final boolean shadowsEnabled;
+  private final boolean animated;
+  private final boolean lodEnabled;
+  private final boolean cullingEnabled;
+
+  public StressConfig(
+      int rows,
+      int columns,
+      int lights,
+      boolean shadowsEnabled,
+      boolean animated,
+      boolean lodEnabled,
+      boolean cullingEnabled) {
+    this.rows = rows;
+    this.columns = columns;
+    this.lights = lights;
+    this.shadowsEnabled = shadowsEnabled;
+    this.animated = animated;
+    this.lodEnabled = lodEnabled;
+    this.cullingEnabled = cullingEnabled;
+  }
+
+  /** Returns the stress configuration of the intent, or null if it doesn't request stress mode. */
+  public static StressConfig fromIntent(Intent intent) {
+    if (intent == null || !intent.hasExtra(EXTRA_ROWS)) {
+      return null;
+    }
+    return new StressConfig(
+        Math.max(1, intent.getIntExtra(EXTRA_ROWS, 1)),
+        Math.max(1, intent.getIntExtra(EXTRA_COLUMNS, 1)),
+        Math.max(0, intent.getIntExtra(EXTRA_LIGHTS, 0)),
+        intent.getBooleanExtra(EXTRA_SHADOWS, true),
+        intent.getBooleanExtra(EXTRA_ANIMATED, false),
+        intent.getBooleanExtra(EXTRA_LOD, true),
+        intent.getBooleanExtra(EXTRA_CULLING, true));
+  }
+
+  public int getRows() {
+    return rows;
+  }
+
+  public int getColumns() {
+    return columns;
+  }
+
+  public int getLights() {
+    return lights;
+  }
+
+  public boolean isShadowsEnabled() {
+    return shadowsEnabled;
+  }
+
+  public boolean isAnimated() {
+    return animated;
+  }
+
+  public boolean isLodEnabled() {
+    return lodEnabled;
+  }
+
+  public boolean isCullingEnabled() {
+    return cullingEnabled;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%dx%d models, %d %s lights, shadows %s, lod %s, culling %s",
+        rows,
+        columns,
+        lights,
+        animated ? "animated" : "static",
+        shadowsEnabled ? "on" : "off",
+        lodEnabled ? "on" : "off",
+        cullingEnabled ? "on" : "off");
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import android.util.Log;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Light;
+import com.google.ar.sceneform.rendering.Light.Type;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+
+/**
+ * Places a grid of models and a set of orbiting point lights described by a {@link StressConfig},
+ * then logs frame time percentiles for that configuration at regular intervals. The scene is built
+ * over several frames through a {@link FrameScheduler}. Animated lights are driven by a {@link
+ * LightAnimator}, which also reports its own CPU time per frame. Models far from the camera are
+ * switched to lower levels of detail by a {@link LodSelector}.
+ *
+ * <p>Relevance culling can be turned off with the configuration. Either way, every report states
+ * whether it was on and how many lights were active on average, so that culling effects aren't
+ * mistaken for the cost of the configuration.
+ */
+public class StressScene implements Scene.OnUpdateListener {
+
+  private static final String TAG = StressScene.class.getSimpleName();
+  private static final float MODEL_SPACING_METERS = 0.25f;
+  private static final float LIGHT_HEIGHT_METERS = 0.3f;
+  private static final float LIGHT_INTENSITY = 2500;
+  private static final float LIGHT_FALLOFF_RADIUS = .5f;
+  private static final float GOLDEN_ANGLE_RADIANS = (float) (Math.PI * (3 - Math.sqrt(5)));
+  private static final int WARM_UP_FRAMES = 60;
+  private static final int FRAMES_PER_REPORT = 300;
+  // Past these distances in meters the models use the first and second lower level of detail.
+  private static final float[] LOD_SWITCH_DISTANCES = {0.8f, 1.6f};
+  private static final String TASK_PLACE = "stress scene";
+
+  private final StressConfig config;
+  private final RenderableCache renderableCache;
+  private final LightOrbitController orbitController;
+  private final FrameTimeRecorder frameTimeRecorder = new FrameTimeRecorder(FRAMES_PER_REPORT);
+  private final FrameTimeRecorder animationTimeRecorder =
+      new FrameTimeRecorder(FRAMES_PER_REPORT);
+  private LightAnimator lightAnimator;
+  private LodSelector lodSelector;
+  private int skippedFrames;
+  private long activeLightSum;
+
+  // Placement state, see place().
+  private AnchorNode anchorNode;
+  private LightRelevanceManager lightRelevanceManager;
+  private Light.Builder lightBuilder;
+  private float halfWidth;
+  private float halfDepth;
+  private int placedModels;
+  private int placedLights;
+  private boolean isPlaced;
+
+  public StressScene(
+      StressConfig config, RenderableCache renderableCache, LightOrbitController orbitController) {
+    this.config = config;
+    this.renderableCache = renderableCache;
+    this.orbitController = orbitController;
+  }
+
+  /**
+   * Builds the stress scene under the anchor one model or light per slice of the frame scheduler,
+   * so that a large grid doesn't stall the frames it is built in. The renderable cache must be
+   * ready. Frame times are only recorded once the scene is complete.
+   */
+  public void place(
+      AnchorNode anchorNode,
+      LightRelevanceManager lightRelevanceManager,
+      FrameScheduler frameScheduler) {
+    this.anchorNode = anchorNode;
+    this.lightRelevanceManager = lightRelevanceManager;
+    lightRelevanceManager.setCullingEnabled(config.isCullingEnabled());
+    halfWidth = (config.getColumns() - 1) * MODEL_SPACING_METERS / 2;
+    halfDepth = (config.getRows() - 1) * MODEL_SPACING_METERS / 2;
+    if (config.isLodEnabled()) {
+      lodSelector = new LodSelector(anchorNode.getScene().getCamera(), LOD_SWITCH_DISTANCES);
+    }
+    if (config.isAnimated()) {
+      lightAnimator = createLightShow();
+    }
+    lightBuilder =
+        Light.builder(Type.POINT)
+            .setFalloffRadius(LIGHT_FALLOFF_RADIUS)
+            .setShadowCastingEnabled(false)
+            .setIntensity(LIGHT_INTENSITY);
+    frameScheduler.post(TASK_PLACE, FrameScheduler.PRIORITY_NORMAL, this::placeNext);
+  }
+
+  // Places the next model, or once all models are placed the next light.
+  private FrameScheduler.SliceResult placeNext() {
+    int modelCount = config.getRows() * config.getColumns();
+    if (placedModels < modelCount) {
+      placeModel(placedModels / config.getColumns(), placedModels % config.getColumns());
+      placedModels++;
+      return FrameScheduler.SliceResult.CONTINUE;
+    }
+    if (placedLights < config.getLights()) {
+      placeLight(placedLights++);
+      return FrameScheduler.SliceResult.CONTINUE;
+    }
+    if (lodSelector != null) {
+      lodSelector.setShadowCaster(config.isShadowsEnabled());
+    }
+    lightRelevanceManager.setMaximumActiveLights(config.getLights());
+    lightRelevanceManager.setRequestedLightCount(config.getLights());
+    isPlaced = true;
+    Log.i(TAG, "Placed stress scene: " + config);
+    return FrameScheduler.SliceResult.DONE;
+  }
+
+  private void placeModel(int row, int column) {
+    Node modelNode = new Node();
+    modelNode.setParent(anchorNode);
+    if (lodSelector != null) {
+      lodSelector.addModel(modelNode, renderableCache.obtainModelLevels());
+    } else {
+      ModelRenderable model = renderableCache.obtainModel();
+      model.setShadowCaster(config.isShadowsEnabled());
+      modelNode.setRenderable(model);
+    }
+    modelNode.setLocalPosition(
+        new Vector3(
+            column * MODEL_SPACING_METERS - halfWidth, 0, row * MODEL_SPACING_METERS - halfDepth));
+    lightRelevanceManager.addReceiver(modelNode);
+  }
+
+  // Spreads the lights evenly over the grid on a sunflower spiral, they orbit its center.
+  private void placeLight(int i) {
+    float radius = (float) Math.hypot(halfWidth, halfDepth) + MODEL_SPACING_METERS / 2;
+    lightBuilder.setColor(ColorConfig.getColor(ColorConfig.Type.MIXED, i));
+    float distance = radius * (float) Math.sqrt((i + .5f) / config.getLights());
+    float angle = i * GOLDEN_ANGLE_RADIANS;
+
+    Node orbit = new Node();
+    orbit.setParent(anchorNode);
+    if (lightAnimator == null) {
+      orbitController.addOrbit(orbit, 0.5f + (i % 4) * 0.25f);
+    }
+
+    Node lightNode = new Node();
+    lightNode.setParent(orbit);
+    lightNode.setLocalPosition(
+        new Vector3(
+            distance * (float) Math.cos(angle),
+            LIGHT_HEIGHT_METERS,
+            distance * (float) Math.sin(angle)));
+    lightNode.setLight(lightBuilder.build());
+    lightNode.setEnabled(false);
+    lightRelevanceManager.addLightNode(lightNode);
+    if (lightAnimator != null) {
+      lightAnimator.addLight(orbit, lightNode);
+    }
+  }
+
+  // Cycles through the mixed palette while pulsing, breathing and speeding up and down.
+  private static LightAnimator createLightShow() {
+    ColorConfig.Palette palette = ColorConfig.getPalette(ColorConfig.Type.MIXED);
+    LightAnimator lightAnimator = new LightAnimator();
+    lightAnimator.setColorCurve(
+        palette,
+        new KeyframeCurve(8, false).addKeyframe(0, 0).addKeyframe(8, palette.size()));
+    lightAnimator.setIntensityCurve(
+        LIGHT_INTENSITY,
+        new KeyframeCurve(2, true).addKeyframe(0, .4f).addKeyframe(1, 1).addKeyframe(2, .4f));
+    lightAnimator.setFalloffCurve(
+        LIGHT_FALLOFF_RADIUS,
+        new KeyframeCurve(6, true).addKeyframe(0, .8f).addKeyframe(3, 1.2f).addKeyframe(6, .8f));
+    lightAnimator.setOrbitCurve(
+        90,
+        new KeyframeCurve(10, true)
+            .addKeyframe(0, .25f)
+            .addKeyframe(5, 1.5f)
+            .addKeyframe(10, .25f));
+    return lightAnimator;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (!isPlaced) {
+      return;
+    }
+    long animationStart = System.nanoTime();
+    if (lightAnimator != null) {
+      lightAnimator.onUpdate(frameTime);
+    }
+    float animationMillis = (System.nanoTime() - animationStart) / 1e6f;
+    if (lodSelector != null) {
+      lodSelector.onUpdate(frameTime);
+    }
+    // Skip the first frames after placement, they include one-time setup costs.
+    if (skippedFrames < WARM_UP_FRAMES) {
+      skippedFrames++;
+      return;
+    }
+    frameTimeRecorder.record(frameTime.getDeltaSeconds() * 1000f);
+    animationTimeRecorder.record(animationMillis);
+    activeLightSum += lightRelevanceManager.getActiveLightCount();
+    if (frameTimeRecorder.isFull()) {
+      Log.i(
+          TAG,
+          String.format(
+              "%s: %.1f active lights, p50 %.2fms, p90 %.2fms, p95 %.2fms, p99 %.2fms over %d"
+                  + " frames",
+              config,
+              (float) activeLightSum / frameTimeRecorder.getCount(),
+              frameTimeRecorder.getPercentile(50),
+              frameTimeRecorder.getPercentile(90),
+              frameTimeRecorder.getPercentile(95),
+              frameTimeRecorder.getPercentile(99),
+              frameTimeRecorder.getCount()));
+      if (lightAnimator != null) {
+        Log.i(
+            TAG,
+            String.format(
+                "Animating %d lights: p50 %.3fms, p99 %.3fms",
+                lightAnimator.getLightCount(),
+                animationTimeRecorder.getPercentile(50),
+                animationTimeRecorder.getPercentile(99)));
+      }
+      if (lodSelector != null) {
+        Log.i(TAG, lodSelector.toString());
+      }
+      frameTimeRecorder.reset();
+      animationTimeRecorder.reset();
+      activeLightSum = 0;
+    }
+  }
+}
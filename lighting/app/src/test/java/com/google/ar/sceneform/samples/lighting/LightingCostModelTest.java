@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Fits {@link LightingCostModel} to synthetic benchmark results with known costs. */
+@RunWith(JUnit4.class)
+public class LightingCostModelTest {
+
+  private static final double BASE_MILLIS = 11.5;
+  private static final double PER_LIGHT_MILLIS = 0.8;
+  private static final double SHADOW_MILLIS = 2.5;
+  private static final double PER_SHADOWED_LIGHT_MILLIS = 0.35;
+  private static final int MAXIMUM_LIGHTS = 8;
+  // The header the lighting benchmark in src/androidTest writes.
+  private static final String CSV_HEADER =
+      "lights,shadows,intensity,orbit_speed,frames,p50_ms,p95_ms,p99_ms";
+
+  @Test
+  public void fit_exactSamples_recoversCosts() {
+    LightingCostModel model = fitSynthetic(0, 1);
+    assertEquals(BASE_MILLIS, model.getBaseMillis(), 1e-9);
+    assertEquals(PER_LIGHT_MILLIS, model.getPerLightMillis(), 1e-9);
+    assertEquals(SHADOW_MILLIS, model.getShadowMillis(), 1e-9);
+    assertEquals(PER_SHADOWED_LIGHT_MILLIS, model.getPerShadowedLightMillis(), 1e-9);
+  }
+
+  @Test
+  public void fit_noisySamples_recoversCostsWithinNoise() {
+    LightingCostModel model = fitSynthetic(0.5, 6);
+    assertEquals(BASE_MILLIS, model.getBaseMillis(), 0.15);
+    assertEquals(PER_LIGHT_MILLIS, model.getPerLightMillis(), 0.03);
+    assertEquals(SHADOW_MILLIS, model.getShadowMillis(), 0.2);
+    assertEquals(PER_SHADOWED_LIGHT_MILLIS, model.getPerShadowedLightMillis(), 0.04);
+    assertEquals(
+        BASE_MILLIS + SHADOW_MILLIS + 4 * (PER_LIGHT_MILLIS + PER_SHADOWED_LIGHT_MILLIS),
+        model.predictMillis(4, true),
+        0.15);
+  }
+
+  @Test
+  public void fit_benchmarkCsv_usesTheRequestedColumn() throws IOException {
+    StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+    for (int lights = 0; lights <= MAXIMUM_LIGHTS; lights++) {
+      for (int shadows = 0; shadows <= 1; shadows++) {
+        double p50 = cost(lights, shadows == 1);
+        csv.append(
+            String.format(
+                Locale.US,
+                "%d,%d,6000,0.50,120,%.3f,%.3f,%.3f\n",
+                lights,
+                shadows,
+                p50,
+                p50 * 2,
+                p50 * 3));
+      }
+    }
+    LightingCostModel p50Model = LightingCostModel.fit(new StringReader(csv.toString()), "p50_ms");
+    LightingCostModel p95Model = LightingCostModel.fit(new StringReader(csv.toString()), "p95_ms");
+    assertEquals(PER_LIGHT_MILLIS, p50Model.getPerLightMillis(), 1e-3);
+    assertEquals(2 * PER_LIGHT_MILLIS, p95Model.getPerLightMillis(), 1e-3);
+  }
+
+  @Test
+  public void affordableLights_fitTheBudget() {
+    LightingCostModel model = fitSynthetic(0, 1);
+    double budgetMillis = 1000.0 / 60;
+    int withoutShadows = model.getAffordableLights(budgetMillis, false);
+    int withShadows = model.getAffordableLights(budgetMillis, true);
+    assertEquals(6, withoutShadows);
+    assertEquals(2, withShadows);
+    assertEquals(-1, model.getAffordableLights(BASE_MILLIS - 1, false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fit_withoutShadowedSamples_isRejected() {
+    int[] lightCounts = {0, 1, 2, 3};
+    boolean[] shadowsEnabled = new boolean[4];
+    double[] frameTimesMillis = {12, 13, 14, 15};
+    LightingCostModel.fit(lightCounts, shadowsEnabled, frameTimesMillis);
+  }
+
+  private static double cost(int lights, boolean shadows) {
+    return BASE_MILLIS
+        + lights * PER_LIGHT_MILLIS
+        + (shadows ? SHADOW_MILLIS + lights * PER_SHADOWED_LIGHT_MILLIS : 0);
+  }
+
+  // Every light count with and without shadows, repeated, with uniform noise of the given size.
+  private static LightingCostModel fitSynthetic(double noiseMillis, int repeats) {
+    Random random = new Random(36);
+    int count = (MAXIMUM_LIGHTS + 1) * 2 * repeats;
+    int[] lightCounts = new int[count];
+    boolean[] shadowsEnabled = new boolean[count];
+    double[] frameTimesMillis = new double[count];
+    int i = 0;
+    for (int repeat = 0; repeat < repeats; repeat++) {
+      for (int lights = 0; lights <= MAXIMUM_LIGHTS; lights++) {
+        for (int shadows = 0; shadows <= 1; shadows++) {
+          lightCounts[i] = lights;
+          shadowsEnabled[i] = shadows == 1;
+          frameTimesMillis[i] =
+              cost(lights, shadows == 1) + (random.nextDouble() * 2 - 1) * noiseMillis;
+          i++;
+        }
+      }
+    }
+    return LightingCostModel.fit(lightCounts, shadowsEnabled, frameTimesMillis);
+  }
+}
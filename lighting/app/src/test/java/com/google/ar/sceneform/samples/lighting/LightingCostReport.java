@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Prints the {@link LightingCostModel} of a CSV written by {@code LightingBenchmark}, on a desktop
+ * JVM with the unit test classpath:
+ *
+ * <pre>
+ * java -cp ... com.google.ar.sceneform.samples.lighting.LightingCostReport \
+ *     lighting_benchmark.csv p95_ms 16.7
+ * </pre>
+ */
+public class LightingCostReport {
+
+  private LightingCostReport() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: LightingCostReport <benchmark.csv> [column] [budget_ms]");
+      System.exit(1);
+    }
+    String column = args.length > 1 ? args[1] : "p50_ms";
+    double budgetMillis = args.length > 2 ? Double.parseDouble(args[2]) : 1000.0 / 60;
+    try (Reader reader = new FileReader(args[0])) {
+      LightingCostModel model = LightingCostModel.fit(reader, column);
+      System.out.println(column + ": " + model);
+      System.out.println(
+          String.format(
+              "Lights within %.1fms: %d without shadows, %d with shadows",
+              budgetMillis,
+              model.getAffordableLights(budgetMillis, false),
+              model.getAffordableLights(budgetMillis, true)));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.samples.lighting.QualityGovernor.Level;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Feeds {@link QualityGovernor} synthetic frame time series. */
+@RunWith(JUnit4.class)
+public class QualityGovernorTest {
+
+  private static final int WINDOW = 30;
+
+  @Test
+  public void steadyFramesUnderBudget_keepFullQuality() {
+    QualityGovernor governor = new QualityGovernor(16f, WINDOW);
+    record(governor, 12f, WINDOW * 20);
+    assertEquals(Level.FULL, governor.getLevel());
+    assertEquals(0, governor.getTransitionCount());
+  }
+
+  @Test
+  public void slowFrames_stepDownOneLevelPerWindow() {
+    QualityGovernor governor = new QualityGovernor(16f, WINDOW);
+    List<Level> changes = new ArrayList<>();
+    governor.setOnLevelChangedListener((previousLevel, newLevel) -> changes.add(newLevel));
+
+    record(governor, 20f, WINDOW - 1);
+    assertEquals(Level.FULL, governor.getLevel());
+    record(governor, 20f, 1);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+    record(governor, 20f, WINDOW * 10);
+
+    assertEquals(Level.REDUCED_ORBIT_RATE, governor.getLevel());
+    assertEquals(3, changes.size());
+    assertEquals(Level.REDUCED_LIGHTS, changes.get(1));
+  }
+
+  @Test
+  public void headroom_raisesQualityOnlyAfterSeveralWindows() {
+    QualityGovernor governor = QualityGovernor.forRefreshRate(60f, WINDOW);
+    record(governor, 1000f / 30, WINDOW);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+
+    // Frame intervals are locked to vsync and never shorter than the refresh interval.
+    recordVsyncLocked(governor, WINDOW * 2);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+    recordVsyncLocked(governor, WINDOW);
+    assertEquals(Level.FULL, governor.getLevel());
+  }
+
+  @Test
+  public void missedRefreshes_keepQualityFromRising() {
+    QualityGovernor governor = QualityGovernor.forRefreshRate(60f, WINDOW);
+    record(governor, 1000f / 30, WINDOW);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+
+    // Within the budget, but every window misses a refresh, so there is no headroom.
+    for (int i = 0; i < 10; i++) {
+      recordVsyncLocked(governor, WINDOW - 1);
+      record(governor, 2000f / 60, 1);
+    }
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+    assertEquals(1, governor.getTransitionCount());
+  }
+
+  @Test
+  public void reset_returnsToFullQualityAndForgetsTheWindow() {
+    QualityGovernor governor = new QualityGovernor(16f, WINDOW);
+    List<Level> changes = new ArrayList<>();
+    governor.setOnLevelChangedListener((previousLevel, newLevel) -> changes.add(newLevel));
+    record(governor, 20f, WINDOW * 2 - 1);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+
+    governor.reset();
+    assertEquals(Level.FULL, governor.getLevel());
+    assertEquals(Level.FULL, changes.get(changes.size() - 1));
+    // The slow frames before the reset don't count towards the next window.
+    record(governor, 12f, WINDOW);
+    assertEquals(Level.FULL, governor.getLevel());
+  }
+
+  @Test
+  public void framesNearBudget_neitherLowerNorRaiseQuality() {
+    QualityGovernor governor = new QualityGovernor(16f, WINDOW);
+    record(governor, 20f, WINDOW);
+    // Between the headroom threshold and the budget, also interrupting a run of good windows.
+    record(governor, 10f, WINDOW * 2);
+    record(governor, 15f, WINDOW);
+    record(governor, 10f, WINDOW * 2);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+    assertEquals(1, governor.getTransitionCount());
+  }
+
+  @Test
+  public void refreshRateBudget_reactsWhenFrameRateHalves() {
+    QualityGovernor governor = QualityGovernor.forRefreshRate(60f, WINDOW);
+    assertTrue(governor.getBudgetMillis() > 1000f / 60);
+    assertTrue(governor.getBudgetMillis() < 1000f / 45);
+
+    // Vsync jitter and a late frame per window are tolerated.
+    for (int i = 0; i < 20; i++) {
+      record(governor, 1000f / 60, WINDOW - 1);
+      record(governor, 2000f / 60, 1);
+    }
+    assertEquals(Level.FULL, governor.getLevel());
+
+    // A 30 fps window at a 60 Hz display is a miss, where a 30 fps budget wouldn't see it.
+    record(governor, 1000f / 30, WINDOW);
+    assertEquals(Level.NO_SHADOWS, governor.getLevel());
+  }
+
+  // Frames at 60 Hz, with the jitter of the frame times Sceneform reports.
+  private static void recordVsyncLocked(QualityGovernor governor, int frames) {
+    for (int i = 0; i < frames; i++) {
+      governor.record(1000f / 60 + (i % 2 == 0 ? -0.4f : 0.4f));
+    }
+  }
+
+  private static void record(QualityGovernor governor, float frameTimeMillis, int frames) {
+    for (int i = 0; i < frames; i++) {
+      governor.record(frameTimeMillis);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Places the scene with scripted taps on a {@link ScriptedFrameSource}, through the same {@link
+ * ScenePlacer} the activity hands its plane taps to.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ScriptedPlacementTest {
+
+  private static final long FRAME_INTERVAL_MILLIS = 16;
+  private static final float EPSILON = 1e-3f;
+
+  private ScriptedFrameSource frameSource;
+  private ScenePlacer placer;
+  private final List<AnchorNode> placements = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    // 1.5m above the floor, looking 45 degrees down, so the screen center hits it 1.5m ahead.
+    frameSource =
+        new ScriptedFrameSource(1080, 1920, 60, 0)
+            .addKeyframe(
+                0, new Vector3(0, 1.5f, 0), Quaternion.axisAngle(new Vector3(1, 0, 0), -45));
+    placer = new ScenePlacer(frameSource, placements::add);
+  }
+
+  @Test
+  public void tapOnFloor_placesSceneAtHit() {
+    placer.setReady();
+    frameSource.setTime(0);
+    assertTrue(placer.onTap(540, 960));
+
+    assertEquals(1, placements.size());
+    assertSame(placements.get(0), placer.getAnchorNode());
+    assertPosition(new Vector3(0, 0, -1.5f), placer.getAnchorNode().getWorldPosition());
+  }
+
+  @Test
+  public void tapsBeforeReady_placeAtLatestTapOnceReady() {
+    runTaps(
+        new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+            .addTap(16, 540, 960)
+            .addTap(64, 1080, 960));
+    assertTrue(placer.hasPlacement());
+    assertTrue(placements.isEmpty());
+
+    placer.setReady();
+    assertEquals(1, placements.size());
+    assertTrue(placements.get(0).getWorldPosition().x > 0.5f);
+    assertEquals(0, placements.get(0).getWorldPosition().y, EPSILON);
+  }
+
+  @Test
+  public void laterTaps_moveTheScene() {
+    placer.setReady();
+    runTaps(
+        new ScriptedSession(frameSource, FRAME_INTERVAL_MILLIS)
+            .addTap(16, 540, 960)
+            .addTap(64, 540, 1920));
+
+    assertEquals(1, placements.size());
+    // The bottom edge of the screen looks 75 degrees down.
+    float distance = 1.5f * (float) Math.tan(Math.toRadians(15));
+    assertPosition(new Vector3(0, 0, -distance), placer.getAnchorNode().getWorldPosition());
+  }
+
+  @Test
+  public void tapAboveHorizon_placesNothing() {
+    frameSource =
+        new ScriptedFrameSource(1080, 1920, 60, 0)
+            .addKeyframe(0, new Vector3(0, 1.5f, 0), Quaternion.identity());
+    placer = new ScenePlacer(frameSource, placements::add);
+    placer.setReady();
+    frameSource.setTime(0);
+
+    assertFalse(placer.onTap(540, 0));
+    assertFalse(placer.hasPlacement());
+    assertNull(placer.getAnchorNode());
+  }
+
+  private void runTaps(ScriptedSession session) {
+    session.run(
+        200,
+        new ScriptedSession.Listener() {
+          @Override
+          public void onFrame(long frameTimeNanos) {}
+
+          @Override
+          public void onTap(Pose hitPose) {
+            placer.placeAt(hitPose);
+          }
+        });
+  }
+
+  private static void assertPosition(Vector3 expected, Vector3 actual) {
+    assertEquals(expected.x, actual.x, EPSILON);
+    assertEquals(expected.y, actual.y, EPSILON);
+    assertEquals(expected.z, actual.z, EPSILON);
+  }
+}
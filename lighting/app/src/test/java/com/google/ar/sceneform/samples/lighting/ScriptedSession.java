@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Google LLC
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.lighting;
+
+import com.google.ar.core.Pose;
+import java.util.ArrayList;
+
+/**
+ * Replays a fixed script of taps against a {@link ScriptedFrameSource}, one simulated frame at a
+ * time, and records how long the listener takes for each frame.
+ *
+ * <p>Frame times are derived from the frame number and not from the wall clock, so the lights end
+ * up in the same place every time a script is run. That makes the per frame cost of the light
+ * setup and update code comparable between builds on any machine that can run the app's code.
+ */
+public class ScriptedSession {
+
+  private static final String TAG = ScriptedSession.class.getSimpleName();
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  /** Receives the simulated frames and the plane hits of the scripted taps. */
+  public interface Listener {
+    /** Called once per frame after the camera has moved, with the start time of the frame. */
+    void onFrame(long frameTimeNanos);
+
+    /** Called before the frame in which the tap happened, for taps that hit the floor. */
+    void onTap(Pose hitPose);
+  }
+
+  private final ScriptedFrameSource frameSource;
+  private final long frameIntervalMillis;
+  private final ArrayList<Tap> taps = new ArrayList<>();
+  private FrameTimeRecorder frameTimeRecorder = new FrameTimeRecorder(0);
+
+  private static class Tap {
+    final long timeMillis;
+    final float x;
+    final float y;
+
+    Tap(long timeMillis, float x, float y) {
+      this.timeMillis = timeMillis;
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  public ScriptedSession(ScriptedFrameSource frameSource, long frameIntervalMillis) {
+    this.frameSource = frameSource;
+    this.frameIntervalMillis = frameIntervalMillis;
+  }
+
+  /** Adds a tap at the given screen point. Taps must be added in time order. */
+  public ScriptedSession addTap(long timeMillis, float x, float y) {
+    if (!taps.isEmpty() && timeMillis < taps.get(taps.size() - 1).timeMillis) {
+      throw new IllegalArgumentException("Taps must be added in time order");
+    }
+    taps.add(new Tap(timeMillis, x, y));
+    return this;
+  }
+
+  /** Runs the script for the given duration. */
+  public void run(long durationMillis, Listener listener) {
+    frameTimeRecorder = new FrameTimeRecorder((int) (durationMillis / frameIntervalMillis) + 1);
+    int nextTap = 0;
+    for (long time = 0; time <= durationMillis; time += frameIntervalMillis) {
+      frameSource.setTime(time);
+      long start = System.nanoTime();
+      while (nextTap < taps.size() && taps.get(nextTap).timeMillis <= time) {
+        Tap tap = taps.get(nextTap++);
+        Pose hitPose = frameSource.hitTestPlane(tap.x, tap.y);
+        if (hitPose != null) {
+          listener.onTap(hitPose);
+        }
+      }
+      listener.onFrame(time * NANOS_PER_MILLI);
+      frameTimeRecorder.record((System.nanoTime() - start) / 1e6f);
+    }
+  }
+
+  /** Returns the listener time of each frame of the last run. */
+  public FrameTimeRecorder getFrameTimes() {
+    return frameTimeRecorder;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d taps over %d frames, p50 %.3fms, p95 %.3fms, p99 %.3fms",
+        TAG,
+        taps.size(),
+        frameTimeRecorder.getCount(),
+        frameTimeRecorder.getPercentile(50),
+        frameTimeRecorder.getPercentile(95),
+        frameTimeRecorder.getPercentile(99));
+  }
+}